@@ -0,0 +1,130 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+/**
+ * A device that occupies a range of the address space, and can be read
+ * and written directly, without driving the address and data busses.
+ *
+ * Reads and writes have the same effects as a bus cycle would, so reading
+ * a device register may change the state of the device.
+ */
+public interface Addressable {
+  /**
+   * Get the first address occupied by the device.
+   *
+   * @return the base address.
+   */
+  int base();
+
+  /**
+   * Get the number of addresses occupied by the device.
+   *
+   * @return the size of the device.
+   */
+  int size();
+
+  /**
+   * Read the value at the given address.
+   *
+   * @param address the address to read, between base() and base() + size() - 1.
+   * @return the value at the address.
+   */
+  byte read(int address);
+
+  /**
+   * Write a value to the given address.
+   *
+   * @param address the address to write, between base() and base() + size() - 1.
+   * @param value the value to write.
+   */
+  void write(int address, byte value);
+
+  /**
+   * Read the value at the given address for a debugger.  Unlike read(),
+   * this must not change the state of the device.
+   *
+   * @param address the address to read, between base() and base() + size() - 1.
+   * @return the value at the address.
+   */
+  default byte peek(int address) { return read(address); }
+
+  /**
+   * Read a block of values for a debugger, as peek() does for each value.
+   *
+   * @param address the first address to read.
+   * @param destination the array to read into.
+   * @param offset the index in the array of the first value.
+   * @param length the number of values to read, all within the device.
+   */
+  default void peek(int address, byte[] destination, int offset, int length) {
+    for(int i = 0; i < length; i++) {
+      destination[offset + i] = peek(address + i);
+    }
+  }
+
+  /**
+   * Write a value to the given address for a debugger.  Unlike write(),
+   * this changes the contents of read-only memory.
+   *
+   * @param address the address to write, between base() and base() + size() - 1.
+   * @param value the value to write.
+   */
+  default void poke(int address, byte value) { write(address, value); }
+
+  /**
+   * Write a block of values for a debugger, as poke() does for each value.
+   *
+   * @param address the first address to write.
+   * @param source the array of values to write.
+   * @param offset the index in the array of the first value.
+   * @param length the number of values to write, all within the device.
+   */
+  default void poke(int address, byte[] source, int offset, int length) {
+    for(int i = 0; i < length; i++) {
+      poke(address + i, source[offset + i]);
+    }
+  }
+
+  /**
+   * Return true if values read from the device only change when the
+   * device is written, so the processor may cache the instructions it
+   * decodes from the device.
+   *
+   * @return true if the contents of the device can be cached.
+   */
+  default boolean cacheable() { return false; }
+
+  /**
+   * Return true if reading the given address has no side effects, and the
+   * value read only changes when the device is written or when one of its
+   * actions on the Scheduler runs, so the processor may skip ahead while
+   * a loop polls the address.
+   *
+   * @param address the address, between base() and base() + size() - 1.
+   * @return true if the address can be polled without simulating each read.
+   */
+  default boolean pollable(int address) { return cacheable(); }
+
+  /**
+   * Get the number of the memory bank mapped at the given address, for a
+   * device that switches banks of a larger memory into its addresses.
+   *
+   * @param address the address, between base() and base() + size() - 1.
+   * @return the bank number, or -1 if the device does not switch banks.
+   */
+  default int bank(int address) { return -1; }
+
+  /**
+   * Get the array that holds the contents of a page of the device, so the
+   * processor can read and write the page without calling read() and
+   * write().  Only plain memory, where a read has no side effects and a
+   * write only stores the value, can offer its pages.  The array must
+   * hold the page until the device calls Backplane.directChanged().
+   *
+   * @param address the address of the page, which the device covers entirely.
+   * @return the 256 bytes of the page, or null if the page cannot be
+   *   reached directly.
+   */
+  default byte[] directPage(int address) { return null; }
+}
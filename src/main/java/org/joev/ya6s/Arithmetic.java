@@ -0,0 +1,108 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+/**
+ * Tables of the results of ADC and SBC, indexed by the Decimal and Carry
+ * flags, the accumulator and the operand, so the processor can add or
+ * subtract with a single array load in either binary or decimal mode.
+ *
+ * Bits 0-7 of an entry hold the result, bit 8 holds the Carry flag, and
+ * bit 9 holds the Overflow flag.  The 65C02 sets the Negative and Zero
+ * flags from the result in decimal mode as well, so they are not stored.
+ */
+final class Arithmetic {
+  static final int CARRY    = 1 << 8;
+  static final int OVERFLOW = 1 << 9;
+
+  static final char[] ADC = new char[0x40000];
+  static final char[] SBC = new char[0x40000];
+
+  static {
+    for(int i = 0; i < ADC.length; i++) {
+      boolean decimal = (i & 0x20000) != 0;
+      int c = (i >> 16) & 1;
+      int a = (i >> 8) & 0xFF;
+      int b = i & 0xFF;
+      ADC[i] = (char)(decimal ? adcDecimal(a, b, c) : adc(a, b, c));
+      SBC[i] = (char)(decimal ? sbcDecimal(a, b, c) : adc(a, ~b & 0xFF, c));
+    }
+  }
+
+  /**
+   * This class cannot be instantiated.
+   */
+  private Arithmetic() { }
+
+  /**
+   * Get the index of a table entry.
+   *
+   * @param decimal true if the Decimal flag is set.
+   * @param carry the Carry flag, 0 or 1.
+   * @param a the accumulator.
+   * @param data the operand.
+   * @return the index into ADC or SBC.
+   */
+  static int index(boolean decimal, int carry, byte a, byte data) {
+    return (decimal ? 0x20000 : 0) | (carry << 16) | ((a & 0xFF) << 8) | (data & 0xFF);
+  }
+
+  /**
+   * Add two bytes and a carry in binary mode.
+   *
+   * @param a the accumulator.
+   * @param b the operand.
+   * @param c the carry.
+   * @return the table entry.
+   */
+  private static int adc(int a, int b, int c) {
+    int sum = a + b + c;
+    return (sum & 0xFF) | (sum & CARRY) |
+      ((((a ^ sum) & (b ^ sum) & 0x80) != 0) ? OVERFLOW : 0);
+  }
+
+  /**
+   * Add two bytes and a carry in decimal mode.  The Overflow flag comes
+   * from the signed sum before the high digit is adjusted, as on the
+   * 6502.
+   *
+   * @param a the accumulator.
+   * @param b the operand.
+   * @param c the carry.
+   * @return the table entry.
+   */
+  private static int adcDecimal(int a, int b, int c) {
+    int lo = (a & 0x0F) + (b & 0x0F) + c;
+    if(lo >= 0x0A) {
+      lo = ((lo + 0x06) & 0x0F) + 0x10;
+    }
+    int sum = (a & 0xF0) + (b & 0xF0) + lo;
+    int signed = (byte)(a & 0xF0) + (byte)(b & 0xF0) + lo;
+    if(sum >= 0xA0) {
+      sum += 0x60;
+    }
+    return (sum & 0xFF) | (sum >= 0x100 ? CARRY : 0) |
+      ((signed < -128 || signed > 127) ? OVERFLOW : 0);
+  }
+
+  /**
+   * Subtract a byte and a borrow in decimal mode.  The Carry and Overflow
+   * flags are the same as in binary mode.
+   *
+   * @param a the accumulator.
+   * @param b the operand.
+   * @param c the carry, 0 to borrow.
+   * @return the table entry.
+   */
+  private static int sbcDecimal(int a, int b, int c) {
+    int lo = (a & 0x0F) - (b & 0x0F) + c - 1;
+    int difference = a - b + c - 1;
+    if(difference < 0) {
+      difference -= 0x60;
+    }
+    if(lo < 0) {
+      difference -= 0x06;
+    }
+    return (difference & 0xFF) | (adc(a, ~b & 0xFF, c) & (CARRY | OVERFLOW));
+  }
+}
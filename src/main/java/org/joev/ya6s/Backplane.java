@@ -2,14 +2,49 @@
 
 package org.joev.ya6s;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
 import org.joev.ya6s.signals.Bus;
 import org.joev.ya6s.signals.OpenCollector;
 import org.joev.ya6s.signals.Signal;
 
 /**
  * A Backplane holds the signals and busses used throughout the system.
+ *
+ * The Backplane also decodes the address bus for the attached devices:
+ * on each rising clock edge, only the device at the address on the bus
+ * is read or written.
  */
-public class Backplane {
+public final class Backplane {
+  /**
+   * A system forked from another by fork().
+   *
+   * @param backplane the Backplane of the forked system.
+   * @param copies the copy of each component of the original system.
+   */
+  public record Fork(Backplane backplane, Map<Object, Forkable> copies) {
+    /**
+     * Get the copy of a component of the original system.
+     *
+     * @param <T> the type of the component.
+     * @param component the component of the original system.
+     * @return the copy in the forked system, or null if it has none.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T copy(T component) {
+      return (T)copies.get(component);
+    }
+  }
+
   private final Bus address;
   private final Bus data;
   private final Signal rwb;
@@ -23,6 +58,19 @@ public class Backplane {
   private final Signal resb;
   private final Signal rdy;
 
+  private final List<Addressable> devices = new ArrayList<>();
+  private final Addressable[] pages = new Addressable[256];
+  private final Addressable[][] subpages = new Addressable[256][];
+  private final List<Snapshottable> snapshottables = new ArrayList<>();
+  private final List<IntConsumer> changeListeners = new ArrayList<>();
+  private final Scheduler scheduler = new Scheduler();
+  private final Watchpoints watchpoints = new Watchpoints(this::directChanged);
+  private InputStream consoleIn = InputStream.nullInputStream();
+  private OutputStream consoleOut = OutputStream.nullOutputStream();
+  private int version;
+  private int directVersion;
+  private final Signal.Listener busCycleFn = this::busCycle;
+
   /**
    * Create a new Backplane
    */
@@ -39,6 +87,11 @@ public class Backplane {
     rdy = new Signal("rdy");
     resb = new Signal("resb");
     nmib = new OpenCollector("nmib");
+
+    // The clock rests high, so that the first cycle has a falling edge
+    // like every other.
+    clock.value(true);
+    clock.registerRising(busCycleFn);
   }
 
   /**
@@ -124,5 +177,574 @@ public class Backplane {
    * @return the ready signal.
    */
   public Signal rdy() { return rdy; }
-}
 
+  /**
+   * Get the Scheduler, which runs device actions at future clock cycles.
+   *
+   * @return the scheduler.
+   */
+  public Scheduler scheduler() { return scheduler; }
+
+  /**
+   * Get the memory watchpoints.
+   *
+   * @return the watchpoints.
+   */
+  public Watchpoints watchpoints() { return watchpoints; }
+
+  /**
+   * Set the streams of the console, which devices such as the UART use
+   * for their "tty" port.  Devices read the streams when they are
+   * created, so this should be called before attaching them.
+   *
+   * @param in the stream of input typed at the console.
+   * @param out the stream of output shown on the console.
+   */
+  public void console(InputStream in, OutputStream out) {
+    this.consoleIn = in;
+    this.consoleOut = out;
+  }
+
+  /**
+   * Get the stream of input typed at the console.  Empty, unless set.
+   *
+   * @return the console input stream.
+   */
+  public InputStream consoleIn() { return consoleIn; }
+
+  /**
+   * Get the stream of output shown on the console.  Discarded, unless set.
+   *
+   * @return the console output stream.
+   */
+  public OutputStream consoleOut() { return consoleOut; }
+
+  /**
+   * Attach an Addressable device, so it can be reached with read() and
+   * write() as well as through the busses.
+   *
+   * @param device the device to attach.
+   * @throws IllegalArgumentException if the device overlaps an attached device.
+   */
+  public void attach(Addressable device) {
+    int start = device.base();
+    int end = start + device.size();
+    for(Addressable other: devices) {
+      if(start < other.base() + other.size() && other.base() < end) {
+        throw new IllegalArgumentException(String.format("%s at $%04X-$%04X overlaps %s at $%04X-$%04X.",
+          device.getClass().getSimpleName(), start, end - 1,
+          other.getClass().getSimpleName(), other.base(), other.base() + other.size() - 1));
+      }
+    }
+    devices.add(device);
+    updatePages();
+    version++;
+    directVersion++;
+  }
+
+  /**
+   * Detach an Addressable device.
+   *
+   * @param device the device to detach.
+   */
+  public void detach(Addressable device) {
+    devices.remove(device);
+    updatePages();
+    version++;
+    directVersion++;
+  }
+
+  /**
+   * Get the attached Addressable devices.
+   *
+   * @return the devices, in the order they were attached.
+   */
+  public List<Addressable> devices() {
+    return Collections.unmodifiableList(devices);
+  }
+
+  /**
+   * Add a component whose state is saved in a Snapshot.  Components are
+   * saved and restored in the order they were added.
+   *
+   * @param component the component to add.
+   */
+  public void addSnapshottable(Snapshottable component) {
+    snapshottables.add(component);
+  }
+
+  /**
+   * Remove a component whose state is saved in a Snapshot.
+   *
+   * @param component the component to remove.
+   */
+  public void removeSnapshottable(Snapshottable component) {
+    snapshottables.remove(component);
+  }
+
+  /**
+   * Get the components whose state is saved in a Snapshot.
+   *
+   * @return the components, in the order they were added.
+   */
+  public List<Snapshottable> snapshottables() {
+    return Collections.unmodifiableList(snapshottables);
+  }
+
+  /**
+   * Fork the system: create a new Backplane, with the values of the busses
+   * and signals of this one and a copy of each of its components.  The
+   * forked system goes on from the same state, but independently, so that
+   * many runs can start from one prepared state.  Memories share their
+   * contents with their copies until either side changes them.
+   *
+   * The forked system has no console; fork(InputStream, OutputStream)
+   * gives it one.
+   *
+   * @return the forked system.
+   * @throws UnsupportedOperationException if a component is not Forkable.
+   */
+  public Fork fork() {
+    return fork(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+  }
+
+  /**
+   * Fork the system, giving the forked system its own console.
+   *
+   * @param in the input stream of the forked console.
+   * @param out the output stream of the forked console.
+   * @return the forked system.
+   * @throws UnsupportedOperationException if a component is not Forkable.
+   */
+  public Fork fork(InputStream in, OutputStream out) {
+    Backplane child = new Backplane();
+    child.console(in, out);
+    child.scheduler.advance(scheduler.now());
+    child.address.value(address.value());
+    child.data.value(data.value());
+    Signal[] signals = Snapshot.signals(this);
+    Signal[] childSignals = Snapshot.signals(child);
+    for(int i = 0; i < signals.length; i++) {
+      childSignals[i].restore(signals[i].value());
+    }
+
+    Map<Object, Forkable> copies = new IdentityHashMap<>();
+    for(Snapshottable component: List.copyOf(snapshottables)) {
+      fork(component, child, copies);
+    }
+    for(Addressable device: List.copyOf(devices)) {
+      fork(device, child, copies);
+    }
+
+    // Keep the components in the same order, so a Snapshot of either
+    // system can be restored into the other.
+    child.snapshottables.clear();
+    for(Snapshottable component: snapshottables) {
+      child.snapshottables.add((Snapshottable)copies.get(component));
+    }
+    return new Fork(child, copies);
+  }
+
+  /**
+   * Fork one component, unless it has already been forked.
+   *
+   * @param component the component to fork.
+   * @param child the Backplane of the forked system.
+   * @param copies the components forked so far, and their copies.
+   * @throws UnsupportedOperationException if the component is not Forkable.
+   */
+  private static void fork(Object component, Backplane child, Map<Object, Forkable> copies) {
+    if(copies.containsKey(component)) {
+      return;
+    }
+    if(!(component instanceof Forkable forkable)) {
+      throw new UnsupportedOperationException(component.getClass().getSimpleName() + " cannot be forked.");
+    }
+    copies.put(component, forkable.fork(child));
+  }
+
+  /**
+   * Rebuild the page table.  A page refers to a device if that device
+   * covers the entire page.  A page that is only partly covered, or
+   * covered by more than one device, refers to a table of the device at
+   * each address in the page.
+   */
+  private void updatePages() {
+    Arrays.fill(pages, null);
+    Arrays.fill(subpages, null);
+    for(Addressable device: devices) {
+      int start = device.base();
+      int end = start + device.size();
+      for(int page = start >>> 8; page < 0x100 && (page << 8) < end; page++) {
+        int pageStart = page << 8;
+        if(start <= pageStart && end >= pageStart + 0x100) {
+          pages[page] = device;
+        }
+        else {
+          if(subpages[page] == null) {
+            subpages[page] = new Addressable[0x100];
+          }
+          Arrays.fill(subpages[page], Math.max(start, pageStart) - pageStart, Math.min(end, pageStart + 0x100) - pageStart, device);
+        }
+      }
+    }
+  }
+
+  /**
+   * Find the device at the given address.
+   *
+   * @param address the address.
+   * @return the device, or null if no device is at the address.
+   */
+  private Addressable device(int address) {
+    Addressable device = pages[address >>> 8];
+    if(device == null) {
+      Addressable[] subpage = subpages[address >>> 8];
+      if(subpage != null) {
+        device = subpage[address & 0xFF];
+      }
+    }
+    return device;
+  }
+
+  /**
+   * Handle a rising clock edge by reading or writing the device at the
+   * address on the address bus, if there is one.
+   *
+   * @param eventType the type of clock signal edge.
+   */
+  private void busCycle(Signal.EventType eventType) {
+    int busAddress = address.value() & 0xFFFF;
+    Addressable device = device(busAddress);
+    if(device != null) {
+      if(rwb.value()) {
+        byte value = device.read(busAddress);
+        data.value(value);
+        if(watchpoints.reads(busAddress)) {
+          watchpoints.hit(Watchpoints.Kind.READ, busAddress, value, value);
+        }
+      }
+      else {
+        byte value = (byte)data.value();
+        if(watchpoints.writes(busAddress)) {
+          watchpoints.hit(Watchpoints.Kind.WRITE, busAddress, device.peek(busAddress), value);
+        }
+        device.write(busAddress, value);
+      }
+    }
+  }
+
+  /**
+   * Read a byte from the attached device at the given address, without
+   * using the busses.  If no device is at the address, the current value
+   * of the data bus is returned.
+   *
+   * @param address the address to read.
+   * @return the value at the address.
+   */
+  public byte read(int address) {
+    address &= 0xFFFF;
+    Addressable device = device(address);
+    byte value = device == null ? (byte)data.value() : device.read(address);
+    if(watchpoints.reads(address)) {
+      watchpoints.hit(Watchpoints.Kind.READ, address, value, value);
+    }
+    return value;
+  }
+
+  /**
+   * Write a byte to the attached device at the given address, without
+   * using the busses.  If no device is at the address, nothing happens.
+   *
+   * @param address the address to write.
+   * @param value the value to write.
+   */
+  public void write(int address, byte value) {
+    address &= 0xFFFF;
+    Addressable device = device(address);
+    if(device != null) {
+      if(watchpoints.writes(address)) {
+        watchpoints.hit(Watchpoints.Kind.WRITE, address, device.peek(address), value);
+      }
+      device.write(address, value);
+    }
+  }
+
+  /**
+   * Read a byte for a debugger, without the side effects of a read and
+   * without using the busses or the clock.  If no device is at the
+   * address, the current value of the data bus is returned.
+   *
+   * @param address the address to read.
+   * @return the value at the address.
+   */
+  public byte peek(int address) {
+    address &= 0xFFFF;
+    Addressable device = device(address);
+    return device == null ? (byte)data.value() : device.peek(address);
+  }
+
+  /**
+   * Read a block of bytes for a debugger, as peek() does for each byte.
+   * Addresses wrap around from $FFFF to $0000.
+   *
+   * @param address the address of the first byte to read.
+   * @param destination the array to read into.
+   */
+  public void peek(int address, byte[] destination) {
+    int offset = 0;
+    while(offset < destination.length) {
+      address &= 0xFFFF;
+      Addressable device = device(address);
+      int length = run(address, device, destination.length - offset);
+      if(device == null) {
+        Arrays.fill(destination, offset, offset + length, (byte)data.value());
+      }
+      else {
+        device.peek(address, destination, offset, length);
+      }
+      address += length;
+      offset += length;
+    }
+  }
+
+  /**
+   * Write a byte for a debugger, without using the busses or the clock.
+   * Unlike write(), this changes the contents of read-only memory.  If no
+   * device is at the address, nothing happens.
+   *
+   * @param address the address to write.
+   * @param value the value to write.
+   */
+  public void poke(int address, byte value) {
+    address &= 0xFFFF;
+    Addressable device = device(address);
+    if(device != null) {
+      device.poke(address, value);
+      changed(address, 1);
+    }
+  }
+
+  /**
+   * Write a block of bytes for a debugger, as poke() does for each byte.
+   * Each device in the range is written with a single block transfer.
+   * Addresses wrap around from $FFFF to $0000.
+   *
+   * @param address the address of the first byte to write.
+   * @param source the bytes to write.
+   * @return the number of bytes written to each device, in the order
+   *   written.  Bytes at addresses with no device are not counted.
+   */
+  public Map<Addressable, Integer> poke(int address, byte[] source) {
+    Map<Addressable, Integer> written = new LinkedHashMap<>();
+    int offset = 0;
+    while(offset < source.length) {
+      address &= 0xFFFF;
+      Addressable device = device(address);
+      int length = run(address, device, source.length - offset);
+      if(device != null) {
+        device.poke(address, source, offset, length);
+        changed(address, length);
+        written.merge(device, length, Integer::sum);
+      }
+      address += length;
+      offset += length;
+    }
+    return written;
+  }
+
+  /**
+   * Add a listener that is given each address whose contents change other
+   * than by a write, such as by poke() or by switching a memory bank, so
+   * that copies of memory, such as decoded instructions, can be discarded.
+   *
+   * @param listener the listener to add.
+   */
+  public void addChangeListener(IntConsumer listener) {
+    changeListeners.add(listener);
+  }
+
+  /**
+   * Remove a listener that is given each changed address.
+   *
+   * @param listener the listener to remove.
+   */
+  public void removeChangeListener(IntConsumer listener) {
+    changeListeners.remove(listener);
+  }
+
+  /**
+   * Tell the change listeners that the contents of a range of addresses
+   * changed other than by a write.  Devices call this when they change
+   * what appears at their addresses, as when a memory bank is switched.
+   *
+   * @param address the first address changed.
+   * @param length the number of addresses changed.
+   */
+  public void changed(int address, int length) {
+    for(IntConsumer listener: changeListeners) {
+      for(int i = 0; i < length; i++) {
+        listener.accept(address + i);
+      }
+    }
+  }
+
+  /**
+   * Count the addresses, starting at the given address, that belong to
+   * the same device, stopping at the end of the address space.
+   *
+   * @param address the first address.
+   * @param device the device at the first address, or null.
+   * @param limit the most addresses to count.
+   * @return the number of addresses, at least one.
+   */
+  private int run(int address, Addressable device, int limit) {
+    int length = 1;
+    while(length < limit && address + length <= 0xFFFF &&
+          device(address + length) == device) {
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * Return true if the attached device at the given address can be cached.
+   *
+   * @param address the address.
+   * @return true if the device at the address can be cached.
+   */
+  public boolean cacheable(int address) {
+    Addressable device = device(address & 0xFFFF);
+    return device != null && device.cacheable();
+  }
+
+  /**
+   * Return true if a device in the given page cannot be cached, so what a
+   * read or write of the page does may depend on the clock cycle in which
+   * it is made.
+   *
+   * @param page the page, between $00 and $FF.
+   * @return true if the page holds a device that cannot be cached.
+   */
+  public boolean timed(int page) {
+    if(pages[page] != null) {
+      return !pages[page].cacheable();
+    }
+    Addressable[] subpage = subpages[page];
+    if(subpage != null) {
+      for(Addressable device: subpage) {
+        if(device != null && !device.cacheable()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return true if the attached device at the given address can be polled
+   * without simulating each read.
+   *
+   * @param address the address to check.
+   * @return true if the address can be polled.
+   */
+  public boolean pollable(int address) {
+    address &= 0xFFFF;
+    Addressable device = device(address);
+    return device != null && device.pollable(address);
+  }
+
+  /**
+   * Get the number of the memory bank mapped at the given address.
+   *
+   * @param address the address.
+   * @return the bank number, or -1 if the address is not bank-switched.
+   */
+  public int bank(int address) {
+    address &= 0xFFFF;
+    Addressable device = device(address);
+    return device == null ? -1 : device.bank(address);
+  }
+
+  /**
+   * Get the version of the address map, which changes whenever a device
+   * is attached or detached.
+   *
+   * @return the address map version.
+   */
+  public int version() { return version; }
+
+  /**
+   * Get the array that holds the contents of a page, so the processor can
+   * read and write it without going through read() and write().  This is
+   * only possible when one device covers the whole page and offers its
+   * array, and no watchpoint covers any address in the page, since
+   * accesses to the array are not watched.  The array is only valid until
+   * directVersion() changes.
+   *
+   * @param page the page, between $00 and $FF.
+   * @return the 256 bytes of the page, or null if the page cannot be
+   *   reached directly.
+   */
+  public byte[] directPage(int page) {
+    Addressable device = pages[page];
+    if(device == null || watchpoints.watches(page)) {
+      return null;
+    }
+    return device.directPage(page << 8);
+  }
+
+  /**
+   * Get the version of the arrays returned by directPage(), which changes
+   * whenever a device is attached or detached, a watchpoint is added or
+   * removed, or a device calls directChanged().
+   *
+   * @return the direct page version.
+   */
+  public int directVersion() { return directVersion; }
+
+  /**
+   * Tell the processor that the arrays returned by directPage() may no
+   * longer hold the pages.  Devices call this when they stop using an
+   * array they gave out, as when memory is shared with a fork.
+   */
+  public void directChanged() {
+    directVersion++;
+  }
+
+  /**
+   * Register a Listener for the rising edge of the clock, for a device
+   * that needs to see every bus cycle, such as a logic analyzer.  While
+   * any such Listener is registered, the processor simulates every cycle
+   * instead of skipping ahead.  This is the same as registering with the
+   * clock directly.
+   *
+   * @param listener the Listener to notify at the end of each bus cycle.
+   */
+  public void registerBusListener(Signal.Listener listener) {
+    clock.registerRising(listener);
+  }
+
+  /**
+   * Unregister a Listener registered with registerBusListener().
+   *
+   * @param listener the Listener to no longer notify.
+   */
+  public void unregisterBusListener(Signal.Listener listener) {
+    clock.unregister(listener);
+  }
+
+  /**
+   * Return true if a device needs to see every bus cycle, because it
+   * listens to the rising edge of the clock, at the end of each bus
+   * cycle, rather than being an Addressable device that can be reached
+   * with read() and write().  The address decoder of the Backplane is not
+   * such a device, and the processor only listens to the rising edge
+   * while it is not ready, when it does not run instructions.
+   *
+   * @return true if bus-level timing is required.
+   */
+  public boolean busTimingRequired() {
+    return clock.risingListenersBesides(busCycleFn);
+  }
+}
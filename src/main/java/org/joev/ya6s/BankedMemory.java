@@ -0,0 +1,281 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * A bank-switched memory device, which reaches a memory larger than the
+ * address space through a set of windows.
+ *
+ * The memory is divided into banks the size of a window, and each window
+ * shows the bank selected by its bank-select register.  The registers are
+ * at their own I/O address, one byte per window, and reading a register
+ * returns the bank it selects.  At reset, window n shows bank n, so the
+ * device starts out like a plain RAM.
+ *
+ * Each bank is a view of the memory, so selecting a bank only changes
+ * which view the window refers to.  The memory may be held on the heap,
+ * or mapped from a file like SRAM.  Unlike SRAM, the memory is copied
+ * in full when the system is forked.
+ */
+public final class BankedMemory implements Addressable, Snapshottable, Forkable {
+  private final Backplane backplane;
+  private final int base;
+  private final int size;
+  private final int shift;
+  private final int mask;
+  private final ByteBuffer memory;
+  private final ByteBuffer[] banks;
+  private final ByteBuffer[] windows;
+  private final int[] selected;
+  private final Registers registers;
+
+  /**
+   * The bank-select registers, which are attached at their own address.
+   */
+  private final class Registers implements Addressable, Forkable {
+    private final int base;
+
+    /**
+     * Create the bank-select registers.
+     *
+     * @param base the address of the first register.
+     */
+    private Registers(int base) {
+      this.base = base;
+    }
+
+    @Override
+    public int base() { return base; }
+
+    @Override
+    public int size() { return windows.length; }
+
+    @Override
+    public boolean pollable(int address) { return true; }
+
+    @Override
+    public byte read(int address) {
+      return (byte)selected[address - base];
+    }
+
+    @Override
+    public void write(int address, byte value) {
+      select(address - base, value & 0xFF);
+    }
+
+    /**
+     * The registers are copied along with the memory.
+     *
+     * @param backplane the Backplane of the forked system.
+     * @return null
+     */
+    @Override
+    public Forkable fork(Backplane backplane) {
+      return null;
+    }
+  }
+
+  /**
+   * Create a bank-switched memory device.
+   *
+   * @param backplane the backplane to attach to.
+   * @param options a Map containing the configuration options:
+   *   "base" is the hex value of the address of the first window.
+   *   "size" is the hex value of the size of all of the windows.
+   *   "window" is the hex value of the size of each window and bank, a
+   *     power of two.  The default is 2000.
+   *   "memory" is the hex value of the size of the banked memory, a
+   *     multiple of the window size, with at most 256 banks.
+   *   "io" is the hex value of the address of the bank-select registers.
+   *   "file" is the optional path of a file to map the memory from.
+   */
+  public BankedMemory(Backplane backplane, Map<String, String> options) {
+    String baseString = options.get("base");
+    String sizeString = options.get("size");
+    String memoryString = options.get("memory");
+    String ioString = options.get("io");
+    if(baseString == null || sizeString == null || memoryString == null || ioString == null) {
+      throw new IllegalArgumentException("The \"base\", \"size\", \"memory\" and \"io\" options are required.");
+    }
+
+    base = Integer.parseUnsignedInt(baseString, 16);
+    size = Integer.parseUnsignedInt(sizeString, 16);
+    int window = Integer.parseUnsignedInt(options.getOrDefault("window", "2000"), 16);
+    int memorySize = Integer.parseUnsignedInt(memoryString, 16);
+    if(Integer.bitCount(window) != 1 || size % window != 0 || memorySize % window != 0) {
+      throw new IllegalArgumentException("The window size must be a power of two that divides the size and the memory.");
+    }
+    if(memorySize / window > 256 || memorySize < size) {
+      throw new IllegalArgumentException("The memory must cover the windows, with at most 256 banks.");
+    }
+    shift = Integer.numberOfTrailingZeros(window);
+    mask = window - 1;
+
+    String fileName = options.get("file");
+    if(fileName == null) {
+      memory = ByteBuffer.wrap(new byte[memorySize]);
+    }
+    else {
+      try(FileChannel channel = FileChannel.open(Path.of(fileName),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        memory = channel.map(FileChannel.MapMode.READ_WRITE, 0, memorySize);
+      }
+      catch (IOException ioe) {
+        throw new IllegalArgumentException("Could not map file: " + ioe.getMessage(), ioe);
+      }
+    }
+
+    banks = new ByteBuffer[memorySize / window];
+    for(int i = 0; i < banks.length; i++) {
+      banks[i] = memory.slice(i * window, window);
+    }
+    windows = new ByteBuffer[size / window];
+    selected = new int[windows.length];
+    for(int i = 0; i < windows.length; i++) {
+      selected[i] = i;
+      windows[i] = banks[i];
+    }
+
+    this.backplane = backplane;
+    registers = new Registers(Integer.parseUnsignedInt(ioString, 16));
+    backplane.attach(this);
+    try {
+      backplane.attach(registers);
+    }
+    catch (IllegalArgumentException iae) {
+      backplane.detach(this);
+      throw iae;
+    }
+    backplane.addSnapshottable(this);
+  }
+
+  @Override
+  public int base() { return base; }
+
+  @Override
+  public int size() { return size; }
+
+  /**
+   * Return true if the memory is on the heap.  Memory mapped from a file
+   * may be changed by another process at any time, so instructions decoded
+   * from it cannot be cached.
+   *
+   * @return true if the memory is not mapped from a file.
+   */
+  @Override
+  public boolean cacheable() { return !(memory instanceof MappedByteBuffer); }
+
+  @Override
+  public byte read(int address) {
+    int offset = address - base;
+    return windows[offset >>> shift].get(offset & mask);
+  }
+
+  @Override
+  public void write(int address, byte value) {
+    int offset = address - base;
+    windows[offset >>> shift].put(offset & mask, value);
+  }
+
+  @Override
+  public int bank(int address) {
+    return selected[(address - base) >>> shift];
+  }
+
+  /**
+   * Select the bank shown in a window.  A bank number beyond the end of
+   * the memory wraps around.
+   *
+   * @param window the index of the window.
+   * @param bank the number of the bank.
+   */
+  private void select(int window, int bank) {
+    bank %= banks.length;
+    if(selected[window] != bank) {
+      selected[window] = bank;
+      windows[window] = banks[bank];
+      backplane.changed(base + (window << shift), mask + 1);
+    }
+  }
+
+  /**
+   * Create a copy of this device on another Backplane, with a copy of the
+   * memory on the heap, and the same banks selected.
+   *
+   * @param backplane the Backplane of the forked system.
+   * @return the copy.
+   */
+  @Override
+  public BankedMemory fork(Backplane backplane) {
+    BankedMemory copy = new BankedMemory(backplane, Map.of(
+      "base", Integer.toHexString(base),
+      "size", Integer.toHexString(size),
+      "window", Integer.toHexString(mask + 1),
+      "memory", Integer.toHexString(memory.capacity()),
+      "io", Integer.toHexString(registers.base)));
+    Snapshot.copy(this, copy);
+    return copy;
+  }
+
+  @Override
+  public void save(DataOutput out) throws IOException {
+    byte[] contents = new byte[memory.capacity()];
+    memory.get(0, contents);
+    out.writeInt(contents.length);
+    out.write(contents);
+    for(int bank: selected) {
+      out.writeByte(bank);
+    }
+  }
+
+  @Override
+  public void restore(DataInput in) throws IOException {
+    int snapshotSize = in.readInt();
+    if(snapshotSize != memory.capacity()) {
+      throw new IOException(String.format("Banked memory at $%04X is %d bytes, snapshot has %d.", base, memory.capacity(), snapshotSize));
+    }
+    byte[] contents = new byte[snapshotSize];
+    in.readFully(contents);
+    memory.put(0, contents);
+    for(int i = 0; i < selected.length; i++) {
+      select(i, in.readUnsignedByte());
+    }
+  }
+
+  /**
+   * Write the changes of a mapped file to the file.  Does nothing if the
+   * memory is not mapped from a file.
+   */
+  public void flush() {
+    if(memory instanceof MappedByteBuffer mapped) {
+      try {
+        mapped.force();
+      }
+      catch (UncheckedIOException uioe) {
+        System.err.format("Banked memory at $%04X: %s%n", base, uioe.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Detach from the Backplane, writing the changes of a mapped file to
+   * the file.
+   */
+  public void close() {
+    flush();
+    backplane.detach(registers);
+    backplane.detach(this);
+    backplane.removeSnapshottable(this);
+  }
+}
@@ -0,0 +1,232 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.util.Arrays;
+
+/**
+ * A cache of instructions decoded by the FAST engine, keyed by address.
+ *
+ * Instructions are decoded in Blocks: straight-line runs that end with
+ * a branch, jump, return, or BRK.  Each address covered by a Block is
+ * owned by that Block, and a per-page bitmap tracks which pages hold
+ * cached code, so a write to memory only needs a bit test unless it
+ * lands on a page with code.  A write to an owned address invalidates
+ * the whole Block, so self-modifying code is decoded again.
+ *
+ * An empty cache shares its tables with every other empty cache, and
+ * clearing a cache only visits the pages that hold code, so a processor
+ * made for a forked system does not pay for tables it has not filled.
+ */
+final class BlockCache {
+  /**
+   * A straight-line run of decoded instructions.
+   */
+  static final class Block {
+    private final int start;
+    private int end;
+    private boolean valid = true;
+    int executions;
+    BlockCompiler.Code code;
+
+    /**
+     * Create a new, empty Block.
+     *
+     * @param start the address of the first instruction.
+     */
+    private Block(int start) {
+      this.start = start;
+      this.end = start;
+    }
+
+    /**
+     * Return true if the Block has not been invalidated.
+     *
+     * @return true if the Block is valid.
+     */
+    boolean valid() { return valid; }
+
+    /**
+     * Get the address of the first instruction.
+     *
+     * @return the start address.
+     */
+    int start() { return start; }
+
+    /**
+     * Get the address after the last instruction.
+     *
+     * @return the end address.
+     */
+    int end() { return end; }
+  }
+
+  /**
+   * A decoded instruction, with its operands bound into the operation.
+   */
+  static final class Entry {
+    final Runnable operation;
+    final int cycles;
+    final int address;
+    final short next;
+    final Block block;
+    Entry following;
+
+    /**
+     * Create a new Entry.
+     *
+     * @param operation the operation that runs the instruction.
+     * @param cycles the number of cycles of the instruction.
+     * @param address the address of the instruction.
+     * @param next the address of the next instruction.
+     * @param block the Block containing the instruction.
+     */
+    private Entry(Runnable operation, int cycles, int address, short next, Block block) {
+      this.operation = operation;
+      this.cycles = cycles;
+      this.address = address;
+      this.next = next;
+      this.block = block;
+    }
+  }
+
+  private static final Entry[] NO_ENTRIES = new Entry[0x10000];
+  private static final Block[] NO_OWNERS = new Block[0x10000];
+
+  private Entry[] entries = NO_ENTRIES;
+  private Block[] owners = NO_OWNERS;
+  private final long[] codePages = new long[4];
+
+  /**
+   * Get the decoded instruction at the given address.
+   *
+   * @param address the address of the instruction.
+   * @return the Entry, or null if there is no instruction at the address.
+   */
+  Entry get(int address) {
+    return entries[address & 0xFFFF];
+  }
+
+  /**
+   * Start a new Block.
+   *
+   * @param start the address of the first instruction.
+   * @return the new Block.
+   */
+  Block begin(int start) {
+    return new Block(start);
+  }
+
+  /**
+   * Return true if any of the addresses are owned by a Block.
+   *
+   * @param address the first address.
+   * @param length the number of addresses.
+   * @return true if any address is owned.
+   */
+  boolean owned(int address, int length) {
+    for(int i = 0; i < length; i++) {
+      if(owners[(address + i) & 0xFFFF] != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Invalidate every Block that owns any of the addresses.
+   *
+   * @param address the first address.
+   * @param length the number of addresses.
+   */
+  void release(int address, int length) {
+    for(int i = 0; i < length; i++) {
+      Block block = owners[(address + i) & 0xFFFF];
+      if(block != null) {
+        invalidate(block);
+      }
+    }
+  }
+
+  /**
+   * Add a decoded instruction to the end of a Block.
+   *
+   * @param block the Block to add to.
+   * @param previous the previous Entry in the Block, or null.
+   * @param operation the operation that runs the instruction.
+   * @param length the length of the instruction in bytes.
+   * @param cycles the number of cycles of the instruction.
+   * @return the new Entry.
+   */
+  Entry add(Block block, Entry previous, Runnable operation, int length, int cycles) {
+    if(entries == NO_ENTRIES) {
+      entries = new Entry[0x10000];
+      owners = new Block[0x10000];
+    }
+    int address = block.end;
+    Entry entry = new Entry(operation, cycles, address, (short)(address + length), block);
+    entries[address] = entry;
+    for(int i = 0; i < length; i++) {
+      int a = (address + i) & 0xFFFF;
+      owners[a] = block;
+      codePages[a >>> 14] |= 1L << ((a >>> 8) & 0x3F);
+    }
+    if(previous != null) {
+      previous.following = entry;
+    }
+    block.end = (address + length) & 0xFFFF;
+    return entry;
+  }
+
+  /**
+   * Note that an address has been written, invalidating the Block that
+   * owns it, if any.
+   *
+   * @param address the address that was written.
+   */
+  void written(int address) {
+    address &= 0xFFFF;
+    if((codePages[address >>> 14] & (1L << ((address >>> 8) & 0x3F))) != 0) {
+      Block block = owners[address];
+      if(block != null) {
+        invalidate(block);
+      }
+    }
+  }
+
+  /**
+   * Invalidate a Block, removing its instructions from the cache.
+   *
+   * @param block the Block to invalidate.
+   */
+  void invalidate(Block block) {
+    block.valid = false;
+    for(int a = block.start; a != block.end; a = (a + 1) & 0xFFFF) {
+      if(owners[a] == block) {
+        owners[a] = null;
+      }
+      if(entries[a] != null && entries[a].block == block) {
+        entries[a] = null;
+      }
+    }
+  }
+
+  /**
+   * Remove everything from the cache.
+   */
+  void clear() {
+    for(int page = 0; page < 0x100; page++) {
+      if((codePages[page >>> 6] & (1L << (page & 0x3F))) == 0) {
+        continue;
+      }
+      for(int a = page << 8; a < (page + 1) << 8; a++) {
+        if(owners[a] != null) {
+          owners[a].valid = false;
+        }
+        entries[a] = null;
+        owners[a] = null;
+      }
+    }
+    Arrays.fill(codePages, 0L);
+  }
+}
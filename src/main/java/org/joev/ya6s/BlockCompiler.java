@@ -0,0 +1,1241 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.joev.ya6s.AddressingMode.*;
+import static org.joev.ya6s.Instruction.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Compiles a Block of decoded instructions into the bytes of a JVM class,
+ * to be defined as a hidden nestmate of the processor.  The generated
+ * method keeps A, X, Y, S and P in locals, and only writes them back to
+ * the processor when it leaves the block, or before an instruction that
+ * is run by its cached operation instead.
+ *
+ * The generated code counts clock cycles as the FAST engine does, and
+ * leaves the processor to advance the scheduler by them once it returns.
+ * Before each read or write that may reach a device that cannot be
+ * cached, such as a timer, it tells the processor how many cycles will
+ * have elapsed at the end of the instruction, so the device sees the
+ * same cycle as it would with the CYCLE engine.
+ *
+ * The class file is written directly, since there is no class file API in
+ * the platform for the release the project targets.  Every label is given
+ * a full stack map frame; at each label the operand stack is empty, and
+ * every local has been assigned, so the frames are all the same.
+ */
+final class BlockCompiler {
+  /**
+   * The interface implemented by compiled blocks.
+   */
+  interface Code {
+    /**
+     * Run the compiled block from the given address until it branches
+     * out of the block, an interrupt is pending, the block is
+     * invalidated, or a backward branch finds the budget spent.  The
+     * processor is left with the next opcode fetched, as after a step.
+     *
+     * @param cpu the processor.
+     * @param block the Block that was compiled.
+     * @param address the address of the first instruction to run.
+     * @param budget the number of clock cycles after which backward
+     *               branches leave the block.
+     * @return the number of clock cycles that elapsed.
+     */
+    int run(W65C02S cpu, BlockCache.Block block, int address, int budget);
+  }
+
+  // Java 11, the first class file version with nestmates.
+  private static final int VERSION = 55;
+  private static final String NAME = "org/joev/ya6s/CompiledBlock";
+  private static final String CPU = "org/joev/ya6s/W65C02S";
+  private static final String BLOCK = "org/joev/ya6s/BlockCache$Block";
+  private static final String BACKPLANE = "org/joev/ya6s/Backplane";
+  private static final String ARITHMETIC = "org/joev/ya6s/Arithmetic";
+  private static final String SIGNAL = "org/joev/ya6s/signals/Signal";
+  private static final String CODE = "org/joev/ya6s/BlockCompiler$Code";
+  private static final String RUN = "(L" + CPU + ";L" + BLOCK + ";II)I";
+
+  // Locals of the run method.
+  private static final int L_THIS    = 0;
+  private static final int L_CPU     = 1;
+  private static final int L_BLOCK   = 2;
+  private static final int L_ADDRESS = 3;
+  private static final int L_BUDGET  = 4;
+  private static final int L_A       = 5;
+  private static final int L_X       = 6;
+  private static final int L_Y       = 7;
+  private static final int L_S       = 8;
+  private static final int L_P       = 9;
+  private static final int L_PC      = 10;
+  private static final int L_CLOCKS  = 11;
+  private static final int L_COUNT   = 12;
+  private static final int L_EA      = 13;
+  private static final int L_DATA    = 14;
+  private static final int L_BUS     = 15;
+  private static final int LOCALS    = 16;
+
+  // Processor status bits.
+  private static final int NEGATIVE          = 0x80;
+  private static final int OVERFLOW          = 0x40;
+  private static final int BREAK             = 0x10;
+  private static final int DECIMAL           = 0x08;
+  private static final int INTERRUPT_DISABLE = 0x04;
+  private static final int ZERO              = 0x02;
+  private static final int CARRY             = 0x01;
+  private static final int RESERVED          = 0x20;
+
+  // JVM opcodes.
+  private static final int ICONST_0      = 0x03;
+  private static final int BIPUSH        = 0x10;
+  private static final int SIPUSH        = 0x11;
+  private static final int LDC_W         = 0x13;
+  private static final int ILOAD         = 0x15;
+  private static final int ALOAD         = 0x19;
+  private static final int ALOAD_0       = 0x2A;
+  private static final int CALOAD        = 0x34;
+  private static final int ISTORE        = 0x36;
+  private static final int ASTORE        = 0x3A;
+  private static final int DUP           = 0x59;
+  private static final int IADD          = 0x60;
+  private static final int LADD          = 0x61;
+  private static final int ISUB          = 0x64;
+  private static final int ISHL          = 0x78;
+  private static final int ISHR          = 0x7A;
+  private static final int IUSHR         = 0x7C;
+  private static final int IAND          = 0x7E;
+  private static final int IOR           = 0x80;
+  private static final int IXOR          = 0x82;
+  private static final int IINC          = 0x84;
+  private static final int I2L           = 0x85;
+  private static final int I2B           = 0x91;
+  private static final int I2S           = 0x93;
+  private static final int IFEQ          = 0x99;
+  private static final int IFNE          = 0x9A;
+  private static final int IF_ICMPGE     = 0xA2;
+  private static final int GOTO          = 0xA7;
+  private static final int LOOKUPSWITCH  = 0xAB;
+  private static final int IRETURN       = 0xAC;
+  private static final int RETURN        = 0xB1;
+  private static final int GETSTATIC     = 0xB2;
+  private static final int GETFIELD      = 0xB4;
+  private static final int PUTFIELD      = 0xB5;
+  private static final int INVOKEVIRTUAL = 0xB6;
+  private static final int INVOKESPECIAL = 0xB7;
+
+  /**
+   * A position in the generated code.
+   */
+  private static final class Label {
+    private int offset = -1;
+    private final List<int[]> fixups = new ArrayList<>();
+  }
+
+  /**
+   * A decoded instruction of the block.
+   */
+  private record Decoded(int address, int opcode, Instruction instruction, AddressingMode mode, int lo, int word) {
+    int next() { return address + mode.length(); }
+  }
+
+  private final Backplane backplane;
+  private final List<Object> constants = new ArrayList<>();
+  private final Map<Object, Integer> constantIndex = new HashMap<>();
+  private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+  private final List<Label> labels = new ArrayList<>();
+  private final TreeSet<Integer> frames = new TreeSet<>();
+  private boolean reachable = true;
+
+  /**
+   * Create a compiler that reads instructions from the Backplane.
+   *
+   * @param backplane the Backplane.
+   */
+  private BlockCompiler(Backplane backplane) {
+    this.backplane = backplane;
+    constants.add(null); // The constant pool starts at index 1.
+  }
+
+  /**
+   * Compile a Block into the bytes of a class that implements Code.
+   *
+   * @param backplane the Backplane to read the instructions from.
+   * @param block the Block to compile.
+   * @return the class file bytes.
+   */
+  static byte[] compile(Backplane backplane, BlockCache.Block block) {
+    return new BlockCompiler(backplane).compile(block);
+  }
+
+  /**
+   * Compile a Block into the bytes of a class that implements Code.
+   *
+   * @param block the Block to compile.
+   * @return the class file bytes.
+   */
+  private byte[] compile(BlockCache.Block block) {
+    List<Decoded> decoded = new ArrayList<>();
+    for(int address = block.start(); (address & 0xFFFF) != block.end(); ) {
+      int opcode = backplane.peek(address) & 0xFF;
+      AddressingMode mode = W65C02S.addressingModes[opcode];
+      int lo = mode.length() > 1 ? backplane.peek(address + 1) & 0xFF : 0;
+      int word = mode.length() > 2 ? ((backplane.peek(address + 2) & 0xFF) << 8) | lo : lo;
+      decoded.add(new Decoded(address, opcode, W65C02S.instructions[opcode], mode, lo, word));
+      address += mode.length();
+    }
+
+    Map<Integer, Label> labels = new HashMap<>();
+    for(Decoded d: decoded) {
+      labels.put(d.address(), new Label());
+    }
+    Label exit = new Label();
+
+    prologue(decoded, labels, exit);
+    for(int i = 0; i < decoded.size(); i++) {
+      Decoded d = decoded.get(i);
+      bind(labels.get(d.address()));
+      if(i > 0 && isDecimal(decoded.get(i - 1).instruction())) {
+        // Take the decimal mode cycle of the previous instruction.
+        aload(L_CPU);
+        getfield(CPU, "extraCycles", "I");
+        iload(L_CLOCKS);
+        op(IADD);
+        istore(L_CLOCKS);
+        aload(L_CPU);
+        push(0);
+        putfield(CPU, "extraCycles", "I");
+      }
+      int cycles = d.mode().cycles().length;
+      iinc(L_COUNT, cycles);
+      iinc(L_CLOCKS, cycles);
+      instruction(d, labels, exit);
+      if(reachable) {
+        boolean last = i == decoded.size() - 1;
+        if(!last && writes(d.instruction(), d.mode())) {
+          Label valid = new Label();
+          aload(L_BLOCK);
+          invokevirtual(BLOCK, "valid", "()Z");
+          jump(IFNE, valid);
+          leave(d.next(), exit);
+          bind(valid);
+        }
+        if(!last) {
+          Label ready = new Label();
+          aload(L_CPU);
+          getfield(CPU, "irqb", "L" + SIGNAL + ";");
+          invokevirtual(SIGNAL, "value", "()Z");
+          jump(IFNE, ready);
+          iload(L_P);
+          push(INTERRUPT_DISABLE);
+          op(IAND);
+          jump(IFNE, ready);
+          leave(d.next(), exit);
+          bind(ready);
+        }
+        else {
+          leave(d.next(), exit);
+        }
+      }
+    }
+    epilogue(exit);
+    return classFile();
+  }
+
+  /**
+   * Load the registers into locals, and jump to the first instruction.
+   */
+  private void prologue(List<Decoded> decoded, Map<Integer, Label> labels, Label exit) {
+    String[] registers = { "a", "x", "y", "s", "p" };
+    for(int i = 0; i < registers.length; i++) {
+      reload(registers[i], L_A + i);
+    }
+    push(0);
+    istore(L_PC);
+    aload(L_CPU);
+    getfield(CPU, "extraCycles", "I");
+    istore(L_CLOCKS);
+    aload(L_CPU);
+    push(0);
+    putfield(CPU, "extraCycles", "I");
+    push(0);
+    istore(L_COUNT);
+    push(0);
+    istore(L_EA);
+    push(0);
+    istore(L_DATA);
+    aload(L_CPU);
+    getfield(CPU, "backplane", "L" + BACKPLANE + ";");
+    astore(L_BUS);
+
+    // An unknown address leaves without running anything.
+    iload(L_ADDRESS);
+    istore(L_PC);
+    iload(L_ADDRESS);
+    int start = code.size();
+    op(LOOKUPSWITCH);
+    while(code.size() % 4 != 0) {
+      code.write(0);
+    }
+    fixup(exit, start, true);
+    u4(decoded.size());
+    for(Decoded d: decoded) {
+      u4(d.address());
+      fixup(labels.get(d.address()), start, true);
+    }
+    reachable = false;
+  }
+
+  /**
+   * Write the registers back to the processor, fetch the opcode at the
+   * program counter local, and return the elapsed clock cycles.
+   */
+  private void epilogue(Label exit) {
+    bind(exit);
+    spill();
+    aload(L_CPU);
+    op(DUP);
+    getfield(CPU, "cycleCount", "J");
+    iload(L_COUNT);
+    op(I2L);
+    op(LADD);
+    putfield(CPU, "cycleCount", "J");
+    aload(L_CPU);
+    iload(L_PC);
+    invokevirtual(CPU, "fetchOpcode", "(I)V");
+    iload(L_CLOCKS);
+    op(IRETURN);
+    reachable = false;
+  }
+
+  /**
+   * Leave the block, continuing at the given address.
+   */
+  private void leave(int address, Label exit) {
+    push(address & 0xFFFF);
+    istore(L_PC);
+    jump(GOTO, exit);
+  }
+
+  /**
+   * Return true if the instruction is ADC or SBC, which may take an extra
+   * cycle in decimal mode.
+   */
+  private static boolean isDecimal(Instruction instruction) {
+    return instruction == ADC || instruction == SBC;
+  }
+
+  /**
+   * Return true if the instruction may write to memory.
+   */
+  private static boolean writes(Instruction instruction, AddressingMode mode) {
+    return switch(instruction) {
+      case STA, STX, STY, STZ, TRB, TSB, RMB, SMB, PHA, PHX, PHY, PHP -> true;
+      case ASL, ROL, LSR, ROR, INC, DEC -> mode != ACCUMULATOR;
+      default -> false;
+    };
+  }
+
+  /**
+   * Generate the code for an instruction.
+   */
+  private void instruction(Decoded d, Map<Integer, Label> labels, Label exit) {
+    switch(d.instruction()) {
+      case LDA -> { operand(d); istore(L_A); setNZ(L_A); }
+      case LDX -> { operand(d); istore(L_X); setNZ(L_X); }
+      case LDY -> { operand(d); istore(L_Y); setNZ(L_Y); }
+      case ORA -> { operand(d); iload(L_A); op(IOR); istore(L_A); setNZ(L_A); }
+      case AND -> { operand(d); iload(L_A); op(IAND); istore(L_A); setNZ(L_A); }
+      case EOR -> { operand(d); iload(L_A); op(IXOR); istore(L_A); setNZ(L_A); }
+      case CMP -> compare(d, L_A);
+      case CPX -> compare(d, L_X);
+      case CPY -> compare(d, L_Y);
+      case BIT -> {
+        operand(d);
+        istore(L_DATA);
+        iload(L_P);
+        push(~ZERO & 0xFF);
+        op(IAND);
+        iload(L_A);
+        iload(L_DATA);
+        op(IAND);
+        zeroBit();
+        op(IOR);
+        istore(L_P);
+        if(d.mode() != IMMEDIATE) {
+          // BIT Immediate does not modify V or N.
+          iload(L_P);
+          push(~(NEGATIVE | OVERFLOW) & 0xFF);
+          op(IAND);
+          iload(L_DATA);
+          push(NEGATIVE | OVERFLOW);
+          op(IAND);
+          op(IOR);
+          istore(L_P);
+        }
+      }
+      case ADC, SBC -> add(d);
+
+      case STA -> store(d, L_A);
+      case STX -> store(d, L_X);
+      case STY -> store(d, L_Y);
+      case STZ -> {
+        address(d);
+        clocks();
+        aload(L_CPU);
+        iload(L_EA);
+        push(0);
+        invokevirtual(CPU, "write", "(IB)V");
+      }
+
+      case ASL, ROL, LSR, ROR, INC, DEC -> {
+        if(d.mode() == ACCUMULATOR) {
+          iload(L_A);
+          istore(L_DATA);
+          modify(d.instruction());
+          iload(L_DATA);
+          istore(L_A);
+        }
+        else {
+          address(d);
+          clocks();
+          aload(L_CPU);
+          iload(L_EA);
+          invokevirtual(CPU, "readModify", "(I)B");
+          mask();
+          istore(L_DATA);
+          modify(d.instruction());
+          write(L_DATA);
+        }
+      }
+
+      case BPL -> branch(d, NEGATIVE, false, labels, exit);
+      case BMI -> branch(d, NEGATIVE, true, labels, exit);
+      case BVC -> branch(d, OVERFLOW, false, labels, exit);
+      case BVS -> branch(d, OVERFLOW, true, labels, exit);
+      case BCC -> branch(d, CARRY, false, labels, exit);
+      case BCS -> branch(d, CARRY, true, labels, exit);
+      case BNE -> branch(d, ZERO, false, labels, exit);
+      case BEQ -> branch(d, ZERO, true, labels, exit);
+      case BRA -> branch(d, 0, true, labels, exit);
+
+      case JMP -> {
+        switch(d.mode()) {
+          case ABSOLUTE_INDIRECT -> readWord(() -> push(d.word() + 1), () -> push(d.word()));
+          case ABSOLUTE_INDEXED_INDIRECT -> readWord(
+            () -> { push(d.word() + 1); iload(L_X); op(IADD); },
+            () -> { push(d.word()); iload(L_X); op(IADD); });
+          default -> push(d.word());
+        }
+        istore(L_PC);
+        jump(GOTO, exit);
+      }
+      case JSR -> {
+        // The high byte of the target is read after the return address is
+        // pushed, in case the push overwrote it.
+        int ret = (d.next() - 1) & 0xFFFF;
+        pushStack(() -> push(ret >> 8));
+        pushStack(() -> push(ret & 0xFF));
+        read(() -> push(ret));
+        push(8);
+        op(ISHL);
+        push(d.lo());
+        op(IOR);
+        istore(L_PC);
+        jump(GOTO, exit);
+      }
+      case RTS -> {
+        pull();
+        istore(L_DATA);
+        pull();
+        push(8);
+        op(ISHL);
+        iload(L_DATA);
+        op(IOR);
+        push(1);
+        op(IADD);
+        push(0xFFFF);
+        op(IAND);
+        istore(L_PC);
+        jump(GOTO, exit);
+      }
+
+      case PHA -> pushStack(() -> iload(L_A));
+      case PHX -> pushStack(() -> iload(L_X));
+      case PHY -> pushStack(() -> iload(L_Y));
+      case PHP -> pushStack(() -> { iload(L_P); push(BREAK); op(IOR); });
+      case PLA -> { pull(); istore(L_A); setNZ(L_A); }
+      case PLX -> { pull(); istore(L_X); setNZ(L_X); }
+      case PLY -> { pull(); istore(L_Y); setNZ(L_Y); }
+      case PLP -> { pull(); push(RESERVED); op(IOR); push(~BREAK & 0xFF); op(IAND); istore(L_P); }
+
+      case CLC -> flag(CARRY, false);
+      case SEC -> flag(CARRY, true);
+      case CLD -> flag(DECIMAL, false);
+      case SED -> flag(DECIMAL, true);
+      case CLI -> flag(INTERRUPT_DISABLE, false);
+      case SEI -> flag(INTERRUPT_DISABLE, true);
+      case CLV -> flag(OVERFLOW, false);
+      case DEX -> { iload(L_X); push(1); op(ISUB); mask(); istore(L_X); setNZ(L_X); }
+      case DEY -> { iload(L_Y); push(1); op(ISUB); mask(); istore(L_Y); setNZ(L_Y); }
+      case INX -> { iload(L_X); push(1); op(IADD); mask(); istore(L_X); setNZ(L_X); }
+      case INY -> { iload(L_Y); push(1); op(IADD); mask(); istore(L_Y); setNZ(L_Y); }
+
+      case TAX -> { iload(L_A); istore(L_X); setNZ(L_X); }
+      case TAY -> { iload(L_A); istore(L_Y); setNZ(L_Y); }
+      case TXA -> { iload(L_X); istore(L_A); setNZ(L_A); }
+      case TYA -> { iload(L_Y); istore(L_A); setNZ(L_A); }
+      case TSX -> { iload(L_S); istore(L_X); setNZ(L_X); }
+      case TXS -> { iload(L_X); istore(L_S); } // TXS does not set NZ.
+
+      // The program counter is already past the operands of NOP and
+      // undefined instructions.
+      case NOP, XXX -> { }
+
+      // Everything else is run by its cached operation.
+      default -> {
+        spill();
+        clocks();
+        aload(L_CPU);
+        push(d.next() & 0xFFFF);
+        op(I2S);
+        putfield(CPU, "pc", "S");
+        aload(L_CPU);
+        push(d.address());
+        invokevirtual(CPU, "operation", "(I)V");
+        String[] registers = { "a", "x", "y", "s", "p" };
+        for(int i = 0; i < registers.length; i++) {
+          reload(registers[i], L_A + i);
+        }
+        switch(d.instruction()) {
+          case BBR, BBS, RTI, BRK -> {
+            aload(L_CPU);
+            getfield(CPU, "pc", "S");
+            push(0xFFFF);
+            op(IAND);
+            istore(L_PC);
+            jump(GOTO, exit);
+          }
+          default -> { }
+        }
+      }
+    }
+  }
+
+  /**
+   * Push the operand of an instruction that reads memory.
+   */
+  private void operand(Decoded d) {
+    if(d.mode() == IMMEDIATE) {
+      push(d.lo());
+    }
+    else {
+      address(d);
+      read(d, () -> iload(L_EA));
+    }
+  }
+
+  /**
+   * Calculate the effective address of an instruction into the EA local.
+   * Indexing by Y adds a cycle if a page is crossed, as the FAST engine
+   * does.
+   */
+  private void address(Decoded d) {
+    switch(d.mode()) {
+      case ZERO_PAGE_X, ZERO_PAGE_X_W, ZERO_PAGE_X_RMW -> { push(d.lo()); iload(L_X); op(IADD); mask(); }
+      case ZERO_PAGE_Y, ZERO_PAGE_Y_W -> { push(d.lo()); iload(L_Y); op(IADD); mask(); }
+      case ABSOLUTE_X, ABSOLUTE_X_W, ABSOLUTE_X_RMW -> { push(d.word()); iload(L_X); op(IADD); push(0xFFFF); op(IAND); }
+      case ABSOLUTE_Y, ABSOLUTE_Y_W -> push(d.word());
+      case ZERO_PAGE_INDEXED, ZERO_PAGE_INDEXED_W -> zeroPageWord(() -> push((d.lo() + 1) & 0xFF), () -> push(d.lo()));
+      case ZERO_PAGE_INDIRECT_X, ZERO_PAGE_INDIRECT_X_W -> zeroPageWord(
+        () -> { push(d.lo() + 1); iload(L_X); op(IADD); mask(); },
+        () -> { push(d.lo()); iload(L_X); op(IADD); mask(); });
+      case ZERO_PAGE_INDIRECT, ZERO_PAGE_INDIRECT_W -> zeroPageWord(() -> push((d.lo() + 1) & 0xFF), () -> push(d.lo()));
+      default -> push(d.word());
+    }
+    istore(L_EA);
+    switch(d.mode()) {
+      case ABSOLUTE_Y, ABSOLUTE_Y_W, ZERO_PAGE_INDEXED, ZERO_PAGE_INDEXED_W -> indexY();
+      default -> { }
+    }
+  }
+
+  /**
+   * Add the Y register to the EA local, adding a cycle if a page is crossed.
+   */
+  private void indexY() {
+    iload(L_CLOCKS);
+    iload(L_EA);
+    mask();
+    iload(L_Y);
+    op(IADD);
+    push(8);
+    op(ISHR);
+    op(IADD);
+    istore(L_CLOCKS);
+    iload(L_EA);
+    iload(L_Y);
+    op(IADD);
+    push(0xFFFF);
+    op(IAND);
+    istore(L_EA);
+  }
+
+  /**
+   * Read a little-endian word, high byte first, as the FAST engine does.
+   */
+  private void readWord(Runnable high, Runnable low) {
+    read(high);
+    push(8);
+    op(ISHL);
+    read(low);
+    op(IOR);
+  }
+
+  /**
+   * Read a little-endian word from the zero page, high byte first.
+   */
+  private void zeroPageWord(Runnable high, Runnable low) {
+    readThrough(high);
+    push(8);
+    op(ISHL);
+    readThrough(low);
+    op(IOR);
+  }
+
+  /**
+   * Read a byte from the Backplane as an unsigned int.
+   */
+  private void read(Runnable address) {
+    aload(L_BUS);
+    address.run();
+    invokevirtual(BACKPLANE, "read", "(I)B");
+    mask();
+  }
+
+  /**
+   * Read a byte as an unsigned int through the processor, which reads the
+   * zero page and the stack from their arrays when it has them, and brings
+   * the scheduler up to the cycle of the read for a device that cannot be
+   * cached.
+   */
+  private void readThrough(Runnable address) {
+    clocks();
+    aload(L_CPU);
+    address.run();
+    invokevirtual(CPU, "read", "(I)B");
+    mask();
+  }
+
+  /**
+   * Read the operand of an instruction as an unsigned int, from the
+   * Backplane only if it is at an address known to be in a page without
+   * devices that cannot be cached.
+   */
+  private void read(Decoded d, Runnable address) {
+    if(d.mode() == ABSOLUTE && !backplane.timed(d.word() >>> 8)) {
+      read(address);
+    }
+    else {
+      readThrough(address);
+    }
+  }
+
+  /**
+   * Tell the processor how many cycles of the block will have elapsed at
+   * the end of the current instruction, before it reads or writes memory.
+   */
+  private void clocks() {
+    aload(L_CPU);
+    iload(L_CLOCKS);
+    putfield(CPU, "stepClocks", "I");
+  }
+
+  /**
+   * Write a local to the effective address.
+   */
+  private void write(int local) {
+    clocks();
+    aload(L_CPU);
+    iload(L_EA);
+    iload(local);
+    op(I2B);
+    invokevirtual(CPU, "write", "(IB)V");
+  }
+
+  /**
+   * Store a register to the effective address.
+   */
+  private void store(Decoded d, int register) {
+    address(d);
+    write(register);
+  }
+
+  /**
+   * Push a byte on to the stack.
+   */
+  private void pushStack(Runnable value) {
+    clocks();
+    aload(L_CPU);
+    push(0x100);
+    iload(L_S);
+    op(IOR);
+    value.run();
+    op(I2B);
+    invokevirtual(CPU, "write", "(IB)V");
+    iload(L_S);
+    push(1);
+    op(ISUB);
+    mask();
+    istore(L_S);
+  }
+
+  /**
+   * Pull a byte from the stack.
+   */
+  private void pull() {
+    iload(L_S);
+    push(1);
+    op(IADD);
+    mask();
+    istore(L_S);
+    readThrough(() -> { push(0x100); iload(L_S); op(IOR); });
+  }
+
+  /**
+   * Compare a register with the operand.
+   */
+  private void compare(Decoded d, int register) {
+    iload(register);
+    operand(d);
+    op(ISUB);
+    istore(L_EA);
+    iload(L_EA);
+    mask();
+    istore(L_DATA);
+    setNZ(L_DATA);
+    iload(L_P);
+    push(~CARRY & 0xFF);
+    op(IAND);
+    iload(L_EA);
+    push(-1);
+    op(IXOR);
+    push(31);
+    op(IUSHR);
+    op(IOR);
+    istore(L_P);
+  }
+
+  /**
+   * Add the operand to, or subtract it from, the accumulator, by looking
+   * up the result and flags in the processor's Arithmetic tables.  The
+   * extra cycle of decimal mode is left in extraCycles, as the processor
+   * does.
+   */
+  private void add(Decoded d) {
+    operand(d);
+    istore(L_DATA);
+
+    // extraCycles += D
+    aload(L_CPU);
+    op(DUP);
+    getfield(CPU, "extraCycles", "I");
+    iload(L_P);
+    push(DECIMAL);
+    op(IAND);
+    push(3);
+    op(ISHR);
+    op(IADD);
+    putfield(CPU, "extraCycles", "I");
+    // entry = table[D << 14 | C << 16 | A << 8 | data]
+    getstatic(ARITHMETIC, d.instruction() == ADC ? "ADC" : "SBC", "[C");
+    iload(L_P);
+    push(DECIMAL);
+    op(IAND);
+    push(14);
+    op(ISHL);
+    iload(L_P);
+    push(CARRY);
+    op(IAND);
+    push(16);
+    op(ISHL);
+    op(IOR);
+    iload(L_A);
+    push(8);
+    op(ISHL);
+    op(IOR);
+    iload(L_DATA);
+    op(IOR);
+    op(CALOAD);
+    istore(L_EA);
+    // P = P & ~(V | C) | V | C, moved down from bits 9 and 8.
+    iload(L_P);
+    push(~(OVERFLOW | CARRY) & 0xFF);
+    op(IAND);
+    iload(L_EA);
+    push(8);
+    op(ISHR);
+    push(CARRY);
+    op(IAND);
+    op(IOR);
+    iload(L_EA);
+    push(3);
+    op(ISHR);
+    push(OVERFLOW);
+    op(IAND);
+    op(IOR);
+    istore(L_P);
+    iload(L_EA);
+    mask();
+    istore(L_A);
+    setNZ(L_A);
+  }
+
+  /**
+   * Apply a read-modify-write instruction to the DATA local.
+   */
+  private void modify(Instruction instruction) {
+    switch(instruction) {
+      case ASL, ROL -> {
+        iload(L_DATA);
+        push(1);
+        op(ISHL);
+        if(instruction == ROL) {
+          iload(L_P);
+          push(CARRY);
+          op(IAND);
+          op(IOR);
+        }
+        istore(L_DATA);
+        iload(L_P);
+        push(~CARRY & 0xFF);
+        op(IAND);
+        iload(L_DATA);
+        push(8);
+        op(ISHR);
+        op(IOR);
+        istore(L_P);
+        iload(L_DATA);
+        mask();
+        istore(L_DATA);
+      }
+      case LSR, ROR -> {
+        iload(L_DATA);
+        push(1);
+        op(ISHR);
+        if(instruction == ROR) {
+          iload(L_P);
+          push(CARRY);
+          op(IAND);
+          push(7);
+          op(ISHL);
+          op(IOR);
+        }
+        iload(L_P);
+        push(~CARRY & 0xFF);
+        op(IAND);
+        iload(L_DATA);
+        push(CARRY);
+        op(IAND);
+        op(IOR);
+        istore(L_P);
+        istore(L_DATA);
+      }
+      case INC, DEC -> {
+        iload(L_DATA);
+        push(1);
+        op(instruction == INC ? IADD : ISUB);
+        mask();
+        istore(L_DATA);
+      }
+      default -> throw new IllegalArgumentException(instruction.toString());
+    }
+    setNZ(L_DATA);
+  }
+
+  /**
+   * Take a relative branch if the flag has the given value.  A branch back
+   * into the block stays in the compiled code while there is budget left,
+   * and no interrupt is pending.
+   */
+  private void branch(Decoded d, int flag, boolean set, Map<Integer, Label> labels, Label exit) {
+    int next = d.next() & 0xFFFF;
+    int target = (next + (byte)d.lo()) & 0xFFFF;
+    int extra = ((next & 0xFF00) == (target & 0xFF00)) ? 1 : 2;
+
+    if(flag != 0) {
+      Label taken = new Label();
+      iload(L_P);
+      push(flag);
+      op(IAND);
+      jump(set ? IFNE : IFEQ, taken);
+      leave(next, exit);
+      bind(taken);
+    }
+    Label inside = labels.get(target);
+    if(inside != null) {
+      Label leaveTaken = new Label();
+      iload(L_CLOCKS);
+      iload(L_BUDGET);
+      jump(IF_ICMPGE, leaveTaken);
+      aload(L_CPU);
+      getfield(CPU, "irqb", "L" + SIGNAL + ";");
+      invokevirtual(SIGNAL, "value", "()Z");
+      Label loop = new Label();
+      jump(IFNE, loop);
+      iload(L_P);
+      push(INTERRUPT_DISABLE);
+      op(IAND);
+      jump(IFEQ, leaveTaken);
+      bind(loop);
+      // Stay in the block, taking the branch cycles now.
+      iinc(L_CLOCKS, extra);
+      jump(GOTO, inside);
+      bind(leaveTaken);
+    }
+    // Leave the block, taking the branch cycles after the next opcode fetch.
+    aload(L_CPU);
+    op(DUP);
+    getfield(CPU, "extraCycles", "I");
+    push(extra);
+    op(IADD);
+    putfield(CPU, "extraCycles", "I");
+    leave(target, exit);
+  }
+
+  /**
+   * Set or clear a processor status flag.
+   */
+  private void flag(int flag, boolean set) {
+    iload(L_P);
+    push(set ? flag : ~flag & 0xFF);
+    op(set ? IOR : IAND);
+    istore(L_P);
+  }
+
+  /**
+   * Set the N and Z flags from the value of a local.
+   */
+  private void setNZ(int local) {
+    iload(L_P);
+    push(~(NEGATIVE | ZERO) & 0xFF);
+    op(IAND);
+    iload(local);
+    push(NEGATIVE);
+    op(IAND);
+    op(IOR);
+    iload(local);
+    zeroBit();
+    op(IOR);
+    istore(L_P);
+  }
+
+  /**
+   * Replace the byte value on the stack with the Z flag bit: ZERO if it is
+   * zero, otherwise 0.
+   */
+  private void zeroBit() {
+    push(1);
+    op(ISUB);
+    push(31);
+    op(ISHR);
+    push(ZERO);
+    op(IAND);
+  }
+
+  /**
+   * Mask the int on the stack to a byte.
+   */
+  private void mask() {
+    push(0xFF);
+    op(IAND);
+  }
+
+  /**
+   * Write the register locals back to the processor.  The processor keeps
+   * some status flags outside of p, so the status goes through p(byte).
+   */
+  private void spill() {
+    String[] registers = { "a", "x", "y", "s", "p" };
+    for(int i = 0; i < registers.length; i++) {
+      aload(L_CPU);
+      iload(L_A + i);
+      op(I2B);
+      if(registers[i].equals("p")) {
+        invokevirtual(CPU, "p", "(B)V");
+      }
+      else {
+        putfield(CPU, registers[i], "B");
+      }
+    }
+  }
+
+  /**
+   * Read a register from the processor into a local.
+   */
+  private void reload(String register, int local) {
+    aload(L_CPU);
+    if(register.equals("p")) {
+      invokevirtual(CPU, "p", "()B");
+    }
+    else {
+      getfield(CPU, register, "B");
+    }
+    mask();
+    istore(local);
+  }
+
+  // Bytecode emission.
+
+  private void op(int opcode) {
+    if(!reachable) {
+      throw new IllegalStateException("unreachable code");
+    }
+    code.write(opcode);
+  }
+
+  private void u2(int value) {
+    code.write(value >> 8);
+    code.write(value);
+  }
+
+  private void u4(int value) {
+    u2(value >>> 16);
+    u2(value & 0xFFFF);
+  }
+
+  private void push(int value) {
+    if(value >= -1 && value <= 5) {
+      op(ICONST_0 + value);
+    }
+    else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      op(BIPUSH);
+      code.write(value);
+    }
+    else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      op(SIPUSH);
+      u2(value);
+    }
+    else {
+      op(LDC_W);
+      u2(constant(value));
+    }
+  }
+
+  private void iload(int local) { op(ILOAD); code.write(local); }
+  private void istore(int local) { op(ISTORE); code.write(local); }
+  private void aload(int local) { op(ALOAD); code.write(local); }
+  private void astore(int local) { op(ASTORE); code.write(local); }
+
+  private void iinc(int local, int delta) {
+    op(IINC);
+    code.write(local);
+    code.write(delta);
+  }
+
+  private void getstatic(String owner, String name, String descriptor) {
+    op(GETSTATIC);
+    u2(constant(new Ref(9, owner, name, descriptor)));
+  }
+
+  private void getfield(String owner, String name, String descriptor) {
+    op(GETFIELD);
+    u2(constant(new Ref(9, owner, name, descriptor)));
+  }
+
+  private void putfield(String owner, String name, String descriptor) {
+    op(PUTFIELD);
+    u2(constant(new Ref(9, owner, name, descriptor)));
+  }
+
+  private void invokevirtual(String owner, String name, String descriptor) {
+    op(INVOKEVIRTUAL);
+    u2(constant(new Ref(10, owner, name, descriptor)));
+  }
+
+  private void jump(int opcode, Label label) {
+    int start = code.size();
+    op(opcode);
+    fixup(label, start, false);
+    if(opcode == GOTO) {
+      reachable = false;
+    }
+  }
+
+  private void fixup(Label label, int start, boolean wide) {
+    if(label.fixups.isEmpty()) {
+      labels.add(label);
+    }
+    label.fixups.add(new int[] { start, code.size(), wide ? 4 : 2 });
+    if(wide) {
+      u4(0);
+    }
+    else {
+      u2(0);
+    }
+  }
+
+  private void bind(Label label) {
+    label.offset = code.size();
+    frames.add(label.offset);
+    reachable = true;
+  }
+
+  // Constant pool entries.
+
+  private record Ref(int tag, String owner, String name, String descriptor) { }
+  private record ClassRef(String name) { }
+  private record NameAndType(String name, String descriptor) { }
+
+  private int constant(Object value) {
+    Integer index = constantIndex.get(value);
+    if(index != null) {
+      return index;
+    }
+    switch(value) {
+      case Ref r -> { constant(new ClassRef(r.owner())); constant(new NameAndType(r.name(), r.descriptor())); }
+      case ClassRef c -> constant(c.name());
+      case NameAndType n -> { constant(n.name()); constant(n.descriptor()); }
+      default -> { }
+    }
+    constants.add(value);
+    constantIndex.put(value, constants.size() - 1);
+    return constants.size() - 1;
+  }
+
+  /**
+   * Assemble the class file.
+   */
+  private byte[] classFile() {
+    byte[] run = code.toByteArray();
+    for(Label label: labels) {
+      for(int[] fixup: label.fixups) {
+        int delta = label.offset - fixup[0];
+        for(int i = 0; i < fixup[2]; i++) {
+          run[fixup[1] + i] = (byte)(delta >> (8 * (fixup[2] - 1 - i)));
+        }
+      }
+    }
+
+    int thisClass = constant(new ClassRef(NAME));
+    int superClass = constant(new ClassRef("java/lang/Object"));
+    int codeInterface = constant(new ClassRef(CODE));
+    int init = constant(new Ref(10, "java/lang/Object", "<init>", "()V"));
+    int initName = constant("<init>");
+    int initType = constant("()V");
+    int runName = constant("run");
+    int runType = constant(RUN);
+    int codeName = constant("Code");
+    int stackMapName = constant("StackMapTable");
+    int cpuClass = constant(new ClassRef(CPU));
+    int blockClass = constant(new ClassRef(BLOCK));
+    int busClass = constant(new ClassRef(BACKPLANE));
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(VERSION);
+      out.writeShort(constants.size());
+      for(int i = 1; i < constants.size(); i++) {
+        switch(constants.get(i)) {
+          case String s -> { out.writeByte(1); out.writeUTF(s); }
+          case Integer n -> { out.writeByte(3); out.writeInt(n); }
+          case ClassRef c -> { out.writeByte(7); out.writeShort(constantIndex.get(c.name())); }
+          case NameAndType n -> {
+            out.writeByte(12);
+            out.writeShort(constantIndex.get(n.name()));
+            out.writeShort(constantIndex.get(n.descriptor()));
+          }
+          case Ref r -> {
+            out.writeByte(r.tag());
+            out.writeShort(constantIndex.get(new ClassRef(r.owner())));
+            out.writeShort(constantIndex.get(new NameAndType(r.name(), r.descriptor())));
+          }
+          default -> throw new IllegalStateException();
+        }
+      }
+      out.writeShort(0x0030); // ACC_FINAL | ACC_SUPER
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(1);
+      out.writeShort(codeInterface);
+      out.writeShort(0); // fields
+      out.writeShort(2); // methods
+
+      // public <init>() { super(); }
+      out.writeShort(0x0001);
+      out.writeShort(initName);
+      out.writeShort(initType);
+      out.writeShort(1);
+      out.writeShort(codeName);
+      out.writeInt(12 + 5);
+      out.writeShort(1);
+      out.writeShort(1);
+      out.writeInt(5);
+      out.writeByte(ALOAD_0);
+      out.writeByte(INVOKESPECIAL);
+      out.writeShort(init);
+      out.writeByte(RETURN);
+      out.writeShort(0);
+      out.writeShort(0);
+
+      // public int run(W65C02S, Block, int, int)
+      ByteArrayOutputStream map = new ByteArrayOutputStream();
+      DataOutputStream frameOut = new DataOutputStream(map);
+      int previous = -1;
+      for(int offset: frames) {
+        frameOut.writeByte(255);
+        frameOut.writeShort(offset - previous - 1);
+        frameOut.writeShort(LOCALS);
+        frameOut.writeByte(7);
+        frameOut.writeShort(thisClass);
+        frameOut.writeByte(7);
+        frameOut.writeShort(cpuClass);
+        frameOut.writeByte(7);
+        frameOut.writeShort(blockClass);
+        for(int i = L_ADDRESS; i < L_BUS; i++) {
+          frameOut.writeByte(1);
+        }
+        frameOut.writeByte(7);
+        frameOut.writeShort(busClass);
+        frameOut.writeShort(0);
+        previous = offset;
+      }
+      byte[] frameBytes = map.toByteArray();
+
+      out.writeShort(0x0001);
+      out.writeShort(runName);
+      out.writeShort(runType);
+      out.writeShort(1);
+      out.writeShort(codeName);
+      out.writeInt(12 + run.length + 8 + frameBytes.length);
+      out.writeShort(16);
+      out.writeShort(LOCALS);
+      out.writeInt(run.length);
+      out.write(run);
+      out.writeShort(0);
+      out.writeShort(1);
+      out.writeShort(stackMapName);
+      out.writeInt(2 + frameBytes.length);
+      out.writeShort(frames.size());
+      out.write(frameBytes);
+
+      out.writeShort(0); // attributes
+      return bytes.toByteArray();
+    }
+    catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+}
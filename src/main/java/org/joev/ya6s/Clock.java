@@ -10,6 +10,7 @@ import org.joev.ya6s.signals.Signal;
  */
 public final class Clock {
   private final Signal clock;
+  private final W65C02S cpu;
   private Thread thread = null;
 
   private volatile boolean running = false;
@@ -25,6 +26,17 @@ public final class Clock {
     this(clock, Double.MAX_VALUE);
   }
 
+  /**
+   * Create a Clock for the Signal with the fastest possible frequency,
+   * that steps the processor when its FAST engine is selected.
+   *
+   * @param clock the Signal to cycle.
+   * @param cpu the processor driven by the Signal.
+   */
+  public Clock(Signal clock, W65C02S cpu) {
+    this(clock, Double.MAX_VALUE, cpu);
+  }
+
   /**
    * Create a Clock for the given Signal at the given frequency.
    *
@@ -32,9 +44,21 @@ public final class Clock {
    * @param frequency the maximum frequency in hertz.
    */
   public Clock(Signal clock, double frequency) {
+    this(clock, frequency, null);
+  }
+
+  /**
+   * Create a Clock for the given Signal at the given frequency.
+   *
+   * @param clock the signal to cycle.
+   * @param frequency the maximum frequency in hertz.
+   * @param cpu the processor driven by the Signal, or null.
+   */
+  private Clock(Signal clock, double frequency, W65C02S cpu) {
     frequency *= 2;
     frequency(frequency);
     this.clock = clock;
+    this.cpu = cpu;
   }
 
   /**
@@ -75,7 +99,8 @@ public final class Clock {
    * Start the clock.  Creates a new thread and switches the Signal until
    * the Clock is stopped.  The clock is delayed based on the frequency.
    * If the frequency is Double.MAX_VALUE, the clock will run as fast
-   * as possible.
+   * as possible, running the processor an instruction or a compiled block at a time
+   * if its FAST engine is selected.
    *
    * This method does nothing if the clock is already running.
    */
@@ -85,8 +110,13 @@ public final class Clock {
         () -> {
           clock.value(true);
           while(running) {
-            clock.value(false);
-            clock.value(true);
+            if(cpu != null && cpu.engine() == W65C02S.Engine.FAST) {
+              cpu.run();
+            }
+            else {
+              clock.value(false);
+              clock.value(true);
+            }
           }
        } :
        () -> {
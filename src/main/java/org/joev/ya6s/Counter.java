@@ -2,10 +2,12 @@
 
 package org.joev.ya6s;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
 
-import org.joev.ya6s.signals.Bus;
-import org.joev.ya6s.signals.Signal;
+import org.joev.ya6s.signals.OpenCollector;
 
 /**
  * 24-bit counter that counts down each clock cycle.
@@ -21,7 +23,10 @@ import org.joev.ya6s.signals.Signal;
  *   bit 6: Zero (can be read with BIT)
  *   bit 7: reserved for Error
  *
- * Each click rising edge decrements the counter value, if counter enabled.
+ * Each clock cycle decrements the counter value, if counter enabled.  The
+ * counter schedules the cycle at which it reaches zero, rather than
+ * watching every clock edge, and stops counting there.  Enabling the
+ * counter while its value is zero leaves it stopped.
  *
  * Sample program that counts down from one million, then halts.  The counter
  * base address is $F100.
@@ -53,16 +58,15 @@ import org.joev.ya6s.signals.Signal;
  *         STP                     ; Halt
  * </code>
  */
-public final class Counter {
-  private final Backplane backplane;
+public final class Counter implements Addressable, Snapshottable, Forkable {
+  private final OpenCollector irqb;
+  private final int irqSlot;
+  private final Scheduler scheduler;
   private final short baseAddress;
-  private final Signal.Listener tickFn;
-
-  private final Bus address;
-  private final Bus data;
-  private final Signal rwb;
+  private final Runnable zeroFn;
 
   private int counter = 0;
+  private long zeroCycle = 0;
   private byte control = (byte) 0;
 
   private static final byte COUNTER_ENABLE = 0x01;
@@ -79,80 +83,141 @@ public final class Counter {
     if(!options.containsKey("base")) {
       throw new IllegalArgumentException("Missing \"base\" option.");
     }
-    this.backplane = backplane;
+    this.scheduler = backplane.scheduler();
+    this.irqb = backplane.irqb();
 
     baseAddress = (short)Integer.parseUnsignedInt(options.get("base"), 16);
-    tickFn = this::tick;
+    zeroFn = this::zero;
+
+    backplane.attach(this);
+    backplane.addSnapshottable(this);
+    irqSlot = irqb.attach(this);
+  }
 
-    address = backplane.address();
-    data = backplane.data();
-    rwb = backplane.rwb();
+  @Override
+  public int base() { return baseAddress & 0xFFFF; }
 
-    backplane.clock().register(tickFn);
+  @Override
+  public int size() { return 4; }
+
+  @Override
+  public boolean pollable(int address) {
+    // The counter value changes on every cycle, but the control register
+    // only changes when it is written, or when the counter reaches zero.
+    return (address & 0x3) == 3;
   }
 
-  /**
-   * Process a tick.  Decrements counter on each rising clock edge if the
-   * counter enable bit is set.  Sets the zero bit if the counter is zero.
-   */
-  private void tick(Signal.EventType eventType) {
-    if (eventType != Signal.EventType.POSITIVE_EDGE) {
-      return;
-    }
-    if ((control & COUNTER_ENABLE) != 0) {
-      counter--;
+  @Override
+  public byte read(int address) {
+    return switch(address & 0x3) {
+      case 0 -> (byte) (counter() & 0xFF);
+      case 1 -> (byte) ((counter() >> 8) & 0xFF);
+      case 2 -> (byte) ((counter() >> 16) & 0xFF);
+      default -> control;
+    };
+  }
+
+  @Override
+  public void write(int address, byte value) {
+    boolean enabled = (control & COUNTER_ENABLE) != 0;
+    switch(address & 0x3) {
+      case 0:
+        if (!enabled) {
+          counter = ((counter & ~0xFF) | (value & 0xFF));
+        }
+        break;
+      case 1:
+        if (!enabled) {
+          counter = ((counter & ~0xFF00) | ((value & 0xFF) << 8));
+        }
+        break;
+      case 2:
+        if (!enabled) {
+          counter = ((counter & ~0xFF0000) | ((value & 0xFF) << 16));
+        }
+        break;
+      default:
+        if(enabled) {
+          counter = counter();
+          scheduler.cancel(zeroFn);
+        }
+        control = (byte) (value & (COUNTER_ENABLE | INTERRUPT_ENABLE));
+        if(counter == 0) {
+          control &= ~COUNTER_ENABLE;
+        }
+        if ((control & COUNTER_ENABLE) != 0) {
+          start();
+        }
     }
-    if (counter == 0) {
+    if(counter() == 0) {
       control |= ZERO;
-      control &= ~COUNTER_ENABLE;
-      if((control & INTERRUPT_ENABLE) != 0) {
-        backplane.irqb().value(this, false);
-      }
     }
-    short addressMask = ~0x3;
-    if ((short) (address.value() & addressMask) != baseAddress) {
-      return;
+    else {
+      control &= ~ZERO;
     }
-    int reg = address.value() & ~addressMask;
-
-    if (rwb.value()) {
-      switch (reg) {
-        case 0 -> data.value((byte) (counter & 0xFF));
-        case 1 -> data.value((byte) ((counter >> 8) & 0xFF));
-        case 2 -> data.value((byte) ((counter >> 16) & 0xFF));
-        case 3 -> data.value(control);
-        default -> {
-        }
-      }
-    } else {
-      switch (reg) {
-        case 0:
-          if ((control & COUNTER_ENABLE) == 0) {
-            counter = ((counter & ~0xFF) | (data.value() & 0xFF));
-          }
-          break;
-        case 1:
-          if ((control & COUNTER_ENABLE) == 0) {
-            counter = ((counter & ~0xFF00) | ((data.value() & 0xFF) << 8));
-          }
-          break;
-        case 2:
-          if ((control & COUNTER_ENABLE) == 0) {
-            counter = ((counter & ~0xFF0000) | ((data.value() & 0xFF) << 16));
-          }
-          break;
-        case 3:
-          control = (byte) (data.value() & (COUNTER_ENABLE | INTERRUPT_ENABLE));
-          break;
-        default:
-      }
-      if(counter == 0) {
-        control |= ZERO;
-      }
-      else {
-        control &= ~ZERO;
-      }
-      backplane.irqb().value(this, !(((control & INTERRUPT_ENABLE) != 0) && (counter == 0)));
+    updateInterrupt();
+  }
+
+  @Override
+  public Counter fork(Backplane backplane) {
+    Counter copy = new Counter(backplane, Map.of("base", Integer.toHexString(base())));
+    Snapshot.copy(this, copy);
+    return copy;
+  }
+
+  @Override
+  public void save(DataOutput out) throws IOException {
+    out.writeInt(counter());
+    out.writeByte(control);
+  }
+
+  @Override
+  public void restore(DataInput in) throws IOException {
+    counter = in.readInt();
+    control = in.readByte();
+    scheduler.cancel(zeroFn);
+    if ((control & COUNTER_ENABLE) != 0) {
+      start();
     }
+    updateInterrupt();
+  }
+
+  /**
+   * Start counting down from the counter value.
+   */
+  private void start() {
+    zeroCycle = scheduler.now() + counter;
+    scheduler.schedule(zeroCycle, zeroFn);
+  }
+
+  /**
+   * Get the current counter value.
+   *
+   * @return the counter value.
+   */
+  private int counter() {
+    if ((control & COUNTER_ENABLE) != 0) {
+      return (int) Math.max(0, zeroCycle - scheduler.now());
+    }
+    return counter;
+  }
+
+  /**
+   * Stop the counter when it reaches zero, and raise the interrupt if it
+   * is enabled.
+   */
+  private void zero() {
+    counter = 0;
+    control |= ZERO;
+    control &= ~COUNTER_ENABLE;
+    updateInterrupt();
+  }
+
+  /**
+   * Drive the interrupt line low if the interrupt is enabled and the
+   * counter is zero.
+   */
+  private void updateInterrupt() {
+    irqb.value(irqSlot, !(((control & INTERRUPT_ENABLE) != 0) && (counter() == 0)));
   }
 }
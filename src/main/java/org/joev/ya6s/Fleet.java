@@ -0,0 +1,207 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.joev.ya6s.monitor.Command;
+import org.joev.ya6s.monitor.ContinueCommand;
+import org.joev.ya6s.monitor.ExitCommand;
+import org.joev.ya6s.monitor.Monitor;
+import org.joev.ya6s.monitor.MonitorParser;
+import org.joev.ya6s.monitor.ParseException;
+import org.joev.ya6s.monitor.ResetCommand;
+
+/**
+ * Runs a fleet of independent machines in parallel, without a terminal.
+ *
+ * Each "*.config" script in a directory builds its own Backplane,
+ * processor and devices.  The script is executed up to its first "cont"
+ * or "exit" command, then the machine is reset and run until it stops,
+ * waits for an interrupt, or runs out of cycles.  A UART attached to the
+ * console reads "{name}.in" if it exists, and its output is written to
+ * "{name}.out".
+ */
+public final class Fleet {
+  /** The file name suffix of the machine scripts. */
+  public static final String SUFFIX = ".config";
+
+  /**
+   * The outcome of running one machine.
+   *
+   * @param name the name of the script, without its suffix.
+   * @param status the name of the reason the machine stopped, or "ERROR".
+   * @param cycles the number of cycles the processor ran.
+   * @param nanos the wall time taken to build and run the machine.
+   */
+  public record Result(String name, String status, long cycles, long nanos) {
+    /**
+     * Determine if the machine ran to a STP instruction.
+     *
+     * @return true if the machine stopped.
+     */
+    public boolean stopped() {
+      return W65C02S.StopReason.STOPPED.name().equals(status);
+    }
+  }
+
+  private final Path directory;
+  private final long maxCycles;
+
+  /**
+   * Create a Fleet from the scripts in a directory.
+   *
+   * @param directory the directory containing the scripts.
+   * @param maxCycles the most cycles each machine may run.
+   */
+  public Fleet(Path directory, long maxCycles) {
+    this.directory = directory;
+    this.maxCycles = maxCycles;
+  }
+
+  /**
+   * Run every machine of the fleet in parallel, across all processors.
+   *
+   * @return the results, in the order of the script names.
+   * @throws IOException if the directory cannot be read.
+   * @throws InterruptedException if interrupted while waiting for the machines.
+   */
+  public List<Result> run() throws IOException, InterruptedException {
+    List<Path> scripts;
+    try(Stream<Path> files = Files.list(directory)) {
+      scripts = files
+        .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+        .sorted()
+        .toList();
+    }
+
+    ExecutorService executor = Executors.newWorkStealingPool();
+    try {
+      List<Future<Result>> futures = new ArrayList<>();
+      for(Path script: scripts) {
+        futures.add(executor.submit(() -> run(script)));
+      }
+      List<Result> results = new ArrayList<>();
+      for(Future<Result> future: futures) {
+        try {
+          results.add(future.get());
+        }
+        catch (ExecutionException ee) {
+          throw new IllegalStateException(ee.getCause());
+        }
+      }
+      return results;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Build and run a single machine.
+   *
+   * @param script the path to the script of the machine.
+   * @return the result of running the machine.
+   */
+  private Result run(Path script) {
+    String file = script.getFileName().toString();
+    String name = file.substring(0, file.length() - SUFFIX.length());
+    long start = System.nanoTime();
+    String status;
+
+    Backplane backplane = new Backplane();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    W65C02S cpu = null;
+    try {
+      Path inputFile = script.resolveSibling(name + ".in");
+      InputStream input = Files.exists(inputFile) ?
+        new ByteArrayInputStream(Files.readAllBytes(inputFile)) :
+        InputStream.nullInputStream();
+      backplane.console(input, output);
+
+      cpu = new W65C02S(backplane);
+      cpu.engine(W65C02S.Engine.FAST);
+      Clock clock = new Clock(backplane.clock(), cpu);
+      cpu.resb().value(true);
+      backplane.be().value(true);
+      Monitor monitor = new Monitor(backplane, clock, cpu, new PrintWriter(Writer.nullWriter()));
+
+      for(String line: Files.readAllLines(script)) {
+        line = line.trim();
+        if(line.isEmpty()) {
+          continue;
+        }
+        Command command = new MonitorParser(new StringReader(line)).command();
+        if(command == ContinueCommand.instance() || command == ExitCommand.instance()) {
+          break;
+        }
+        command.execute(monitor);
+      }
+
+      Predicate<W65C02S> breakpoint = null;
+      for(Predicate<W65C02S> predicate: monitor.listBreakpoints()) {
+        breakpoint = breakpoint == null ? predicate : breakpoint.or(predicate);
+      }
+
+      ResetCommand.instance().execute(monitor);
+      status = cpu.run(maxCycles, breakpoint).name();
+    }
+    catch (IOException | ParseException | RuntimeException e) {
+      System.err.format("%s: %s%n", name, e.getMessage());
+      status = "ERROR";
+    }
+    finally {
+      for(Addressable device: List.copyOf(backplane.devices())) {
+        if(device instanceof UART uart) {
+          uart.close();
+        }
+        else if(device instanceof SRAM sram) {
+          sram.close();
+        }
+        else if(device instanceof BankedMemory banked) {
+          banked.close();
+        }
+      }
+    }
+
+    try {
+      Files.write(script.resolveSibling(name + ".out"), output.toByteArray());
+    }
+    catch (IOException ioe) {
+      System.err.format("%s: %s%n", name, ioe.getMessage());
+      status = "ERROR";
+    }
+    long cycles = cpu == null ? 0 : cpu.cycleCount();
+    return new Result(name, status, cycles, System.nanoTime() - start);
+  }
+
+  /**
+   * Print a table of results.
+   *
+   * @param results the results of running a fleet.
+   * @param out the stream to print to.
+   */
+  public static void report(List<Result> results, PrintStream out) {
+    out.format("%-24s %-14s %14s %10s%n", "NAME", "STATUS", "CYCLES", "WALL MS");
+    for(Result result: results) {
+      out.format("%-24s %-14s %14d %10.1f%n", result.name(), result.status(), result.cycles(), result.nanos() / 1e6);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+/**
+ * A component of the system that can be copied into a forked system.
+ *
+ * Backplane.fork() asks each of its components for a copy attached to the
+ * new Backplane.  The busses and signals of the new Backplane already hold
+ * the values of the original when the copies are made.
+ */
+public interface Forkable {
+  /**
+   * Create a copy of this component, in the same state, attached to
+   * another Backplane.  A component that is created by another component,
+   * such as the registers of a device, is copied along with it, and
+   * returns null.
+   *
+   * @param backplane the Backplane of the forked system.
+   * @return the copy, or null if it is made by another component.
+   */
+  Forkable fork(Backplane backplane);
+}
@@ -0,0 +1,294 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Predicate;
+
+import org.joev.ya6s.signals.Signal;
+
+/**
+ * Records the busses and signals of every bus cycle into a ring buffer,
+ * like a logic analyzer attached to the backplane.
+ *
+ * Each sample is kept as a cycle number and a packed int of the address,
+ * data and signals, in arrays allocated up front, so recording does not
+ * allocate.  A trigger can be armed on an address on the address bus, or
+ * on the state of the processor.  Once the trigger fires, recording goes
+ * on until the buffer holds as many samples after the trigger as before
+ * it, then stops, so the capture is a window centered on the trigger.
+ *
+ * Because it registers as a bus listener, a running capture requires bus-level
+ * timing, and the processor runs one clock cycle at a time.
+ */
+public final class LogicAnalyzer {
+  /** The bit of a sample's signals that holds RWB. */
+  public static final int RWB  = 0x01;
+  /** The bit of a sample's signals that holds SYNC. */
+  public static final int SYNC = 0x02;
+  /** The bit of a sample's signals that holds VPB. */
+  public static final int VPB  = 0x04;
+  /** The bit of a sample's signals that holds MLB. */
+  public static final int MLB  = 0x08;
+  /** The bit of a sample's signals that holds IRQB. */
+  public static final int IRQB = 0x10;
+  /** The bit of a sample's signals that holds RDY. */
+  public static final int RDY  = 0x20;
+
+  /** The names of the signal bits, in bit order, as written to a VCD. */
+  private static final String[] signalNames = {
+    "rwb", "sync", "vpb", "mlb", "irqb", "rdy"
+  };
+
+  private final Backplane backplane;
+  private final W65C02S cpu;
+  private final long[] cycles;
+  private final int[] samples;
+  private final Signal.Listener sampleFn = this::sample;
+
+  private int next;
+  private int size;
+  private boolean running;
+  private int triggerAddress = -1;
+  private Predicate<W65C02S> triggerWhen;
+  private long triggerCycle = -1;
+  private int remaining;
+
+  /**
+   * Create a LogicAnalyzer for the given Backplane.  It does not record
+   * until it is started.
+   *
+   * @param backplane the backplane to record.
+   * @param cpu the processor that expression triggers are evaluated on.
+   * @param capacity the number of samples the buffer holds.
+   */
+  public LogicAnalyzer(Backplane backplane, W65C02S cpu, int capacity) {
+    if(capacity < 2) {
+      throw new IllegalArgumentException("A capture must hold at least 2 samples.");
+    }
+    this.backplane = backplane;
+    this.cpu = cpu;
+    this.cycles = new long[capacity];
+    this.samples = new int[capacity];
+  }
+
+  /**
+   * Start recording bus cycles, discarding any earlier samples.
+   */
+  public void start() {
+    next = 0;
+    size = 0;
+    triggerCycle = -1;
+    remaining = samples.length / 2;
+    if(!running) {
+      backplane.registerBusListener(sampleFn);
+      running = true;
+    }
+  }
+
+  /**
+   * Stop recording bus cycles.  The samples are kept.
+   */
+  public void stop() {
+    if(running) {
+      backplane.unregisterBusListener(sampleFn);
+      running = false;
+    }
+  }
+
+  /**
+   * Fire the trigger when the given address is on the address bus.
+   *
+   * @param address the address to trigger on.
+   */
+  public void trigger(int address) {
+    triggerAddress = address & 0xFFFF;
+    triggerWhen = null;
+  }
+
+  /**
+   * Fire the trigger when the given predicate on the processor is true.
+   *
+   * @param when the predicate to trigger on.
+   */
+  public void trigger(Predicate<W65C02S> when) {
+    triggerAddress = -1;
+    triggerWhen = when;
+  }
+
+  /**
+   * Get the cycle of the sample that fired the trigger.
+   *
+   * @return the cycle of the trigger, or -1 if it has not fired.
+   */
+  public long triggerCycle() { return triggerCycle; }
+
+  /**
+   * Get the number of samples held.
+   *
+   * @return the number of samples.
+   */
+  public int size() { return size; }
+
+  /**
+   * Get the cycle number of a sample.
+   *
+   * @param index the index of the sample, 0 being the oldest.
+   * @return the cycle number.
+   */
+  public long cycle(int index) {
+    return cycles[slot(index)];
+  }
+
+  /**
+   * Get the address of a sample.
+   *
+   * @param index the index of the sample, 0 being the oldest.
+   * @return the value of the address bus.
+   */
+  public int address(int index) {
+    return samples[slot(index)] >>> 16;
+  }
+
+  /**
+   * Get the data of a sample.
+   *
+   * @param index the index of the sample, 0 being the oldest.
+   * @return the value of the data bus.
+   */
+  public int data(int index) {
+    return (samples[slot(index)] >>> 8) & 0xFF;
+  }
+
+  /**
+   * Get the signals of a sample.
+   *
+   * @param index the index of the sample, 0 being the oldest.
+   * @return the signal bits, such as RWB and SYNC.
+   */
+  public int signals(int index) {
+    return samples[slot(index)] & 0xFF;
+  }
+
+  /**
+   * Find the position in the ring buffer of a sample.
+   *
+   * @param index the index of the sample, 0 being the oldest.
+   * @return the position in the arrays.
+   */
+  private int slot(int index) {
+    if(index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    int slot = next - size + index;
+    return slot < 0 ? slot + samples.length : slot;
+  }
+
+  /**
+   * Record a sample on the rising edge of the clock, after the addressed
+   * device has been read or written.
+   *
+   * @param eventType the type of clock signal edge.
+   */
+  private void sample(Signal.EventType eventType) {
+    if(remaining == 0) {
+      return;
+    }
+    int address = backplane.address().value() & 0xFFFF;
+    int signals =
+      (backplane.rwb().value()  ? RWB  : 0) |
+      (backplane.sync().value() ? SYNC : 0) |
+      (backplane.vpb().value()  ? VPB  : 0) |
+      (backplane.mlb().value()  ? MLB  : 0) |
+      (backplane.irqb().value() ? IRQB : 0) |
+      (backplane.rdy().value()  ? RDY  : 0);
+    long cycle = backplane.scheduler().now();
+    cycles[next] = cycle;
+    samples[next] = address << 16 | (backplane.data().value() & 0xFF) << 8 | signals;
+    if(++next == samples.length) {
+      next = 0;
+    }
+    if(size < samples.length) {
+      size++;
+    }
+
+    if(triggerCycle < 0) {
+      if(address == triggerAddress || (triggerWhen != null && triggerWhen.test(cpu))) {
+        triggerCycle = cycle;
+      }
+    }
+    else {
+      remaining--;
+    }
+  }
+
+  /**
+   * Write the samples as a Value Change Dump, which waveform viewers such
+   * as GTKWave can display.  Each clock cycle is one microsecond, and a
+   * "trigger" wire is high for the sample that fired the trigger.
+   *
+   * @param out the writer to write to.
+   * @throws IOException if the dump cannot be written.
+   */
+  public void writeVcd(Writer out) throws IOException {
+    // The identifier codes of the address, data, signal and trigger wires.
+    String ids = "!\"#$%&'()";
+    out.write("$version ya6s $end\n");
+    out.write("$timescale 1us $end\n");
+    out.write("$scope module ya6s $end\n");
+    out.write("$var wire 16 ! address $end\n");
+    out.write("$var wire 8 \" data $end\n");
+    for(int bit = 0; bit < signalNames.length; bit++) {
+      out.write("$var wire 1 " + ids.charAt(bit + 2) + " " + signalNames[bit] + " $end\n");
+    }
+    out.write("$var wire 1 ) trigger $end\n");
+    out.write("$upscope $end\n");
+    out.write("$enddefinitions $end\n");
+
+    int last = 0;
+    long lastCycle = -1;
+    boolean lastTrigger = false;
+    for(int i = 0; i < size; i++) {
+      int sample = samples[slot(i)];
+      long cycle = cycles[slot(i)];
+      boolean trigger = cycle == triggerCycle;
+      boolean first = i == 0;
+      if(cycle != lastCycle) {
+        out.write("#" + cycle + "\n");
+      }
+      if(first || (sample ^ last) >>> 16 != 0) {
+        out.write(binary(sample >>> 16, 16) + " !\n");
+      }
+      if(first || ((sample ^ last) & 0xFF00) != 0) {
+        out.write(binary((sample >>> 8) & 0xFF, 8) + " \"\n");
+      }
+      for(int bit = 0; bit < signalNames.length; bit++) {
+        if(first || ((sample ^ last) & (1 << bit)) != 0) {
+          out.write(((sample & (1 << bit)) != 0 ? "1" : "0") + ids.charAt(bit + 2) + "\n");
+        }
+      }
+      if(first || trigger != lastTrigger) {
+        out.write((trigger ? "1" : "0") + ")\n");
+      }
+      last = sample;
+      lastCycle = cycle;
+      lastTrigger = trigger;
+    }
+  }
+
+  /**
+   * Format a VCD vector value.
+   *
+   * @param value the value.
+   * @param width the number of bits.
+   * @return "b" followed by the bits of the value.
+   */
+  private static String binary(int value, int width) {
+    StringBuilder sb = new StringBuilder(width + 1).append('b');
+    for(int bit = width - 1; bit >= 0; bit--) {
+      sb.append((value & (1 << bit)) != 0 ? '1' : '0');
+    }
+    return sb.toString();
+  }
+}
@@ -8,6 +8,7 @@ import java.io.PipedOutputStream;
 import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 import org.joev.ya6s.Clock;
 import org.joev.ya6s.monitor.Command;
@@ -21,15 +22,20 @@ import org.jline.terminal.TerminalBuilder;
 
 public class Main {
   public static void main(String[] args) throws Exception {
+    if(args.length > 1 && "--fleet".equals(args[0])) {
+      long maxCycles = args.length > 2 ? Long.parseLong(args[2]) : 100_000_000L;
+      List<Fleet.Result> results = new Fleet(Path.of(args[1]), maxCycles).run();
+      Fleet.report(results, System.out);
+      System.exit(results.stream().allMatch(Fleet.Result::stopped) ? 0 : 1);
+    }
 
     final Backplane backplane = new Backplane();
     PipedInputStream uartIn = new PipedInputStream();
     PipedOutputStream toUartIn = new PipedOutputStream(uartIn);
-    Monitor.ttyIn = uartIn;
-    Monitor.ttyOut = System.out;
+    backplane.console(uartIn, System.out);
 
     final W65C02S cpu = new W65C02S(backplane);
-    final Clock clock = new Clock(backplane.clock());
+    final Clock clock = new Clock(backplane.clock(), cpu);
     final Signal resb = cpu.resb();
     resb.value(true);
     backplane.be().value(true);
@@ -42,7 +48,7 @@ public class Main {
         monitor.close();
       }
       catch (IOException e) {
-        // best-effort restore on shutdown
+        // best-effort flush and restore on shutdown
       }
     }));
     if(args.length > 0) {
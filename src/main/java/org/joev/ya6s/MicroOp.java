@@ -0,0 +1,138 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+/**
+ * Micro-ops are Cycles packed into ints, so the processor can run a cycle
+ * with array indexing and a switch on an int, rather than reading record
+ * fields and switching on enums.
+ *
+ * Bits 0-4 hold the address source, bits 5-8 hold the data source or
+ * sink, and bits 9-12 hold the values of the rwb, sync, vpb and mlb
+ * signals.
+ */
+final class MicroOp {
+  // Address sources, see Address.
+  static final int PC       = 0;
+  static final int PC_INC   = 1;
+  static final int AA       = 2;
+  static final int AA_INC   = 3;
+  static final int AA_X     = 4;
+  static final int AA_X_1   = 5;
+  static final int AA_Y     = 6;
+  static final int S        = 7;
+  static final int S_DEC    = 8;
+  static final int S_INC    = 9;
+  static final int ZP       = 10;
+  static final int ZP_INC   = 11;
+  static final int ZP_X     = 12;
+  static final int ZP_X_1   = 13;
+  static final int ZP_X_INC = 14;
+  static final int ZP_Y     = 15;
+  static final int VAL      = 16;
+  static final int VAH      = 17;
+
+  // Data sources and sinks, see Data.
+  static final int OP      = 0;
+  static final int DATA    = 1;
+  static final int P       = 2;
+  static final int DO      = 3;
+  static final int AAL     = 4;
+  static final int AAH     = 5;
+  static final int IO      = 6;
+  static final int PCL     = 7;
+  static final int PCH     = 8;
+  static final int NEW_PCL = 9;
+  static final int NEW_PCH = 10;
+  static final int NULL    = 11;
+
+  static final int ADDRESS_MASK = 0x1F;
+  static final int DATA_SHIFT   = 5;
+  static final int DATA_MASK    = 0x0F;
+  static final int RWB          = 1 << 9;
+  static final int SYNC         = 1 << 10;
+  static final int VPB          = 1 << 11;
+  static final int MLB          = 1 << 12;
+
+  /**
+   * This class cannot be instantiated.
+   */
+  private MicroOp() { }
+
+  /**
+   * Pack a Cycle into a micro-op.
+   *
+   * @param cycle the Cycle to pack.
+   * @return the micro-op.
+   */
+  static int of(Cycle cycle) {
+    int address = switch(cycle.address()) {
+      case PC       -> PC;
+      case PC_INC   -> PC_INC;
+      case AA       -> AA;
+      case AA_INC   -> AA_INC;
+      case AA_X     -> AA_X;
+      case AA_X_1   -> AA_X_1;
+      case AA_Y     -> AA_Y;
+      case S        -> S;
+      case S_DEC    -> S_DEC;
+      case S_INC    -> S_INC;
+      case ZP       -> ZP;
+      case ZP_INC   -> ZP_INC;
+      case ZP_X     -> ZP_X;
+      case ZP_X_1   -> ZP_X_1;
+      case ZP_X_INC -> ZP_X_INC;
+      case ZP_Y     -> ZP_Y;
+      case VAL      -> VAL;
+      case VAH      -> VAH;
+    };
+    int data = switch(cycle.data()) {
+      case OP      -> OP;
+      case DATA    -> DATA;
+      case P       -> P;
+      case DO      -> DO;
+      case AAL     -> AAL;
+      case AAH     -> AAH;
+      case IO      -> IO;
+      case PCL     -> PCL;
+      case PCH     -> PCH;
+      case NEW_PCL -> NEW_PCL;
+      case NEW_PCH -> NEW_PCH;
+      case NULL    -> NULL;
+    };
+    return address | (data << DATA_SHIFT) |
+      (cycle.rwb()  ? RWB  : 0) |
+      (cycle.sync() ? SYNC : 0) |
+      (cycle.vpb()  ? VPB  : 0) |
+      (cycle.mlb()  ? MLB  : 0);
+  }
+
+  /**
+   * Compile a list of Cycles into a micro-op program.
+   *
+   * @param cycles the Cycles to compile.
+   * @return the micro-op program.
+   */
+  static int[] compile(Cycle[] cycles) {
+    int[] program = new int[cycles.length];
+    for(int i = 0; i < cycles.length; i++) {
+      program[i] = of(cycles[i]);
+    }
+    return program;
+  }
+
+  /**
+   * Compile the Cycles of each opcode's addressing mode into micro-op
+   * programs.
+   *
+   * @param modes the addressing mode of each opcode.
+   * @return the micro-op program of each opcode.
+   */
+  static int[][] compile(AddressingMode[] modes) {
+    int[][] programs = new int[modes.length][];
+    for(int i = 0; i < modes.length; i++) {
+      programs[i] = compile(modes[i].cycles());
+    }
+    return programs;
+  }
+}
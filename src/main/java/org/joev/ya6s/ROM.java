@@ -4,25 +4,27 @@ package org.joev.ya6s;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 
-import org.joev.ya6s.signals.Bus;
-import org.joev.ya6s.signals.Signal;
 
 /**
  * An implementation of a ROM module.
+ *
+ * The image is normally copied onto the heap.  With the "map" option, the
+ * image file is instead mapped read-only, so machines that use the same
+ * image share one copy in the page cache, which the operating system
+ * reads in as it is used.  A mapped image must not be changed while it is
+ * in use.
  */
-public final class ROM {
-  private final Bus address;
-  private final Bus data;
-  private final Signal rwb;
-  private final Signal clock;
-  private final Signal.Listener tickFn;
+public final class ROM implements Addressable, Forkable {
+  private final Backplane backplane;
   private final int base;
   private final int end;
-  private final byte[] memory;
+  private ByteBuffer memory;
 
   /**
    * Create a ROM module with the given busses and signals.
@@ -32,6 +34,8 @@ public final class ROM {
    *   "base" is the hex value of the base address.
    *   "size" is the size of the ROM.
    *   "file" is the path to the contents that will be loaded into the ROM.
+   *   "map" is "true" to map the file instead of loading it.  A file that
+   *     is smaller than the ROM is loaded.
    */
   public ROM(Backplane backplane, Map<String, String> options) {
     String baseString = options.get("base");
@@ -41,49 +45,130 @@ public final class ROM {
     if(baseString == null || sizeString == null) {
       throw new IllegalArgumentException("Both \"base\" and \"size\" options are required.");
     }
+    if(fileName == null) {
+      throw new IllegalArgumentException("The \"file\" option is required.");
+    }
+
+    base = Integer.parseUnsignedInt(baseString, 16);
+    int size = Integer.parseUnsignedInt(sizeString, 16);
 
     Path path = Path.of(fileName);
     if(!Files.exists(path)) {
       throw new IllegalArgumentException("File does not exist.");
     }
-    try(InputStream in = Files.newInputStream(path)) {
-      memory = in.readAllBytes();
+    try {
+      if(Boolean.parseBoolean(options.get("map")) && Files.size(path) >= size) {
+        try(FileChannel channel = FileChannel.open(path)) {
+          memory = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+      }
+      else {
+        byte[] image = new byte[size];
+        try(InputStream in = Files.newInputStream(path)) {
+          // Read the image straight into the ROM; any bytes beyond the size
+          // of the ROM are ignored, and any not in the image are zero.
+          in.readNBytes(image, 0, size);
+        }
+        memory = ByteBuffer.wrap(image);
+      }
     }
     catch (IOException ioe) {
       throw new IllegalArgumentException("Could not read file.");
     }
 
-    base = Integer.parseUnsignedInt(baseString, 16);
-    int size = Integer.parseUnsignedInt(sizeString, 16);
-
-    address = backplane.address();
-    data = backplane.data();
-    rwb = backplane.rwb();
-    clock = backplane.clock();
+    this.backplane = backplane;
     this.end = base + size - 1;
 
-    tickFn = this::tick;
-    clock.register(tickFn);
+    backplane.attach(this);
   }
 
   /**
-   * Handle a clock tick.  If this is a positive  transition, read or write from the data bus.
+   * Create a copy of a ROM on another Backplane, sharing its image.
    *
-   * @param eventType the type of the Signal event.
+   * @param backplane the backplane to attach to.
+   * @param original the ROM to copy.
    */
-  private void tick(Signal.EventType eventType) {
-    if(eventType == Signal.EventType.POSITIVE_EDGE) {
-      int busAddress = address.value() & 0xFFFF;
-      if(rwb.value() && busAddress >= base && busAddress <= end) {
-        data.value(memory[busAddress - base]);
-      }
+  private ROM(Backplane backplane, ROM original) {
+    // Both sides see the image as read-only, so a patch on either side
+    // is made to a copy.
+    original.memory = original.memory.asReadOnlyBuffer();
+    this.memory = original.memory;
+    this.base = original.base;
+    this.end = original.end;
+    this.backplane = backplane;
+
+    backplane.attach(this);
+  }
+
+  @Override
+  public int base() { return base; }
+
+  @Override
+  public int size() { return end - base + 1; }
+
+  @Override
+  public boolean cacheable() { return true; }
+
+  @Override
+  public byte read(int address) {
+    return memory.get(address - base);
+  }
+
+  @Override
+  public void peek(int address, byte[] destination, int offset, int length) {
+    memory.get(address - base, destination, offset, length);
+  }
+
+  /**
+   * Patch the contents of the ROM, for a debugger.  A mapped image is
+   * first copied, so the file is left unchanged.
+   *
+   * @param address the address to write.
+   * @param value the value to write.
+   */
+  @Override
+  public void poke(int address, byte value) {
+    writable().put(address - base, value);
+  }
+
+  @Override
+  public void poke(int address, byte[] source, int offset, int length) {
+    writable().put(address - base, source, offset, length);
+  }
+
+  /**
+   * Get the memory for patching, copying a mapped image onto the heap.
+   *
+   * @return a writable buffer of the contents of the ROM.
+   */
+  private ByteBuffer writable() {
+    if(memory.isReadOnly()) {
+      byte[] image = new byte[memory.capacity()];
+      memory.get(0, image);
+      memory = ByteBuffer.wrap(image);
     }
+    return memory;
+  }
+
+  @Override
+  public ROM fork(Backplane backplane) {
+    return new ROM(backplane, this);
+  }
+
+  /**
+   * Writes to a ROM are ignored.
+   *
+   * @param address the address to write.
+   * @param value the value to write.
+   */
+  @Override
+  public void write(int address, byte value) {
   }
 
   /**
-   * Unregister from the clock Signal.
+   * Detach from the Backplane.
    */
   public void close() {
-    clock.unregister(tickFn);
+    backplane.detach(this);
   }
 }
@@ -2,23 +2,50 @@
 
 package org.joev.ya6s;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Map;
 
-import org.joev.ya6s.signals.Bus;
-import org.joev.ya6s.signals.Signal;
 
 /**
  * An implementation of a static RAM module.
+ *
+ * The memory is normally held on the heap, but it can instead be mapped
+ * from a file, like a battery-backed RAM whose contents survive restarts.
+ * Changes to a mapped file are seen by other processes that map the same
+ * file, and are written to the file at the latest when the SRAM is
+ * closed, or when the monitor exits.
+ *
+ * Memory on the heap is held in 256-byte pages, which are shared
+ * copy-on-write with the copies made by fork(): a shared page is copied
+ * by whichever side first writes to it, so forking a system costs only
+ * the pages that are changed afterwards.  Pages that have never been
+ * written all share a single page of zeros.  The processor may read and
+ * write a page directly, such as the zero page and the stack, through
+ * the array returned by directPage().
  */
-public final class SRAM {
-  private final Bus address;
-  private final Bus data;
-  private final Signal rwb;
-  private final Signal clock;
-  private final Signal.Listener tickFn;
+public final class SRAM implements Addressable, Snapshottable, Forkable {
+  private static final int PAGE_SHIFT = 8;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+  private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
+
+  private final Backplane backplane;
   private final int base;
-  private final int end;
-  private final byte[] memory;
+  private final int size;
+  private final ByteBuffer memory;
+  private final byte[][] pages;
+  private final boolean[] shared;
+  private final long syncInterval;
+  private final Runnable syncFn = this::sync;
 
   /**
    * Create a Static RAM module on the backplane that covers the entire
@@ -49,6 +76,10 @@ public final class SRAM {
    * @param options a Map containing the configuration options:
    *   "base" is the hex value of the base address.
    *   "size" is the hex value of the size.
+   *   "file" is the optional path of a file to map the memory from.  The
+   *     file is created, or extended with zeros, if it is too small.
+   *   "sync" is the optional number of clock cycles between writing the
+   *     changes of a mapped file to the file.
    */
   public SRAM(Backplane backplane, Map<String, String> options) {
     String baseString = options.get("base");
@@ -59,43 +90,242 @@ public final class SRAM {
     }
 
     base = Integer.parseUnsignedInt(baseString, 16);
-    int size = Integer.parseUnsignedInt(sizeString, 16);
+    size = Integer.parseUnsignedInt(sizeString, 16);
+
+    String fileName = options.get("file");
+    if(fileName == null) {
+      memory = null;
+      pages = new byte[(size + PAGE_MASK) >>> PAGE_SHIFT][];
+      shared = new boolean[pages.length];
+      Arrays.fill(pages, ZERO_PAGE);
+      Arrays.fill(shared, true);
+    }
+    else {
+      pages = null;
+      shared = null;
+      try(FileChannel channel = FileChannel.open(Path.of(fileName),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        memory = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+      catch (IOException ioe) {
+        throw new IllegalArgumentException("Could not map file: " + ioe.getMessage(), ioe);
+      }
+    }
+
+    String syncString = options.get("sync");
+    syncInterval = syncString == null ? 0 : Long.parseLong(syncString);
+    if(syncInterval < 0 || (syncInterval > 0 && fileName == null)) {
+      throw new IllegalArgumentException("The \"sync\" option needs a \"file\", and a positive number of cycles.");
+    }
+
+    this.backplane = backplane;
+    backplane.attach(this);
+    backplane.addSnapshottable(this);
+    if(syncInterval > 0) {
+      Scheduler scheduler = backplane.scheduler();
+      scheduler.schedule(scheduler.now() + syncInterval, syncFn);
+    }
+  }
+
+  /**
+   * Create a copy of an SRAM on another Backplane, sharing its pages.
+   *
+   * @param backplane the backplane to attach to.
+   * @param original the SRAM to copy.
+   */
+  private SRAM(Backplane backplane, SRAM original) {
+    base = original.base;
+    size = original.size;
+    memory = null;
+    syncInterval = 0;
+    shared = new boolean[(size + PAGE_MASK) >>> PAGE_SHIFT];
+    Arrays.fill(shared, true);
+    if(original.pages != null) {
+      // The pages the original gave out for direct access are now shared.
+      Arrays.fill(original.shared, true);
+      pages = original.pages.clone();
+      original.backplane.directChanged();
+    }
+    else {
+      // The file is left to the original; the copy starts from its
+      // contents on the heap.
+      pages = new byte[shared.length][];
+      for(int i = 0; i < pages.length; i++) {
+        pages[i] = new byte[PAGE_SIZE];
+        original.memory.get(i << PAGE_SHIFT, pages[i], 0, Math.min(PAGE_SIZE, size - (i << PAGE_SHIFT)));
+      }
+      Arrays.fill(shared, false);
+    }
+
+    this.backplane = backplane;
+    backplane.attach(this);
+    backplane.addSnapshottable(this);
+  }
+
+  @Override
+  public int base() { return base; }
+
+  @Override
+  public int size() { return size; }
+
+  /**
+   * Return true if the memory is on the heap.  Memory mapped from a file
+   * may be changed by another process at any time, so instructions decoded
+   * from it cannot be cached.
+   *
+   * @return true if the memory is not mapped from a file.
+   */
+  @Override
+  public boolean cacheable() { return memory == null; }
+
+  @Override
+  public byte read(int address) {
+    int offset = address - base;
+    if(pages == null) {
+      return memory.get(offset);
+    }
+    return pages[offset >>> PAGE_SHIFT][offset & PAGE_MASK];
+  }
+
+  @Override
+  public void peek(int address, byte[] destination, int offset, int length) {
+    int start = address - base;
+    if(pages == null) {
+      memory.get(start, destination, offset, length);
+      return;
+    }
+    while(length > 0) {
+      int count = Math.min(length, PAGE_SIZE - (start & PAGE_MASK));
+      System.arraycopy(pages[start >>> PAGE_SHIFT], start & PAGE_MASK, destination, offset, count);
+      start += count;
+      offset += count;
+      length -= count;
+    }
+  }
 
-    address = backplane.address();
-    data = backplane.data();
-    rwb = backplane.rwb();
-    clock = backplane.clock();
-    this.end = base + size - 1;
+  @Override
+  public void write(int address, byte value) {
+    int offset = address - base;
+    if(pages == null) {
+      memory.put(offset, value);
+      return;
+    }
+    int page = offset >>> PAGE_SHIFT;
+    byte[] contents = shared[page] ? own(page) : pages[page];
+    contents[offset & PAGE_MASK] = value;
+  }
 
-    memory = new byte[size];
+  @Override
+  public void poke(int address, byte[] source, int offset, int length) {
+    int start = address - base;
+    if(pages == null) {
+      memory.put(start, source, offset, length);
+      return;
+    }
+    while(length > 0) {
+      int page = start >>> PAGE_SHIFT;
+      int count = Math.min(length, PAGE_SIZE - (start & PAGE_MASK));
+      System.arraycopy(source, offset, shared[page] ? own(page) : pages[page], start & PAGE_MASK, count);
+      start += count;
+      offset += count;
+      length -= count;
+    }
+  }
 
-    tickFn = this::tick;
-    clock.register(tickFn);
+  /**
+   * Get the array of a page on the heap, after making a private copy of
+   * it if it is shared.  A mapped file has no arrays.
+   *
+   * @param address the address of the page.
+   * @return the page, or null if it is mapped or not aligned with a page
+   *   of the memory.
+   */
+  @Override
+  public byte[] directPage(int address) {
+    int offset = address - base;
+    if(pages == null || (offset & PAGE_MASK) != 0 || offset + PAGE_SIZE > size) {
+      return null;
+    }
+    int page = offset >>> PAGE_SHIFT;
+    return shared[page] ? own(page) : pages[page];
   }
 
   /**
-   * Handle a clock tick.  If this is a positive  transition, read or write from the data bus.
+   * Make a private copy of a shared page, before it is written.
    *
-   * @param eventType the type of the Signal event.
+   * @param page the index of the page.
+   * @return the copy, which is now the page.
    */
-  private void tick(Signal.EventType eventType) {
-    if(eventType == Signal.EventType.POSITIVE_EDGE) {
-      int busAddress = address.value() & 0xFFFF;
-      if(busAddress >= base && busAddress <= end) {
-        if(rwb.value()) {
-          data.value(memory[busAddress - base]);
-        }
-        else {
-          memory[busAddress - base] = (byte)data.value();
-        }
+  private byte[] own(int page) {
+    shared[page] = false;
+    return pages[page] = pages[page].clone();
+  }
+
+  /**
+   * Create a copy of this SRAM on another Backplane.  The pages are shared
+   * until they are written, on either side.  The copy of an SRAM mapped
+   * from a file is held on the heap, and never changes the file.
+   *
+   * @param backplane the backplane of the forked system.
+   * @return the copy.
+   */
+  @Override
+  public SRAM fork(Backplane backplane) {
+    return new SRAM(backplane, this);
+  }
+
+  @Override
+  public void save(DataOutput out) throws IOException {
+    byte[] contents = new byte[size];
+    peek(base, contents, 0, size);
+    out.writeInt(size);
+    out.write(contents);
+  }
+
+  @Override
+  public void restore(DataInput in) throws IOException {
+    int snapshotSize = in.readInt();
+    if(snapshotSize != size) {
+      throw new IOException(String.format("SRAM at $%04X is %d bytes, snapshot has %d.", base, size, snapshotSize));
+    }
+    byte[] contents = new byte[size];
+    in.readFully(contents);
+    poke(base, contents, 0, size);
+  }
+
+  /**
+   * Write the changes of a mapped file to the file, and schedule the next
+   * sync.
+   */
+  private void sync() {
+    flush();
+    Scheduler scheduler = backplane.scheduler();
+    scheduler.schedule(scheduler.now() + syncInterval, syncFn);
+  }
+
+  /**
+   * Write the changes of a mapped file to the file.  Does nothing if the
+   * memory is not mapped from a file.
+   */
+  public void flush() {
+    if(memory instanceof MappedByteBuffer mapped) {
+      try {
+        mapped.force();
+      }
+      catch (UncheckedIOException uioe) {
+        System.err.format("SRAM at $%04X: %s%n", base, uioe.getMessage());
       }
     }
   }
 
   /**
-   * Unregister from the clock Signal.
+   * Detach from the Backplane, writing the changes of a mapped file to
+   * the file.
    */
   public void close() {
-    clock.unregister(tickFn);
+    backplane.scheduler().cancel(syncFn);
+    flush();
+    backplane.detach(this);
+    backplane.removeSnapshottable(this);
   }
 }
@@ -0,0 +1,156 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.util.Arrays;
+
+/**
+ * A queue of actions to run at future clock cycles, so devices with timers
+ * do not need to listen to every clock edge.
+ *
+ * The processor advances the scheduler as clock cycles elapse, and runs
+ * each action once its cycle has been reached.  With the FAST engine, an
+ * action may run a few cycles late, at the end of the instruction or
+ * compiled block in which its cycle was reached, but the scheduler is
+ * always brought up to the cycle of a read or write of a device that
+ * cannot be cached, so the device sees the same cycle as it would with
+ * the CYCLE engine.
+ *
+ * The queue is a binary min-heap kept in parallel arrays of cycles and
+ * actions.
+ */
+public final class Scheduler {
+  private long now = 0;
+  private long next = Long.MAX_VALUE;
+  private long[] cycles = new long[16];
+  private Runnable[] actions = new Runnable[16];
+  private int size = 0;
+
+  /**
+   * Create an empty Scheduler at cycle zero.
+   */
+  public Scheduler() { }
+
+  /**
+   * Get the number of clock cycles that have elapsed.
+   *
+   * @return the current cycle.
+   */
+  public long now() { return now; }
+
+  /**
+   * Get the cycle of the earliest scheduled action.
+   *
+   * @return the cycle of the next action, or Long.MAX_VALUE if there is none.
+   */
+  public long next() { return next; }
+
+  /**
+   * Determine if any actions are scheduled.
+   *
+   * @return true if there is at least one action to run.
+   */
+  public boolean pending() { return size != 0; }
+
+  /**
+   * Schedule an action to run once the given cycle has been reached.
+   * Actions for the same cycle may run in any order.
+   *
+   * @param cycle the cycle at which to run the action.
+   * @param action the action to run.
+   */
+  public void schedule(long cycle, Runnable action) {
+    if(size == cycles.length) {
+      cycles = Arrays.copyOf(cycles, size * 2);
+      actions = Arrays.copyOf(actions, size * 2);
+    }
+    int i = size++;
+    while(i > 0) {
+      int parent = (i - 1) >>> 1;
+      if(cycles[parent] <= cycle) {
+        break;
+      }
+      cycles[i] = cycles[parent];
+      actions[i] = actions[parent];
+      i = parent;
+    }
+    cycles[i] = cycle;
+    actions[i] = action;
+    next = cycles[0];
+  }
+
+  /**
+   * Remove every scheduled run of an action.
+   *
+   * @param action the action to remove.
+   */
+  public void cancel(Runnable action) {
+    int i = 0;
+    while(i < size) {
+      if(actions[i] == action) {
+        removeAt(i);
+        i = 0;
+      }
+      else {
+        i++;
+      }
+    }
+    next = size == 0 ? Long.MAX_VALUE : cycles[0];
+  }
+
+  /**
+   * Advance the current cycle, and run any actions that are due.
+   *
+   * @param clocks the number of clock cycles that have elapsed.
+   */
+  public void advance(long clocks) {
+    now += clocks;
+    while(now >= next) {
+      Runnable action = actions[0];
+      removeAt(0);
+      next = size == 0 ? Long.MAX_VALUE : cycles[0];
+      action.run();
+    }
+  }
+
+  /**
+   * Remove the entry at the given index of the heap.
+   *
+   * @param index the index of the entry to remove.
+   */
+  private void removeAt(int index) {
+    size--;
+    long cycle = cycles[size];
+    Runnable action = actions[size];
+    actions[size] = null;
+    if(index == size) {
+      return;
+    }
+
+    // Move the last entry into the hole, sifting it up or down.
+    int i = index;
+    while(i > 0 && cycles[(i - 1) >>> 1] > cycle) {
+      int parent = (i - 1) >>> 1;
+      cycles[i] = cycles[parent];
+      actions[i] = actions[parent];
+      i = parent;
+    }
+    while(true) {
+      int child = 2 * i + 1;
+      if(child >= size) {
+        break;
+      }
+      if(child + 1 < size && cycles[child + 1] < cycles[child]) {
+        child++;
+      }
+      if(cycles[child] >= cycle) {
+        break;
+      }
+      cycles[i] = cycles[child];
+      actions[i] = actions[child];
+      i = child;
+    }
+    cycles[i] = cycle;
+    actions[i] = action;
+  }
+}
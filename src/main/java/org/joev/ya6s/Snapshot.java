@@ -0,0 +1,177 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.joev.ya6s.signals.Signal;
+
+/**
+ * Saves and restores the state of a whole system: the values of the
+ * Backplane's busses and signals, followed by the state of each of its
+ * Snapshottable components.
+ *
+ * The format is a magic number and a version, the values of the busses
+ * and signals, and the class name of each component, followed by the
+ * length and the state of each component.  All of the class names are
+ * checked before anything is restored, so a Snapshot taken from a
+ * different system is rejected without changing this one.
+ */
+public final class Snapshot {
+  private static final int MAGIC = 0x59413653; // "YA6S"
+  private static final int VERSION = 1;
+
+  /**
+   * This class cannot be instantiated.
+   */
+  private Snapshot() { }
+
+  /**
+   * Save the state of the system to a file.
+   *
+   * @param backplane the Backplane of the system.
+   * @param path the file to write.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void save(Backplane backplane, Path path) throws IOException {
+    try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+      save(backplane, out);
+    }
+  }
+
+  /**
+   * Restore the state of the system from a file.
+   *
+   * @param backplane the Backplane of the system.
+   * @param path the file to read.
+   * @throws IOException if the file cannot be read, or was saved from a different system.
+   */
+  public static void restore(Backplane backplane, Path path) throws IOException {
+    try(InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+      restore(backplane, in);
+    }
+  }
+
+  /**
+   * Save the state of the system to a stream.
+   *
+   * @param backplane the Backplane of the system.
+   * @param stream the stream to write.
+   * @throws IOException if the stream cannot be written.
+   */
+  public static void save(Backplane backplane, OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(stream);
+    List<Snapshottable> components = backplane.snapshottables();
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    out.writeShort(backplane.address().value());
+    out.writeByte(backplane.data().value());
+    for(Signal signal: signals(backplane)) {
+      out.writeBoolean(signal.value());
+    }
+    out.writeInt(components.size());
+    for(Snapshottable component: components) {
+      out.writeUTF(component.getClass().getName());
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for(Snapshottable component: components) {
+      bytes.reset();
+      component.save(new DataOutputStream(bytes));
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+    }
+    out.flush();
+  }
+
+  /**
+   * Restore the state of the system from a stream.
+   *
+   * @param backplane the Backplane of the system.
+   * @param stream the stream to read.
+   * @throws IOException if the stream cannot be read, or was saved from a different system.
+   */
+  public static void restore(Backplane backplane, InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(stream);
+    List<Snapshottable> components = backplane.snapshottables();
+    if(in.readInt() != MAGIC) {
+      throw new IOException("Not a snapshot.");
+    }
+    int version = in.readUnsignedShort();
+    if(version != VERSION) {
+      throw new IOException("Unsupported snapshot version " + version + ".");
+    }
+    int address = in.readUnsignedShort();
+    int data = in.readUnsignedByte();
+    Signal[] signals = signals(backplane);
+    boolean[] values = new boolean[signals.length];
+    for(int i = 0; i < values.length; i++) {
+      values[i] = in.readBoolean();
+    }
+    int count = in.readInt();
+    if(count != components.size()) {
+      throw new IOException("Snapshot has " + count + " components, the system has " + components.size() + ".");
+    }
+    for(Snapshottable component: components) {
+      String name = in.readUTF();
+      if(!name.equals(component.getClass().getName())) {
+        throw new IOException("Snapshot has a " + name + " where the system has a " + component.getClass().getName() + ".");
+      }
+    }
+
+    backplane.address().value(address);
+    backplane.data().value(data);
+    for(int i = 0; i < signals.length; i++) {
+      signals[i].restore(values[i]);
+    }
+    for(Snapshottable component: components) {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      component.restore(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+  }
+
+  /**
+   * Copy the state of one component to another of the same kind, as
+   * saving and restoring a Snapshot would.
+   *
+   * @param from the component to copy from.
+   * @param to the component to copy to.
+   * @throws UncheckedIOException if the state cannot be copied.
+   */
+  static void copy(Snapshottable from, Snapshottable to) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      from.save(new DataOutputStream(bytes));
+      to.restore(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+    catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * Get the signals of the Backplane that are saved, in order.  The
+   * open collectors are left to the components that drive them.
+   *
+   * @param backplane the Backplane.
+   * @return the signals.
+   */
+  static Signal[] signals(Backplane backplane) {
+    return new Signal[] {
+      backplane.rwb(), backplane.sync(), backplane.clock(), backplane.vpb(),
+      backplane.mlb(), backplane.be(), backplane.resb(), backplane.rdy()
+    };
+  }
+}
@@ -0,0 +1,32 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A component of the system whose state is saved in a Snapshot.
+ *
+ * Components add themselves to the Backplane with addSnapshottable(), and
+ * are saved and restored in the order they were added, so a Snapshot can
+ * only be restored into a system built the same way.
+ */
+public interface Snapshottable {
+  /**
+   * Write the state of the component.
+   *
+   * @param out the output to write to.
+   * @throws IOException if the state cannot be written.
+   */
+  void save(DataOutput out) throws IOException;
+
+  /**
+   * Read the state of the component, as written by save().
+   *
+   * @param in the input to read from.
+   * @throws IOException if the state cannot be read, or does not fit the component.
+   */
+  void restore(DataInput in) throws IOException;
+}
@@ -2,13 +2,17 @@
 
 package org.joev.ya6s;
 
-import org.joev.ya6s.monitor.Monitor;
-import org.joev.ya6s.signals.Bus;
-import org.joev.ya6s.signals.Signal;
+import org.joev.ya6s.signals.OpenCollector;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 
 /**
@@ -49,16 +53,19 @@ import java.util.Map;
  * ; A9 83 8D 03 F0 A9 78 8D 00 F0 9C 01 F0 A9 03 8D 03 F0 A9 01 2C 05 F0 F0 FB AE 00 F0 A9 20 2C 05 F0 F0 FB 8E 00 F0 80 EA
  *
  * </code>
+ *
+ * A UART on the console uses a thread to transmit and another to receive,
+ * and transmits at the rate set by the divisor.  A UART on a TCP port
+ * instead shares a single thread with every other such UART, which moves
+ * bytes between the socket and the FIFOs as fast as the socket allows.
  */
-public final class UART {
-  private final static short addressMask = (short)0xFFF8;
+public final class UART implements Addressable, Snapshottable, Forkable {
   private final static double frequency = 18432000d; // 18.432MHz crystal
 
   private final Backplane backplane;
+  private final OpenCollector irqb;
+  private final int irqSlot;
 
-  private final Bus address;
-  private final Bus data;
-  private final Signal.Listener tickFn;
   private final short baseAddress;
 
   private final Thread xmitThread;
@@ -78,6 +85,13 @@ public final class UART {
   private final OutputStream out;
   private boolean closing = false;
 
+  private final UARTSelector.Port port;
+  // Whether the selector thread has been asked to write the transmitter
+  // FIFO, guarded by xmitFifo, and whether it is reading into the
+  // receiver FIFO, guarded by recvFifo.
+  private boolean transmitting = false;
+  private boolean receiving = true;
+
   // 16550D Registers
 
   /** Receiver Buffer Register */
@@ -148,8 +162,9 @@ public final class UART {
    * @param backplane the Backplane containing the address and data busses.
    * @param options the Map of options for this UART.
    *   "base": the hex address of the base of the UART registers.
-   *   "port" (future): the decimal port number to listen on, or "tty" if the
-   *     monitor input and output should be used.
+   *   "port": the decimal number of the TCP port to listen on, on the
+   *     loopback interface, or "tty", the default, to use the console
+   *     streams of the Backplane.  Port 0 listens on any free port.
    */
   public UART(Backplane backplane, Map<String, String> options) {
     short base;
@@ -159,42 +174,88 @@ public final class UART {
       base = (short)Integer.parseInt(options.get("base"), 16);
     }
 
-    if(!options.containsKey("port") || "tty".equalsIgnoreCase(options.get("port"))) {
-      this.in = Monitor.ttyIn;
-      this.out = Monitor.ttyOut;
-    } else {
-      throw new IllegalArgumentException("Non-\"tty\" value for \"port\" option not yet supported.");
+    String portString = options.getOrDefault("port", "tty");
+    boolean tty = "tty".equalsIgnoreCase(portString);
+    int portNumber = tty ? -1 : Integer.parseInt(portString);
+    if(!tty && (portNumber < 0 || portNumber > 0xFFFF)) {
+      throw new IllegalArgumentException("The \"port\" option must be \"tty\" or a port number.");
     }
+    this.in = tty ? backplane.consoleIn() : null;
+    this.out = tty ? backplane.consoleOut() : null;
 
     this.backplane   = backplane;
     this.baseAddress = base;
 
-    address = backplane.address();
-    data    = backplane.data();
+    irqb = backplane.irqb();
+
+    backplane.attach(this);
+    if(tty) {
+      port = null;
+    }
+    else {
+      try {
+        port = UARTSelector.instance().open(this, portNumber);
+      }
+      catch (IOException ioe) {
+        backplane.detach(this);
+        throw new IllegalArgumentException("Could not listen on port " + portNumber + ": " + ioe.getMessage(), ioe);
+      }
+    }
+    backplane.addSnapshottable(this);
+    irqSlot = irqb.attach(this);
 
-    tickFn = this::tick;
-    backplane.clock().register(tickFn);
+    if(tty) {
+      xmitThread = new Thread(this::transmitter, String.format("UART $%04X transmitter", baseAddress));
+      xmitThread.start();
 
-    xmitThread = new Thread(this::transmitter, String.format("UART $%04X transmitter", baseAddress));
-    xmitThread.start();
+      recvThread = new Thread(this::receiver, String.format("UART $%04X receiver", baseAddress));
+      recvThread.start();
+    }
+    else {
+      xmitThread = null;
+      recvThread = null;
+    }
+  }
 
-    recvThread = new Thread(this::receiver, String.format("UART $%04X receiver", baseAddress));
-    recvThread.start();
+  /**
+   * Get the number of the TCP port the UART listens on.
+   *
+   * @return the port number, or -1 if the UART uses the console.
+   */
+  public int port() {
+    return port == null ? -1 : port.number();
   }
 
   /**
-   * Shut down the UART.  Stops the transmitter and receiver threads.
+   * Shut down the UART.  Detaches from the Backplane, and stops the
+   * transmitter and receiver threads, or stops listening on the TCP port.
+   * Returns once the transmitter has written any characters left in its
+   * FIFO.
    */
   public void close() {
+    backplane.detach(this);
+    backplane.removeSnapshottable(this);
+    irqb.detach(this);
+    if(port != null) {
+      port.close();
+      return;
+    }
     closing = true;
     xmitThread.interrupt();
     recvThread.interrupt();
+    try {
+      xmitThread.join();
+    }
+    catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   /**
    * Transmitter thread routine.
    *
-   * This method loops until the UART is closed.
+   * This method loops until the UART is closed, then writes the rest of
+   * the FIFO.
    */
   private void transmitter() {
     while(!closing) {
@@ -243,17 +304,37 @@ public final class UART {
         }
       }
     }
+
+    synchronized(xmitFifo) {
+      try {
+        while(xmitHead != xmitTail) {
+          out.write(xmitFifo[xmitTail++]);
+          if(xmitTail == xmitFifo.length) {
+            xmitTail = 0;
+          }
+        }
+        out.flush();
+      }
+      catch (IOException ioe) {
+        // eat it.
+      }
+      LSR |= (TEMT | THRE);
+    }
   }
 
   /**
    * Receiver thread routine.
    *
-   * This method loops until the UART is closed.
+   * This method loops until the UART is closed, or the end of the input
+   * is reached.
    */
   private void receiver() {
     while(!closing) {
       try {
         int c = in.read();
+        if(c < 0) {
+          return;
+        }
         synchronized(recvFifo) {
           if(((recvHead + 1) % recvFifo.length) == recvTail) {
             // TODO: handle overflow
@@ -275,75 +356,232 @@ public final class UART {
   }
 
   /**
-   * Handle a read or write upon a positive clock tick, if the address bus
-   * contains an address for a UART register.
+   * Write the transmitter FIFO to a TCP client, for the selector thread.
+   * Once the FIFO is empty, the transmitter is empty as well.
    *
-   * @param eventType the type of Signal event.
+   * @param channel the client, or null to empty the FIFO without writing it.
+   * @return true if the FIFO is empty.
+   * @throws IOException if the FIFO cannot be written.
    */
-  private void tick(Signal.EventType eventType) {
-    // Return immediately if this is not a positive edge, or if the address
-    // bus value is not for this module
-    if(eventType != Signal.EventType.POSITIVE_EDGE ||
-      ((short)(address.value() & addressMask) != baseAddress)) {
-      return;
+  boolean transmit(WritableByteChannel channel) throws IOException {
+    synchronized(xmitFifo) {
+      while(xmitHead != xmitTail) {
+        int end = xmitHead > xmitTail ? xmitHead : xmitFifo.length;
+        int count = channel == null ? end - xmitTail :
+          channel.write(ByteBuffer.wrap(xmitFifo, xmitTail, end - xmitTail));
+        if(count == 0) {
+          return false;
+        }
+        xmitTail = (xmitTail + count) % xmitFifo.length;
+      }
+      transmitting = false;
+      // Set the Transmitter Empty and
+      // Transmitter Holding Register Empty Flag
+      LSR |= (TEMT | THRE);
+
+      // If the THRE Interrupt is enabled, raise the interrupt.
+      updateInterruptStatus();
+      return true;
     }
+  }
 
-    boolean  rwb = backplane.rwb().value();
-    int reg = address.value() & 0x0007;
-    if(rwb) {
-      switch(reg) {
-        case 0:
-          // If the Divisor Latch Access Bit is zero, read the received value
-          if((LCR & 0x80) == 0) {
-            recv();
-            data.value(RBR);
+  /**
+   * Read from a TCP client into the receiver FIFO, for the selector
+   * thread, until the FIFO is full or nothing more can be read.
+   *
+   * @param channel the client.
+   * @return true if the FIFO still has room.
+   * @throws IOException if the client cannot be read, or has closed the connection.
+   */
+  boolean receive(ReadableByteChannel channel) throws IOException {
+    synchronized(recvFifo) {
+      try {
+        while(true) {
+          // The free space runs from the head to the byte before the tail.
+          int end = recvTail > recvHead ? recvTail - 1 : recvTail == 0 ? recvFifo.length - 1 : recvFifo.length;
+          if(end == recvHead) {
+            receiving = false;
+            return false;
           }
-          else {
-            // otherwise, read the low Divisor Latch bits
-            data.value(DLL);
+          int count = channel.read(ByteBuffer.wrap(recvFifo, recvHead, end - recvHead));
+          if(count < 0) {
+            throw new EOFException();
           }
-          break;
-        case 1: data.value((LCR & 0x80) == 0 ? IER : DLM); break;
-        case 2: data.value(IIR); break;
-        case 3: data.value(LCR); break;
-        case 4: data.value(MCR); break;
-        case 5: data.value(LSR); break;
-        case 6: data.value(MSR); break;
-        case 7: data.value(SCR); break;
-        default:
+          if(count == 0) {
+            return true;
+          }
+          recvHead = (recvHead + count) % recvFifo.length;
+        }
+      }
+      finally {
+        if(recvHead != recvTail) {
+          // Set Data Ready flag.
+          LSR |= DR;
+        }
       }
     }
-    else {
-      byte b = (byte)data.value();
-      switch(reg) {
-        case 0:
-          if((LCR & 0x80) == 0) {
-            THR = b; xmit();
-          }
-          else {
-            DLL = b;
-            updateDivisor();
-          }
-          break;
-        case 1:
-          if((LCR & 0x80) == 0) {
-            IER = b;
-            updateInterruptStatus();
-          }
-          else {
-            DLM = b;
-            updateDivisor();
-          }
-          break;
-        case 2: FCR = b; break;
-        case 3: LCR = b; break;
-        case 4: MCR = b; break;
-        case 5: LSR = b; break;
-        case 6: MSR = b; break;
-        case 7: SCR = b; break;
-        default:
+  }
+
+  @Override
+  public int base() { return baseAddress & 0xFFFF; }
+
+  @Override
+  public int size() { return 8; }
+
+  /**
+   * Read a UART register.
+   *
+   * @param address the address of the register.
+   * @return the value of the register.
+   */
+  @Override
+  public byte read(int address) {
+    switch(address & 0x0007) {
+      case 0:
+        // If the Divisor Latch Access Bit is zero, read the received value
+        if((LCR & 0x80) == 0) {
+          recv();
+          return RBR;
+        }
+        // otherwise, read the low Divisor Latch bits
+        return DLL;
+      case 1: return (LCR & 0x80) == 0 ? IER : DLM;
+      case 2: return IIR;
+      case 3: return LCR;
+      case 4: return MCR;
+      case 5: return LSR;
+      case 6: return MSR;
+      default: return SCR;
+    }
+  }
+
+  /**
+   * Read a UART register without receiving a character.  The receive
+   * buffer register shows the character the next read would return.
+   *
+   * @param address the address of the register.
+   * @return the value of the register.
+   */
+  @Override
+  public byte peek(int address) {
+    if((address & 0x0007) == 0 && (LCR & 0x80) == 0) {
+      synchronized(recvFifo) {
+        return recvHead != recvTail ? recvFifo[recvTail] : RBR;
       }
     }
+    return read(address);
+  }
+
+  /**
+   * Write a UART register.
+   *
+   * @param address the address of the register.
+   * @param b the value to write.
+   */
+  @Override
+  public void write(int address, byte b) {
+    switch(address & 0x0007) {
+      case 0:
+        if((LCR & 0x80) == 0) {
+          THR = b; xmit();
+        }
+        else {
+          DLL = b;
+          updateDivisor();
+        }
+        break;
+      case 1:
+        if((LCR & 0x80) == 0) {
+          IER = b;
+          updateInterruptStatus();
+        }
+        else {
+          DLM = b;
+          updateDivisor();
+        }
+        break;
+      case 2: FCR = b; break;
+      case 3: LCR = b; break;
+      case 4: MCR = b; break;
+      case 5: LSR = b; break;
+      case 6: MSR = b; break;
+      case 7: SCR = b; break;
+      default:
+    }
+  }
+
+  /**
+   * Create a copy of the UART on another Backplane, with the same
+   * registers and FIFOs.  The copy uses the console streams of the other
+   * Backplane.
+   *
+   * @param backplane the Backplane of the forked system.
+   * @return the copy.
+   */
+  @Override
+  public UART fork(Backplane backplane) {
+    UART copy = new UART(backplane, Map.of("base", Integer.toHexString(base())));
+    Snapshot.copy(this, copy);
+    return copy;
+  }
+
+  /**
+   * Write the registers and the contents of the FIFOs.
+   *
+   * @param out the output to write to.
+   * @throws IOException if the state cannot be written.
+   */
+  @Override
+  public void save(DataOutput out) throws IOException {
+    out.write(new byte[] { RBR, THR, IER, IIR, FCR, LCR, MCR, LSR, MSR, SCR, DLL, DLM });
+    synchronized(xmitFifo) {
+      out.write(xmitFifo);
+      out.writeByte(xmitHead);
+      out.writeByte(xmitTail);
+    }
+    synchronized(recvFifo) {
+      out.write(recvFifo);
+      out.writeByte(recvHead);
+      out.writeByte(recvTail);
+    }
+  }
+
+  /**
+   * Read the registers and the contents of the FIFOs, and update the
+   * divisor and the interrupt status to match.
+   *
+   * @param in the input to read from.
+   * @throws IOException if the state cannot be read.
+   */
+  @Override
+  public void restore(DataInput in) throws IOException {
+    byte[] r = new byte[12];
+    in.readFully(r);
+    RBR = r[0]; THR = r[1]; IER = r[2]; IIR = r[3]; FCR = r[4];  LCR = r[5];
+    MCR = r[6]; LSR = r[7]; MSR = r[8]; SCR = r[9]; DLL = r[10]; DLM = r[11];
+    synchronized(xmitFifo) {
+      in.readFully(xmitFifo);
+      xmitHead = in.readUnsignedByte() % xmitFifo.length;
+      xmitTail = in.readUnsignedByte() % xmitFifo.length;
+      if(port == null) {
+        xmitFifo.notifyAll();
+      }
+      else if(xmitHead != xmitTail && !transmitting) {
+        transmitting = true;
+        port.transmit();
+      }
+    }
+    synchronized(recvFifo) {
+      in.readFully(recvFifo);
+      recvHead = in.readUnsignedByte() % recvFifo.length;
+      recvTail = in.readUnsignedByte() % recvFifo.length;
+      if(port != null && !receiving) {
+        receiving = true;
+        port.receive();
+      }
+    }
+    updateDivisor();
+    updateInterruptStatus();
   }
 
   /**
@@ -352,13 +590,13 @@ public final class UART {
   private void updateInterruptStatus() {
     if(IER == 0) {
       IIR |= 1; IIR &= ~0b00001110;
-      backplane.irqb().value(this, true);
+      irqb.value(irqSlot, true);
       return;
     }
 
     if(((IER & 0b00000010) != 0) && ((LSR & THRE) != 0)) {
       IIR = 2;
-      backplane.irqb().value(this, false);
+      irqb.value(irqSlot, false);
     }
     else {
       IIR = 1;
@@ -401,7 +639,13 @@ public final class UART {
         // If the THRE Interrupt is enabled, clear the interrupt.
         updateInterruptStatus();
       }
-      xmitFifo.notifyAll();
+      if(port == null) {
+        xmitFifo.notifyAll();
+      }
+      else if(!transmitting) {
+        transmitting = true;
+        port.transmit();
+      }
     }
   }
 
@@ -420,6 +664,10 @@ public final class UART {
         // Clear Data Ready flag.
         LSR &= ~DR;
       }
+      if(port != null && !receiving) {
+        receiving = true;
+        port.receive();
+      }
     }
   }
 }
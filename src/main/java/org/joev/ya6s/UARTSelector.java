@@ -0,0 +1,392 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The thread shared by every UART that listens on a TCP port.  It accepts
+ * connections on the loopback interface, and moves bytes between the
+ * sockets and the FIFOs of the UARTs, with a single NIO Selector, so a
+ * process can run many UARTs without a thread each.
+ *
+ * Each UART takes one client at a time; a client that connects while
+ * another is connected is closed at once.  The sockets are only touched
+ * by the selector thread.  The processor asks for a FIFO to be written
+ * or read by submitting a task to the thread, which it does only when
+ * the thread has stopped writing or reading that FIFO.
+ */
+final class UARTSelector implements Runnable {
+  private static final long TIMEOUT_SECONDS = 5;
+  private static UARTSelector instance;
+
+  private final Selector selector;
+  private final Thread thread;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Work done on the selector thread that may fail with an IOException.
+   */
+  @FunctionalInterface
+  private interface Task {
+    void run() throws IOException;
+  }
+
+  /**
+   * The listening socket of a UART, and the client connected to it.
+   */
+  final class Port {
+    private final UART uart;
+    private final ServerSocketChannel server;
+    private SelectionKey serverKey;
+    private SocketChannel client;
+    private SelectionKey clientKey;
+
+    /**
+     * Create a Port for a UART.
+     *
+     * @param uart the UART.
+     * @param server the bound listening socket.
+     */
+    private Port(UART uart, ServerSocketChannel server) {
+      this.uart = uart;
+      this.server = server;
+    }
+
+    /**
+     * Get the number of the TCP port.
+     *
+     * @return the port number.
+     */
+    int number() {
+      return server.socket().getLocalPort();
+    }
+
+    /**
+     * Ask the selector thread to write the transmitter FIFO to the client.
+     * Without a client, the FIFO is emptied, as a serial line with nothing
+     * attached would.
+     */
+    void transmit() {
+      submit(this, () -> {
+        if(clientKey == null) {
+          discard();
+        }
+        else if(clientKey.isValid()) {
+          clientKey.interestOps(clientKey.interestOps() | SelectionKey.OP_WRITE);
+        }
+      });
+    }
+
+    /**
+     * Ask the selector thread to read from the client again, now that
+     * the receiver FIFO has room.
+     */
+    void receive() {
+      submit(this, () -> {
+        if(clientKey != null && clientKey.isValid()) {
+          clientKey.interestOps(clientKey.interestOps() | SelectionKey.OP_READ);
+        }
+      });
+    }
+
+    /**
+     * Stop listening, after writing what is left in the transmitter FIFO
+     * to the client, and close the connection.  Returns once the port has
+     * been released, or, if the selector thread does not get to it in
+     * time, once the listening socket has been closed from this thread.
+     */
+    void close() {
+      int number = number();
+      try {
+        await(() -> {
+          if(client != null) {
+            try {
+              uart.transmit(client);
+            }
+            catch (IOException ioe) {
+              // The client is going away anyway.
+            }
+          }
+          disconnect();
+          if(serverKey != null) {
+            serverKey.cancel();
+          }
+          server.close();
+          // Deregister the cancelled keys, which releases the port.
+          selector.selectNow();
+        });
+      }
+      catch (IOException ioe) {
+        System.err.format("UART port %d: %s%n", number, ioe.getMessage());
+        try {
+          server.close();
+        }
+        catch (IOException closeFailed) {
+          // Nothing more can be done with it.
+        }
+      }
+    }
+
+    /**
+     * Report an unexpected failure while handling the port, and close the
+     * connection to the client, leaving the other ports running.
+     *
+     * @param re the failure.
+     */
+    private void fail(RuntimeException re) {
+      System.err.format("UART port %d: %s%n", number(), re);
+      disconnect();
+    }
+
+    /**
+     * Accept a connection, unless a client is already connected.
+     */
+    private void accept() throws IOException {
+      SocketChannel channel = server.accept();
+      if(channel == null) {
+        return;
+      }
+      if(client != null) {
+        channel.close();
+        return;
+      }
+      channel.configureBlocking(false);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      client = channel;
+      clientKey = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Handle a client that is ready to be read from or written to.
+     */
+    private void ready() {
+      try {
+        if(clientKey.isReadable() && !uart.receive(client)) {
+          clientKey.interestOps(clientKey.interestOps() & ~SelectionKey.OP_READ);
+        }
+        if(clientKey.isValid() && clientKey.isWritable() && uart.transmit(client)) {
+          clientKey.interestOps(clientKey.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+      }
+      catch (IOException ioe) {
+        // The client disconnected, or the connection failed.
+        disconnect();
+      }
+    }
+
+    /**
+     * Close the connection to the client, if there is one, and empty the
+     * transmitter FIFO.
+     */
+    private void disconnect() {
+      if(client != null) {
+        clientKey.cancel();
+        try {
+          client.close();
+        }
+        catch (IOException ioe) {
+          // Nothing more can be done with it.
+        }
+        client = null;
+        clientKey = null;
+      }
+      discard();
+    }
+
+    /**
+     * Empty the transmitter FIFO.
+     */
+    private void discard() {
+      try {
+        uart.transmit(null);
+      }
+      catch (IOException ioe) {
+        // Nothing is written.
+      }
+    }
+  }
+
+  /**
+   * Create the selector.
+   *
+   * @throws IOException if the selector cannot be opened.
+   */
+  private UARTSelector() throws IOException {
+    selector = Selector.open();
+    thread = new Thread(this, "UART selector");
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Get the shared selector, starting its thread the first time.
+   *
+   * @return the selector.
+   * @throws IOException if the selector cannot be opened.
+   */
+  static synchronized UARTSelector instance() throws IOException {
+    if(instance == null) {
+      UARTSelector created = new UARTSelector();
+      created.thread.start();
+      instance = created;
+    }
+    return instance;
+  }
+
+  /**
+   * Listen for connections to a UART on a port of the loopback interface.
+   * Returns once the selector thread is watching the port.
+   *
+   * @param uart the UART.
+   * @param number the port number, or 0 for any free port.
+   * @return the Port.
+   * @throws IOException if the port cannot be listened on.
+   */
+  Port open(UART uart, int number) throws IOException {
+    ServerSocketChannel server = ServerSocketChannel.open();
+    Port port = new Port(uart, server);
+    try {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), number));
+      server.configureBlocking(false);
+      await(() -> port.serverKey = server.register(selector, SelectionKey.OP_ACCEPT, port));
+    }
+    catch (IOException ioe) {
+      server.close();
+      throw ioe;
+    }
+    return port;
+  }
+
+  /**
+   * Run a task on the selector thread.
+   *
+   * @param task the task.
+   */
+  private void submit(Runnable task) {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  /**
+   * Run a task on the selector thread, and wait for it to finish.  A task
+   * for the selector thread is run at once when the selector thread
+   * itself asks for it.
+   *
+   * @param task the task.
+   * @throws IOException if the task fails, or is not finished in time.
+   */
+  private void await(Task task) throws IOException {
+    if(Thread.currentThread() == thread) {
+      task.run();
+      return;
+    }
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    submit(() -> {
+      try {
+        task.run();
+        done.complete(null);
+      }
+      catch (IOException | RuntimeException e) {
+        done.completeExceptionally(e);
+      }
+    });
+    try {
+      done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    catch (ExecutionException ee) {
+      if(ee.getCause() instanceof IOException ioe) {
+        throw ioe;
+      }
+      throw new IOException(ee.getCause());
+    }
+    catch (TimeoutException te) {
+      throw new IOException("The UART selector thread is not responding.", te);
+    }
+    catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for the UART selector thread.");
+    }
+  }
+
+  /**
+   * Run a task for a port on the selector thread, disconnecting the
+   * port's client if the task fails.
+   *
+   * @param port the port.
+   * @param task the task.
+   */
+  private void submit(Port port, Runnable task) {
+    submit(() -> {
+      try {
+        task.run();
+      }
+      catch (RuntimeException re) {
+        port.fail(re);
+      }
+    });
+  }
+
+  /**
+   * Selector thread routine.  Waits for sockets that are ready, and runs
+   * the submitted tasks.  A failure while handling one port disconnects
+   * its client, and never stops the thread, which the other ports share.
+   */
+  @Override
+  public void run() {
+    while(true) {
+      try {
+        selector.select();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while(keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          Port port = (Port)key.attachment();
+          try {
+            if(!key.isValid()) {
+              continue;
+            }
+            if(key.isAcceptable()) {
+              port.accept();
+            }
+            else {
+              port.ready();
+            }
+          }
+          catch (IOException ioe) {
+            System.err.format("UART port %d: %s%n", port.number(), ioe.getMessage());
+          }
+          catch (RuntimeException re) {
+            port.fail(re);
+          }
+        }
+        Runnable task;
+        while((task = tasks.poll()) != null) {
+          try {
+            task.run();
+          }
+          catch (RuntimeException re) {
+            System.err.format("UART selector: %s%n", re);
+          }
+        }
+      }
+      catch (IOException | RuntimeException e) {
+        System.err.format("UART selector: %s%n", e);
+      }
+    }
+  }
+}
@@ -2,15 +2,21 @@
 
 package org.joev.ya6s;
 
-import static org.joev.ya6s.Address.*;
-import static org.joev.ya6s.Data.*;
 import static org.joev.ya6s.AddressingMode.*;
 import static org.joev.ya6s.Instruction.*;
+import static org.joev.ya6s.MicroOp.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
 
 import org.joev.ya6s.signals.Bus;
 import org.joev.ya6s.signals.Signal;
 
-public class W65C02S {
+public final class W65C02S implements Snapshottable, Forkable {
   public static final Instruction[] instructions = {
   // x0  x1  x2  x3  x4  x5  x6  x7   x8  x9  xA  xB  xC  xD  xE  xF
     BRK,ORA,XXX,XXX,TSB,ORA,ASL,RMB, PHP,ORA,ASL,XXX,TSB,ORA,ASL,BBR, // 0x
@@ -308,6 +314,12 @@ public class W65C02S {
     RELATIVE_BB             // FF BBS7
   };
 
+  /** The micro-op program of each opcode. */
+  private static final int[][] programs = MicroOp.compile(addressingModes);
+
+  /** The micro-op program used for interrupts and resets. */
+  private static final int[] interruptProgram = MicroOp.compile(STACK_INTERRUPT.cycles());
+
   private enum InterruptMode {
     NONE((short)0),
     NMI((short)0xFFFA),
@@ -321,6 +333,40 @@ public class W65C02S {
     public short vector() { return vector; }
   }
 
+  /**
+   * The ways the processor can execute instructions.
+   */
+  public enum Engine {
+    /** Run each instruction one clock cycle at a time, driving the busses. */
+    CYCLE,
+
+    /**
+     * Run each instruction in a single step against the Backplane's
+     * attached devices, falling back to CYCLE when bus timing is required.
+     */
+    FAST
+  }
+
+  /**
+   * The reasons that run(long) returns.
+   */
+  public enum StopReason {
+    /** The clock cycle budget was used up. */
+    BUDGET,
+
+    /** The processor executed STP. */
+    STOPPED,
+
+    /** The breakpoint matched. */
+    BREAKPOINT,
+
+    /** The processor executed WAI, and nothing can interrupt it. */
+    WAITING,
+
+    /** requestStop() was called. */
+    STOP_REQUESTED
+  }
+
   private final static byte NEGATIVE          = (byte)0b10000000;
   private final static byte OVERFLOW          = (byte)0b01000000;
   private final static byte RESERVED          = (byte)0b00100000;
@@ -330,6 +376,10 @@ public class W65C02S {
   private final static byte ZERO              = (byte)0b00000010;
   private final static byte CARRY             = (byte)0b00000001;
 
+  private final static int MAX_BLOCK_LENGTH = 64;
+  private final static int COMPILE_THRESHOLD = 1000;
+  private final static int RUN_BUDGET = 10000;
+
   private short pc;
   private byte a;
   private byte x;
@@ -337,20 +387,41 @@ public class W65C02S {
   private byte s;
   private byte p = RESERVED;
 
+  // The N, Z, C and V flags are not kept in p, since almost every
+  // instruction changes them.  N and Z are derived from the last result,
+  // where bit 8 forces N when it does not follow bit 7, C holds 0 or 1,
+  // and V is bit 7 of v.
+  private int nz = 1;
+  private int carry = 0;
+  private int v = 0;
+
   private byte op;
   private short aa;
   private byte zp;
   private short new_pc;
-  private Data readRegister = NULL;
+  private int readRegister = NULL;
   private InterruptMode interruptMode = InterruptMode.NONE;
 
-  private Cycle[] cycles = IMPLIED.cycles();
+  private Instruction instruction = instructions[0];
+  private AddressingMode mode = addressingModes[0];
+  private int[] program = programs[0xEA]; // NOP
   private int cycle;
   private boolean stopped = false;
   private boolean waiting = false;
   private int extraCycles = 0;
   private boolean branch = false;
   private long cycleCount = 0;
+  private Engine engine = Engine.CYCLE;
+  private boolean busStale = false;
+  private int stepClocks = 0;
+  private int advanced = 0;
+  private volatile boolean stopRequested = false;
+  private final BlockCache blockCache = new BlockCache();
+  private BlockCache.Entry current = null;
+  private int cacheVersion;
+  private final byte[][] direct = new byte[2][];
+  private final boolean[] timed = new boolean[256];
+  private int directVersion;
 
   private final Signal phi2;
   private final Signal vpb;
@@ -363,10 +434,14 @@ public class W65C02S {
   private final Signal be;
   private final Bus addressBus;
   private final Bus dataBus;
+  private final Backplane backplane;
+  private final Scheduler scheduler;
 
   private final Signal.Listener tickFn = this::tick;
+  private final Signal.Listener snoopFn = this::snoop;
 
   public W65C02S(Backplane backplane) {
+    this.backplane = backplane;
     this.phi2 = backplane.clock();
     this.vpb = backplane.vpb();
     this.mlb = backplane.mlb();
@@ -378,17 +453,30 @@ public class W65C02S {
     this.irqb = backplane.irqb();
     this.addressBus = backplane.address();
     this.dataBus = backplane.data();
+    this.scheduler = backplane.scheduler();
+
+    this.cacheVersion = backplane.version();
+    // Fetch the zero page and the stack before the first instruction.
+    this.directVersion = backplane.directVersion() - 1;
+    backplane.addSnapshottable(this);
+    // Memory changed by a debugger or a bank switch may hold decoded
+    // instructions.
+    backplane.addChangeListener(blockCache::written);
 
     rdy.value(true);
     resb.value(true);
 
-    phi2.register(tickFn);
+    // While the processor is not ready, another device may be driving the
+    // busses, so watch for writes that invalidate decoded instructions.
+    phi2.registerFalling(tickFn);
     rdy.register(et -> {
       if(et == Signal.EventType.POSITIVE_EDGE) {
-        phi2.register(tickFn);
+        phi2.unregister(snoopFn);
+        phi2.registerFalling(tickFn);
       }
       else {
         phi2.unregister(tickFn);
+        phi2.register(snoopFn);
       }
     });
   }
@@ -398,7 +486,26 @@ public class W65C02S {
   public byte x() { return x; }
   public byte y() { return y; }
   public byte s() { return s; }
-  public byte p() { return p; }
+  public byte p() {
+    return (byte)((p & (RESERVED | BREAK | DECIMAL | INTERRUPT_DISABLE)) |
+      (negative() ? NEGATIVE : 0) | ((v & 0x80) >>> 1) | (zero() ? ZERO : 0) | carry);
+  }
+
+  /**
+   * Set the processor status register, including the N, Z, C and V flags.
+   *
+   * @param value the new processor status.
+   */
+  private void p(byte value) {
+    p = value;
+    nz = ((value & ZERO) != 0 ? 0 : 1) | ((value & NEGATIVE) != 0 ? 0x100 : 0);
+    carry = value & CARRY;
+    v = value << 1;
+  }
+
+  private boolean negative() { return (nz & 0x180) != 0; }
+  private boolean zero() { return (nz & 0xFF) == 0; }
+  private boolean overflow() { return (v & 0x80) != 0; }
 
   /**
    * Return the processor status bits as a String.
@@ -406,6 +513,7 @@ public class W65C02S {
    * @return the status string
    */
   public String status() {
+    byte p = p();
     char[] c = new char[8];
     c[0] = ((p & NEGATIVE) == 0) ?          'n' : 'N';
     c[1] = ((p & OVERFLOW) == 0) ?          'v' : 'V';
@@ -425,6 +533,127 @@ public class W65C02S {
   public boolean stopped() { return stopped; }
   public long cycleCount() { return cycleCount; }
 
+  /**
+   * Get the execution engine.
+   *
+   * @return the execution engine.
+   */
+  public Engine engine() { return engine; }
+
+  /**
+   * Set the execution engine.  Takes effect at the next step.
+   *
+   * @param engine the new execution engine.
+   */
+  public void engine(Engine engine) { this.engine = engine; }
+
+  /**
+   * Create a copy of the processor on another Backplane, in the middle of
+   * the same instruction.  The copy decodes and compiles its own blocks.
+   *
+   * @param backplane the Backplane of the forked system.
+   * @return the copy.
+   */
+  @Override
+  public W65C02S fork(Backplane backplane) {
+    // A new processor releases RDY and RESB, which the forked system
+    // already holds at the values of this one.
+    boolean ready = backplane.rdy().value();
+    boolean reset = backplane.resb().value();
+    W65C02S copy = new W65C02S(backplane);
+    backplane.rdy().restore(ready);
+    backplane.resb().restore(reset);
+    Snapshot.copy(this, copy);
+    return copy;
+  }
+
+  /**
+   * Write the registers and the state of the instruction in progress.
+   *
+   * @param out the output to write to.
+   * @throws IOException if the state cannot be written.
+   */
+  @Override
+  public void save(DataOutput out) throws IOException {
+    int programIndex = -1;
+    for(int i = 0; i < programs.length; i++) {
+      if(program == programs[i]) {
+        programIndex = i;
+      }
+    }
+    out.writeShort(pc);
+    out.writeByte(a);
+    out.writeByte(x);
+    out.writeByte(y);
+    out.writeByte(s);
+    out.writeByte(p());
+    out.writeByte(op);
+    out.writeShort(aa);
+    out.writeByte(zp);
+    out.writeShort(new_pc);
+    out.writeByte(readRegister);
+    out.writeByte(interruptMode.ordinal());
+    out.writeShort(programIndex);
+    out.writeByte(cycle);
+    out.writeBoolean(stopped);
+    out.writeBoolean(waiting);
+    out.writeInt(extraCycles);
+    out.writeBoolean(branch);
+    out.writeLong(cycleCount);
+    out.writeByte(engine.ordinal());
+    out.writeBoolean(busStale);
+  }
+
+  /**
+   * Read the registers and the state of the instruction in progress.
+   * Decoded and compiled instructions are discarded, since memory may
+   * have changed.
+   *
+   * @param in the input to read from.
+   * @throws IOException if the state cannot be read.
+   */
+  @Override
+  public void restore(DataInput in) throws IOException {
+    pc = in.readShort();
+    a = in.readByte();
+    x = in.readByte();
+    y = in.readByte();
+    s = in.readByte();
+    p(in.readByte());
+    op = in.readByte();
+    aa = in.readShort();
+    zp = in.readByte();
+    new_pc = in.readShort();
+    readRegister = in.readUnsignedByte();
+    interruptMode = InterruptMode.values()[in.readUnsignedByte()];
+    int programIndex = in.readShort();
+    cycle = in.readUnsignedByte();
+    stopped = in.readBoolean();
+    waiting = in.readBoolean();
+    extraCycles = in.readInt();
+    branch = in.readBoolean();
+    cycleCount = in.readLong();
+    engine = Engine.values()[in.readUnsignedByte()];
+    busStale = in.readBoolean();
+
+    instruction = instructions[op & 0xFF];
+    mode = addressingModes[op & 0xFF];
+    program = programIndex < 0 ? interruptProgram : programs[programIndex];
+    current = null;
+    blockCache.clear();
+    cacheVersion = backplane.version();
+
+    // The rdy signal was restored without notifying its listeners.
+    phi2.unregister(tickFn);
+    phi2.unregister(snoopFn);
+    if(rdy.value()) {
+      phi2.registerFalling(tickFn);
+    }
+    else {
+      phi2.register(snoopFn);
+    }
+  }
+
   /**
    * Set or clear the Negative and Zero flags based on the data.
    * If the data is zero, set the Zero flag, otherwise, clear it.
@@ -433,31 +662,25 @@ public class W65C02S {
    * @param data the byte used to set or cleart the flags.
    */
   private void setNZ(byte data) {
-    p = (byte)((data == 0) ? (p | ZERO)     : (p & ~ZERO));
-    p = (byte)((data <  0) ? (p | NEGATIVE) : (p & ~NEGATIVE));
+    nz = data & 0xFF;
   }
 
   /**
-   * Set the Carry flag to the given value.
+   * Set or clear the Zero flag, leaving the Negative flag alone.
    *
-   * @param value the new value of the Carry flag.
+   * @param value the new value of the Zero flag.
    */
-  private void setC(boolean value) {
-    p = (byte)(value ? (p | CARRY) : (p & ~CARRY));
+  private void setZ(boolean value) {
+    nz = (value ? 0 : 1) | (negative() ? 0x100 : 0);
   }
 
   /**
-   * Set the Carry and Overflow flags based on the sum of two bytes
-   * and the existing Carry flag.  Used during addition and subtraction.
+   * Set the Carry flag to the given value.
    *
-   * @param a the first byte
-   * @param b the second byte
+   * @param value the new value of the Carry flag.
    */
-  private void setCV(byte a, byte b) {
-    int carry = ((p & CARRY) != 0) ? 1 : 0;
-    byte c = (byte)(a + b + carry);
-    p = (byte)(((((a & b) | ((a ^ b) & ~c)) & 0x80) != 0) ? (p | CARRY)    : (p & ~CARRY));
-    p = (byte)(((((a ^ c) & (b ^ c))        & 0x80) != 0) ? (p | OVERFLOW) : (p & ~OVERFLOW));
+  private void setC(boolean value) {
+    carry = value ? 1 : 0;
   }
 
   /**
@@ -466,7 +689,7 @@ public class W65C02S {
    * @param data the byte to shift.
    */
   private byte doASL(byte data) {
-    p = (byte)((data & 0x80) != 0 ? (p | CARRY) : (p & ~CARRY));
+    carry = (data >>> 7) & 1;
     data <<= 1;
     setNZ(data);
     return data;
@@ -478,7 +701,7 @@ public class W65C02S {
    * @param data the byte to rotate
    */
   private byte doROL(byte data) {
-    byte b0 = (byte)((p & CARRY) != 0 ? 1 : 0);
+    byte b0 = (byte)carry;
     setC((data & 0x80) != 0);
     data = (byte)((data << 1) | b0);
     setNZ(data);
@@ -492,7 +715,7 @@ public class W65C02S {
    * @param data the byte to shift.
    */
   private byte doLSR(byte data) {
-    p = (byte)((data & 0x01) == 0 ? (p & ~CARRY) : (p | CARRY));
+    carry = data & 0x01;
     data = (byte)((data >> 1) & 0x7F);
     setNZ(data);
     return data;
@@ -504,46 +727,1014 @@ public class W65C02S {
    * @param data the byte to rotate.
    */
   private byte doROR(byte data) {
-    byte b7 = (byte)((p & CARRY) == 0 ? 0 : 0x80);
-    p = (byte)((data & 0x01) == 0 ? (p & ~CARRY) : (p | CARRY));
+    byte b7 = (byte)(carry << 7);
+    carry = data & 0x01;
     data = (byte)(((data >> 1) & 0x7F) | b7);
     setNZ(data);
     return data;
   }
 
   /**
-   * Perform a BCD addition.
+   * Set the accumulator and the N, Z, C and V flags from an entry of
+   * one of the Arithmetic tables.
+   *
+   * @param entry the table entry.
+   */
+  private void accumulate(int entry) {
+    a = (byte)entry;
+    nz = entry & 0xFF;
+    carry = (entry >>> 8) & 1;
+    v = (entry >>> 2) & 0x80;
+  }
+
+  /**
+   * Add a byte and the Carry flag to the accumulator.  Decimal mode takes
+   * an extra cycle.
+   *
+   * @param data the byte to add.
+   */
+  private void adc(byte data) {
+    boolean decimal = (p & DECIMAL) != 0;
+    if(decimal) {
+      extraCycles++;
+    }
+    accumulate(Arithmetic.ADC[Arithmetic.index(decimal, carry, a, data)]);
+  }
+
+  /**
+   * Subtract a byte and the borrow from the accumulator.  Decimal mode
+   * takes an extra cycle.
+   *
+   * @param data the byte to subtract.
+   */
+  private void sbc(byte data) {
+    boolean decimal = (p & DECIMAL) != 0;
+    if(decimal) {
+      extraCycles++;
+    }
+    accumulate(Arithmetic.SBC[Arithmetic.index(decimal, carry, a, data)]);
+  }
+
+  /**
+   * Compare a register with a byte, setting the N, Z and C flags.
+   *
+   * @param register the value of the register.
+   * @param data the byte to compare with.
+   */
+  private void compare(byte register, byte data) {
+    setNZ((byte)(register - data));
+    setC((register & 0xFF) >= (data & 0xFF));
+  }
+
+  /**
+   * Test the bits of a byte against the accumulator.
+   *
+   * @param data the byte to test.
+   * @param immediate true for BIT Immediate, which does not modify V or N.
+   */
+  private void bit(byte data, boolean immediate) {
+    if(immediate) {
+      setZ((a & data) == 0);
+    }
+    else {
+      nz = ((a & data) == 0 ? 0 : 1) | ((data & 0x80) << 1);
+      v = data << 1;
+    }
+  }
+
+  /**
+   * Run the processor until the next opcode has been fetched, or the
+   * processor is stopped or waiting for an interrupt.
+   *
+   * With the FAST engine, a whole instruction is run at once against the
+   * devices attached to the Backplane.  Resets, interrupts, WAI and STP,
+   * and systems with devices that need bus-level timing are handled one
+   * clock cycle at a time, as with the CYCLE engine.
+   *
+   * @return the number of clock cycles that elapsed.
+   */
+  public int step() {
+    return fastReady() ? fastStep() : cycleStep();
+  }
+
+  /**
+   * Run the processor for one or more instructions.
+   *
+   * This is the same as step(), except that with the FAST engine, when
+   * nothing is watching the sync signal for each instruction, a block of
+   * instructions that has run often enough is compiled, and the compiled
+   * block is run instead, until it leaves the block.
    *
-   * TODO: Set the N and V flags.
+   * @return the number of clock cycles that elapsed.
+   */
+  public int run() {
+    return runBlock(RUN_BUDGET);
+  }
+
+  /**
+   * Run the processor in the caller's thread until at least maxCycles
+   * clock cycles have elapsed, or it stops for another reason.
    *
-   * @param data the byte to add to the accumulator
-   * @param c the carry flag value
+   * @param maxCycles the number of clock cycles to run.
+   * @return the reason the processor stopped.
    */
-  private void doADCDecimal(byte data) {
-    int c = ((p & CARRY) != 0) ? 1 : 0;
-    byte lo = (byte)(((a & 0x0F) + (data & 0x0F) + c) & 0xFF);
-    c = 0;
-    if(lo > 9) { lo += 6; lo &= 0x0F; c++; }
-    byte hi = (byte)((((a >> 4) & 0x0F) + ((data >> 4) & 0x0F) + c) & 0xFF);
-    if(hi > 9) { hi += 6; p |= CARRY; } else { p &= ~CARRY; }
-    a = (byte)((hi << 4) | lo);
+  public StopReason run(long maxCycles) {
+    return run(maxCycles, null);
   }
 
   /**
-   * Perform a BCD subtraction..
+   * Run the processor in the caller's thread until at least maxCycles
+   * clock cycles have elapsed, or it stops for another reason.
+   *
+   * The breakpoint is tested after each instruction, so while there is
+   * one, blocks are not compiled.  The instruction at the current address
+   * is run before the breakpoint is first tested, so a breakpoint that
+   * stopped the processor does not stop it again.
+   *
+   * While the processor waits for an interrupt that only a scheduled
+   * action can raise, or, with the FAST engine, runs a loop that only
+   * polls a device register, the clock skips ahead to the next scheduled
+   * action, with the same result as running each cycle.
    *
-   * TODO: Set the N and V flags.
+   * @param maxCycles the number of clock cycles to run.
+   * @param breakpoint the breakpoint, or null.
+   * @return the reason the processor stopped.
+   */
+  public StopReason run(long maxCycles, Predicate<W65C02S> breakpoint) {
+    long cycles = 0;
+    while(true) {
+      if(stopRequested) {
+        stopRequested = false;
+        return StopReason.STOP_REQUESTED;
+      }
+      if(stopped) {
+        return StopReason.STOPPED;
+      }
+      boolean idle = waiting && irqb.value() && resb.value() && !backplane.busTimingRequired();
+      if(idle && !scheduler.pending()) {
+        return StopReason.WAITING;
+      }
+      if(cycles >= maxCycles) {
+        return StopReason.BUDGET;
+      }
+      if(idle && extraCycles == 0 && scheduler.next() - scheduler.now() > 1) {
+        // Nothing can happen until the next scheduled action, so skip to
+        // the cycle before it; that cycle runs the action.
+        long clocks = Math.min(scheduler.next() - scheduler.now() - 1, maxCycles - cycles);
+        scheduler.advance(clocks);
+        cycles += clocks;
+      }
+      else if(breakpoint == null) {
+        short address = pc;
+        cycles += runBlock((int)Math.min(maxCycles - cycles, RUN_BUDGET));
+        if(pc == address && cycles < maxCycles) {
+          cycles += skipPoll(maxCycles - cycles);
+        }
+      }
+      else {
+        cycles += step();
+        if(sync.value() && breakpoint.test(this)) {
+          return StopReason.BREAKPOINT;
+        }
+      }
+    }
+  }
+
+  /**
+   * Ask run(long) to return as soon as it has finished the current
+   * instruction or compiled block.  May be called from any thread.  If
+   * the processor is not running, the next call to run(long) returns
+   * immediately.
+   */
+  public void requestStop() {
+    stopRequested = true;
+  }
+
+  /**
+   * Run the processor for one or more instructions, running a compiled
+   * block until it leaves the block, has run for the budget, or reaches
+   * the next scheduled action.
    *
-   * @param data the byte to add to the accumulator
+   * @param budget the number of clock cycles a compiled block may run.
+   * @return the number of clock cycles that elapsed.
    */
-  private void doSBCDecimal(byte data) {
-    int c = ((p & CARRY) != 0) ? 1 : 0;
-    byte lo = (byte)(((a & 0x0F) - (data & 0x0F) - 1 + c) & 0xFF);
-    c = 0;
-    if(lo < 0) { lo += 10; lo &= 0x0F; c++; }
-    byte hi = (byte)((((a >> 4) & 0x0F) - ((data >> 4) & 0x0F) - c) & 0xFF);
-    if(hi < 0) { hi += 10; p &= ~CARRY; } else { p |= CARRY; }
-    a = (byte)((hi << 4) | lo);
+  private int runBlock(int budget) {
+    if(fastReady() && sync.listenerCount() == 0) {
+      BlockCache.Entry entry = lookup((pc - 1) & 0xFFFF);
+      if(entry != null) {
+        BlockCache.Block block = entry.block;
+        if(block.code == null && ++block.executions == COMPILE_THRESHOLD) {
+          compile(block);
+        }
+        if(block.code != null) {
+          current = null;
+          directPages();
+          long due = scheduler.next() - scheduler.now();
+          advanced = 0;
+          int clocks = block.code.run(this, block, entry.address, (int)Math.max(1, Math.min(budget, due)));
+          scheduler.advance(clocks - advanced);
+          return clocks;
+        }
+      }
+    }
+    return step();
+  }
+
+  /**
+   * Skip ahead while the processor runs a loop that only polls a device
+   * register, such as "BIT reg / BVC loop", until the next scheduled
+   * action could change the register.
+   *
+   * The loop is run twice first.  If the second pass leaves the registers
+   * as it found them, and no action ran, every later pass does the same
+   * until the next action, so those passes are counted without being run.
+   *
+   * @param budget the number of clock cycles that may elapse.
+   * @return the number of clock cycles that elapsed.
+   */
+  private long skipPoll(long budget) {
+    if(!fastReady() || sync.listenerCount() != 0) {
+      return 0;
+    }
+    int loop = (pc - 1) & 0xFFFF;
+    int length = pollLoopLength(loop);
+    if(length == 0) {
+      return 0;
+    }
+
+    long clocks = 0;
+    for(int pass = 0; pass < 2; pass++) {
+      long next = scheduler.next();
+      long start = scheduler.now();
+      long count = cycleCount;
+      int state = (a & 0xFF) | ((p() & 0xFF) << 8) | (extraCycles << 16);
+      for(int i = 0; i < length; i++) {
+        if(!fastReady()) {
+          return clocks;
+        }
+        clocks += fastStep();
+      }
+      if(((pc - 1) & 0xFFFF) != loop) {
+        return clocks;
+      }
+      if(pass == 1 && scheduler.now() < next &&
+          state == ((a & 0xFF) | ((p() & 0xFF) << 8) | (extraCycles << 16))) {
+        long iteration = scheduler.now() - start;
+        long passes = Math.min(scheduler.next() - 1 - scheduler.now(), budget - clocks) / iteration;
+        if(passes > 0) {
+          scheduler.advance(passes * iteration);
+          cycleCount += passes * (cycleCount - count);
+          clocks += passes * iteration;
+        }
+      }
+    }
+    return clocks;
+  }
+
+  /**
+   * Determine if the instructions at an address are a loop that only
+   * polls a device register: BIT or LDA absolute, LDA optionally
+   * followed by AND immediate, then a branch on N, V or Z back to the
+   * start.
+   *
+   * @param loop the address of the first instruction.
+   * @return the number of instructions in the loop, or 0 if it is not one.
+   */
+  private int pollLoopLength(int loop) {
+    // Reading the loop must not disturb a device, so it must be in memory.
+    for(int i = 0; i < 7; i++) {
+      if(!backplane.cacheable(loop + i)) {
+        return 0;
+      }
+    }
+    int opcode = backplane.peek(loop) & 0xFF;
+    Instruction poll = instructions[opcode];
+    if(addressingModes[opcode] != ABSOLUTE || (poll != BIT && poll != LDA)) {
+      return 0;
+    }
+    int register = (backplane.peek(loop + 1) & 0xFF) | ((backplane.peek(loop + 2) & 0xFF) << 8);
+    int address = loop + 3;
+    int length = 2;
+    opcode = backplane.peek(address) & 0xFF;
+    if(poll == LDA && instructions[opcode] == AND && addressingModes[opcode] == IMMEDIATE) {
+      address += 2;
+      length = 3;
+      opcode = backplane.peek(address) & 0xFF;
+    }
+    boolean branch = switch(instructions[opcode]) {
+      case BPL, BMI, BVC, BVS, BNE, BEQ -> true;
+      default -> false;
+    };
+    if(!branch || ((address + 2 + backplane.peek(address + 1)) & 0xFFFF) != loop ||
+        !backplane.pollable(register)) {
+      return 0;
+    }
+    return length;
+  }
+
+  /**
+   * Return true if the FAST engine can run the next instruction.
+   *
+   * @return true if the FAST engine can run.
+   */
+  private boolean fastReady() {
+    return engine == Engine.FAST && cycle == 1 && readRegister == OP &&
+      interruptMode == InterruptMode.NONE && !stopped && !waiting && rdy.value() && resb.value() && be.value() &&
+      (irqb.value() || (p & INTERRUPT_DISABLE) != 0) && !backplane.busTimingRequired();
+  }
+
+  /**
+   * Cycle the clock until the next opcode has been fetched, or the
+   * processor is stopped, waiting, or not ready.
+   *
+   * @return the number of clock cycles that elapsed.
+   */
+  private int cycleStep() {
+    int clocks = 0;
+    do {
+      phi2.value(false);
+      phi2.value(true);
+      clocks++;
+    } while(!stopped && !waiting && !sync.value() && rdy.value());
+    return clocks;
+  }
+
+  /**
+   * Run the instruction whose opcode was just fetched, then fetch the
+   * next opcode, leaving the processor in the same state as the CYCLE
+   * engine would.
+   *
+   * Instructions are decoded once into the block cache, and run from
+   * there until the memory they were decoded from is written.  The
+   * instruction that follows in the same block is remembered, so running
+   * straight-line code does not need a cache lookup.
+   *
+   * @return the number of clock cycles that elapsed.
+   */
+  private int fastStep() {
+    directPages();
+    int address = (pc - 1) & 0xFFFF;
+    BlockCache.Entry entry = current;
+    if(entry == null || entry.address != address || !entry.block.valid()) {
+      entry = lookup(address);
+    }
+    current = null;
+    advanced = 0;
+
+    // Extra cycles for branches and decimal mode are taken after the next
+    // opcode fetch, as they are by the CYCLE engine, so any from the
+    // previous instruction are taken now.
+    if(entry != null) {
+      stepClocks = extraCycles + entry.cycles;
+      extraCycles = 0;
+      pc = entry.next;
+      entry.operation.run();
+      cycleCount += entry.cycles;
+      if(pc == entry.next) {
+        current = entry.following;
+      }
+    }
+    else {
+      int opcode = backplane.read(address) & 0xFF;
+      Instruction instruction = instructions[opcode];
+      if(instruction == WAI || instruction == STP) {
+        return cycleStep();
+      }
+      AddressingMode mode = addressingModes[opcode];
+      stepClocks = extraCycles + mode.cycles().length;
+      extraCycles = 0;
+      op = (byte)opcode;
+      this.instruction = instruction;
+      this.mode = mode;
+      execute(instruction, mode);
+      cycleCount += mode.cycles().length;
+    }
+    scheduler.advance(stepClocks - advanced);
+    fetchOpcode(pc);
+    return stepClocks;
+  }
+
+  /**
+   * Fetch the opcode at the given address, as the CYCLE engine does at the
+   * end of an instruction.  The data bus is only updated if the CYCLE
+   * engine needs it.
+   *
+   * @param address the address of the opcode.
+   */
+  private void fetchOpcode(int address) {
+    interruptMode = InterruptMode.NONE;
+    addressBus.value(address & 0xFFFF);
+    pc = (short)(address + 1);
+    busStale = true;
+    sync.value(false);
+    sync.value(true);
+  }
+
+  /**
+   * Find the cached instruction at the given address, decoding a new block
+   * if there is none.  The cache is cleared if the Backplane's address map
+   * has changed.
+   *
+   * @param address the address of the instruction.
+   * @return the entry, or null if the instruction could not be decoded.
+   */
+  private BlockCache.Entry lookup(int address) {
+    if(cacheVersion != backplane.version()) {
+      cacheVersion = backplane.version();
+      blockCache.clear();
+    }
+    BlockCache.Entry entry = blockCache.get(address);
+    return entry != null ? entry : decode(address);
+  }
+
+  /**
+   * Compile a block into a hidden class, so it can be run with the
+   * registers in locals.  If the block cannot be compiled, it is left to
+   * the FAST engine.
+   *
+   * @param block the block to compile.
+   */
+  private void compile(BlockCache.Block block) {
+    try {
+      byte[] bytes = BlockCompiler.compile(backplane, block);
+      Class<?> c = MethodHandles.lookup().defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE).lookupClass();
+      block.code = (BlockCompiler.Code)c.getDeclaredConstructor().newInstance();
+    }
+    catch (ReflectiveOperationException | LinkageError e) {
+      System.err.format("Unable to compile block at %04X: %s%n", block.start(), e);
+    }
+  }
+
+  /**
+   * Run the cached operation of the instruction at the given address.
+   * Used by compiled blocks for instructions they do not compile.  The
+   * program counter must already be at the next instruction.
+   *
+   * @param address the address of the instruction.
+   */
+  void operation(int address) {
+    blockCache.get(address).operation.run();
+  }
+
+  /**
+   * Decode a block of instructions into the block cache.  The block ends
+   * after an instruction that changes the flow of control, before WAI and
+   * STP, which are left to the CYCLE engine, and before an instruction
+   * that is already in another block or not in cacheable memory.
+   *
+   * @param address the address of the first instruction.
+   * @return the entry for the first instruction, or null if it could not be decoded.
+   */
+  private BlockCache.Entry decode(int address) {
+    BlockCache.Block block = blockCache.begin(address);
+    BlockCache.Entry first = null;
+    BlockCache.Entry previous = null;
+    for(int count = 0; count < MAX_BLOCK_LENGTH && backplane.cacheable(address); count++) {
+      int opcode = backplane.peek(address) & 0xFF;
+      Instruction instruction = instructions[opcode];
+      AddressingMode mode = addressingModes[opcode];
+      int length = mode.length();
+      if(instruction == WAI || instruction == STP || address + length > 0x10000 ||
+         !backplane.cacheable(address + length - 1)) {
+        break;
+      }
+      if(blockCache.owned(address, length)) {
+        if(previous != null) {
+          break;
+        }
+        // The first instruction overlaps another block, which is stale.
+        blockCache.release(address, length);
+      }
+      previous = blockCache.add(block, previous, bind(instruction, mode, opcode, address), length, mode.cycles().length);
+      if(first == null) {
+        first = previous;
+      }
+      switch(instruction) {
+        case BPL, BMI, BVC, BVS, BCC, BCS, BNE, BEQ, BRA, BBR, BBS, JMP, JSR, RTS, RTI, BRK:
+          return first;
+        default:
+      }
+      address += length;
+    }
+    return first;
+  }
+
+  /**
+   * Supplies the operand of a decoded instruction.
+   */
+  @FunctionalInterface
+  private interface Operand {
+    byte value();
+  }
+
+  /**
+   * Bind an instruction and its operands into an operation, so the
+   * operands do not need to be fetched and decoded each time it runs.
+   * The program counter is set to the next instruction before the
+   * operation runs.
+   *
+   * @param instruction the instruction.
+   * @param mode the addressing mode of the instruction.
+   * @param opcode the opcode of the instruction.
+   * @param address the address of the instruction.
+   * @return the operation.
+   */
+  private Runnable bind(Instruction instruction, AddressingMode mode, int opcode, int address) {
+    int lo = mode.length() > 1 ? backplane.peek(address + 1) & 0xFF : 0;
+    int word = mode.length() > 2 ? ((backplane.peek(address + 2) & 0xFF) << 8) | lo : lo;
+    byte value = (byte)lo;
+    byte offset = (byte)(mode == RELATIVE_BB ? word >> 8 : lo);
+    int bit = 1 << ((opcode >> 4) & 0x07);
+    boolean immediate = mode == IMMEDIATE;
+
+    IntSupplier ea = switch(mode) {
+      case ZERO_PAGE_X, ZERO_PAGE_X_W, ZERO_PAGE_X_RMW -> () -> (lo + x) & 0xFF;
+      case ZERO_PAGE_Y, ZERO_PAGE_Y_W -> () -> (lo + y) & 0xFF;
+      case ABSOLUTE_X, ABSOLUTE_X_W, ABSOLUTE_X_RMW -> () -> (word + (x & 0xFF)) & 0xFFFF;
+      case ABSOLUTE_Y, ABSOLUTE_Y_W -> () -> indexY(word);
+      case ZERO_PAGE_INDEXED, ZERO_PAGE_INDEXED_W -> () -> indexY(zeroPageWord(lo));
+      case ZERO_PAGE_INDIRECT_X, ZERO_PAGE_INDIRECT_X_W -> () -> zeroPageWord(lo + x);
+      case ZERO_PAGE_INDIRECT, ZERO_PAGE_INDIRECT_W -> () -> zeroPageWord(lo);
+      default -> () -> word;
+    };
+    Operand operand = immediate ? () -> value : () -> read(ea.getAsInt());
+
+    return switch(instruction) {
+      case LDA -> () -> { a = operand.value(); setNZ(a); };
+      case LDX -> () -> { x = operand.value(); setNZ(x); };
+      case LDY -> () -> { y = operand.value(); setNZ(y); };
+      case ORA -> () -> { a |= operand.value(); setNZ(a); };
+      case AND -> () -> { a &= operand.value(); setNZ(a); };
+      case EOR -> () -> { a ^= operand.value(); setNZ(a); };
+      case CMP -> () -> compare(a, operand.value());
+      case CPX -> () -> compare(x, operand.value());
+      case CPY -> () -> compare(y, operand.value());
+      case BIT -> () -> bit(operand.value(), immediate);
+      case ADC -> () -> adc(operand.value());
+      case SBC -> () -> sbc(operand.value());
+
+      case STA -> () -> write(ea.getAsInt(), a);
+      case STX -> () -> write(ea.getAsInt(), x);
+      case STY -> () -> write(ea.getAsInt(), y);
+      case STZ -> () -> write(ea.getAsInt(), (byte)0);
+
+      case ASL -> mode == ACCUMULATOR ? () -> a = doASL(a) : () -> { int e = ea.getAsInt(); write(e, doASL(readModify(e))); };
+      case ROL -> mode == ACCUMULATOR ? () -> a = doROL(a) : () -> { int e = ea.getAsInt(); write(e, doROL(readModify(e))); };
+      case LSR -> mode == ACCUMULATOR ? () -> a = doLSR(a) : () -> { int e = ea.getAsInt(); write(e, doLSR(readModify(e))); };
+      case ROR -> mode == ACCUMULATOR ? () -> a = doROR(a) : () -> { int e = ea.getAsInt(); write(e, doROR(readModify(e))); };
+      case INC -> mode == ACCUMULATOR ? () -> setNZ(++a) : () -> { int e = ea.getAsInt(); byte data = (byte)(readModify(e) + 1); setNZ(data); write(e, data); };
+      case DEC -> mode == ACCUMULATOR ? () -> setNZ(--a) : () -> { int e = ea.getAsInt(); byte data = (byte)(readModify(e) - 1); setNZ(data); write(e, data); };
+      case TRB -> () -> { int e = ea.getAsInt(); byte data = readModify(e); setZ((a & data) == 0); write(e, (byte)(data & ~a)); };
+      case TSB -> () -> { int e = ea.getAsInt(); byte data = readModify(e); setZ((a & data) == 0); write(e, (byte)(data | a)); };
+      case RMB -> () -> write(lo, (byte)(readModify(lo) & ~bit));
+      case SMB -> () -> write(lo, (byte)(readModify(lo) |  bit));
+
+      case BBR, BBS -> {
+        boolean set = instruction == BBS;
+        yield () -> {
+          branch = ((read(lo) & bit) != 0) == set;
+          if(branch) { pc += offset; extraCycles++; }
+        };
+      }
+
+      case BPL -> () -> { if(!negative()) takeBranch(offset); };
+      case BMI -> () -> { if(negative()) takeBranch(offset); };
+      case BVC -> () -> { if(!overflow()) takeBranch(offset); };
+      case BVS -> () -> { if(overflow()) takeBranch(offset); };
+      case BCC -> () -> { if(carry == 0) takeBranch(offset); };
+      case BCS -> () -> { if(carry != 0) takeBranch(offset); };
+      case BNE -> () -> { if(!zero()) takeBranch(offset); };
+      case BEQ -> () -> { if(zero()) takeBranch(offset); };
+      case BRA -> () -> takeBranch(offset);
+
+      case JMP -> switch(mode) {
+        case ABSOLUTE_INDIRECT -> () -> pc = (short)readWord(word);
+        case ABSOLUTE_INDEXED_INDIRECT -> () -> pc = (short)readWord(word + (x & 0xFF));
+        default -> () -> pc = (short)word;
+      };
+      // The high byte of the target is read after the return address is
+      // pushed, in case the push overwrote it.
+      case JSR -> () -> {
+        push((byte)((pc - 1) >> 8));
+        push((byte)(pc - 1));
+        pc = (short)((backplane.read(pc - 1) << 8) | lo);
+      };
+      case RTS -> () -> pc = (short)(pullWord() + 1);
+      case RTI -> () -> { p((byte)(pull() | RESERVED)); pc = (short)pullWord(); };
+      case BRK -> () -> {
+        push((byte)(pc >> 8));
+        push((byte)pc);
+        push((byte)(p() | BREAK));
+        p |= INTERRUPT_DISABLE;
+        p &= ~DECIMAL;
+        pc = (short)readWord(InterruptMode.IRQ.vector());
+      };
+
+      case PHA -> () -> push(a);
+      case PHX -> () -> push(x);
+      case PHY -> () -> push(y);
+      case PHP -> () -> push((byte)(p() | BREAK));
+      case PLA -> () -> { a = pull(); setNZ(a); };
+      case PLX -> () -> { x = pull(); setNZ(x); };
+      case PLY -> () -> { y = pull(); setNZ(y); };
+      case PLP -> () -> p((byte)((pull() | RESERVED) & ~BREAK));
+
+      case CLC -> () -> carry = 0;
+      case SEC -> () -> carry = 1;
+      case CLD -> () -> p &= ~DECIMAL;
+      case SED -> () -> p |=  DECIMAL;
+      case CLI -> () -> p &= ~INTERRUPT_DISABLE;
+      case SEI -> () -> p |=  INTERRUPT_DISABLE;
+      case CLV -> () -> v = 0;
+      case DEX -> () -> { x--; setNZ(x); };
+      case DEY -> () -> { y--; setNZ(y); };
+      case INX -> () -> { x++; setNZ(x); };
+      case INY -> () -> { y++; setNZ(y); };
+
+      case TAX -> () -> { x = a; setNZ(x); };
+      case TAY -> () -> { y = a; setNZ(y); };
+      case TXA -> () -> { a = x; setNZ(a); };
+      case TYA -> () -> { a = y; setNZ(a); };
+      case TSX -> () -> { x = s; setNZ(x); };
+      case TXS -> () -> s = x; // TXS does not set NZ.
+
+      // The program counter is already past the operands of NOP and
+      // undefined instructions.
+      default -> () -> { };
+    };
+  }
+
+  /**
+   * Run an instruction with the FAST engine.
+   *
+   * @param instruction the instruction to run.
+   * @param mode the addressing mode of the instruction.
+   */
+  private void execute(Instruction instruction, AddressingMode mode) {
+    switch(instruction) {
+      case LDA: a = operand(mode); setNZ(a); break;
+      case LDX: x = operand(mode); setNZ(x); break;
+      case LDY: y = operand(mode); setNZ(y); break;
+      case ORA: a |= operand(mode); setNZ(a); break;
+      case AND: a &= operand(mode); setNZ(a); break;
+      case EOR: a ^= operand(mode); setNZ(a); break;
+      case CMP: compare(a, operand(mode)); break;
+      case CPX: compare(x, operand(mode)); break;
+      case CPY: compare(y, operand(mode)); break;
+      case BIT: bit(operand(mode), mode == IMMEDIATE); break;
+      case ADC: adc(operand(mode)); break;
+      case SBC: sbc(operand(mode)); break;
+
+      case STA: write(address(mode), a); break;
+      case STX: write(address(mode), x); break;
+      case STY: write(address(mode), y); break;
+      case STZ: write(address(mode), (byte)0); break;
+
+      case ASL: if(mode == ACCUMULATOR) { a = doASL(a); } else { int ea = address(mode); write(ea, doASL(readModify(ea))); } break;
+      case ROL: if(mode == ACCUMULATOR) { a = doROL(a); } else { int ea = address(mode); write(ea, doROL(readModify(ea))); } break;
+      case LSR: if(mode == ACCUMULATOR) { a = doLSR(a); } else { int ea = address(mode); write(ea, doLSR(readModify(ea))); } break;
+      case ROR: if(mode == ACCUMULATOR) { a = doROR(a); } else { int ea = address(mode); write(ea, doROR(readModify(ea))); } break;
+      case INC: if(mode == ACCUMULATOR) { setNZ(++a); } else { int ea = address(mode); byte data = (byte)(readModify(ea) + 1); setNZ(data); write(ea, data); } break;
+      case DEC: if(mode == ACCUMULATOR) { setNZ(--a); } else { int ea = address(mode); byte data = (byte)(readModify(ea) - 1); setNZ(data); write(ea, data); } break;
+      case TRB: { int ea = address(mode); byte data = readModify(ea); setZ((a & data) == 0); write(ea, (byte)(data & ~a)); } break;
+      case TSB: { int ea = address(mode); byte data = readModify(ea); setZ((a & data) == 0); write(ea, (byte)(data | a)); } break;
+      case RMB: { int ea = address(mode); write(ea, (byte)(readModify(ea) & ~(1 << ((op >> 4) & 0x07)))); } break;
+      case SMB: { int ea = address(mode); write(ea, (byte)(readModify(ea) |  (1 << ((op >> 4) & 0x07)))); } break;
+
+      case BBR:
+      case BBS: {
+          byte data = read(fetch() & 0xFF);
+          byte offset = fetch();
+          branch = ((data & (1 << ((op >> 4) & 0x07))) != 0) == (instruction == BBS);
+          if(branch) { pc += offset; extraCycles++; }
+        }
+        break;
+
+      case BPL: branch(!negative()); break;
+      case BMI: branch(negative()); break;
+      case BVC: branch(!overflow()); break;
+      case BVS: branch(overflow()); break;
+      case BCC: branch(carry == 0); break;
+      case BCS: branch(carry != 0); break;
+      case BNE: branch(!zero()); break;
+      case BEQ: branch(zero()); break;
+      case BRA: branch(true); break;
+
+      case JMP:
+        pc = (short)switch(mode) {
+          case ABSOLUTE_INDIRECT -> readWord(fetchWord());
+          case ABSOLUTE_INDEXED_INDIRECT -> readWord(fetchWord() + (x & 0xFF));
+          default -> fetchWord();
+        };
+        break;
+      case JSR: {
+          int lo = fetch() & 0xFF;
+          push((byte)(pc >> 8));
+          push((byte)pc);
+          pc = (short)((backplane.read(pc) << 8) | lo);
+        }
+        break;
+      case RTS: pc = (short)(pullWord() + 1); break;
+      case RTI: p((byte)(pull() | RESERVED)); pc = (short)pullWord(); break;
+      case BRK:
+        pc++;
+        push((byte)(pc >> 8));
+        push((byte)pc);
+        push((byte)(p() | BREAK));
+        p |= INTERRUPT_DISABLE;
+        p &= ~DECIMAL;
+        pc = (short)readWord(InterruptMode.IRQ.vector());
+        break;
+
+      case PHA: push(a); break;
+      case PHX: push(x); break;
+      case PHY: push(y); break;
+      case PHP: push((byte)(p() | BREAK)); break;
+      case PLA: a = pull(); setNZ(a); break;
+      case PLX: x = pull(); setNZ(x); break;
+      case PLY: y = pull(); setNZ(y); break;
+      case PLP: p((byte)((pull() | RESERVED) & ~BREAK)); break;
+
+      case CLC: carry = 0; break;
+      case SEC: carry = 1; break;
+      case CLD: p &= ~DECIMAL; break;
+      case SED: p |=  DECIMAL; break;
+      case CLI: p &= ~INTERRUPT_DISABLE; break;
+      case SEI: p |=  INTERRUPT_DISABLE; break;
+      case CLV: v = 0; break;
+      case DEX: x--; setNZ(x); break;
+      case DEY: y--; setNZ(y); break;
+      case INX: x++; setNZ(x); break;
+      case INY: y++; setNZ(y); break;
+
+      case TAX: x = a; setNZ(x); break;
+      case TAY: y = a; setNZ(y); break;
+      case TXA: a = x; setNZ(a); break;
+      case TYA: a = y; setNZ(a); break;
+      case TSX: x = s; setNZ(x); break;
+      case TXS: s = x; break; // TXS does not set NZ.
+
+      // Skip over the operands of undefined instructions.
+      case NOP: case XXX: pc = (short)(pc + mode.length() - 1); break;
+      default:
+    }
+  }
+
+  /**
+   * Read the byte at the program counter, and increment the program counter.
+   *
+   * @return the byte at the program counter.
+   */
+  private byte fetch() {
+    return backplane.read(pc++);
+  }
+
+  /**
+   * Read the little-endian word at the program counter, and advance the
+   * program counter past it.
+   *
+   * @return the word at the program counter.
+   */
+  private int fetchWord() {
+    int lo = fetch() & 0xFF;
+    return ((fetch() & 0xFF) << 8) | lo;
+  }
+
+  /**
+   * Read a little-endian word from memory.
+   *
+   * @param address the address of the low byte.
+   * @return the word at the address.
+   */
+  private int readWord(int address) {
+    return ((backplane.read(address + 1) & 0xFF) << 8) | (backplane.read(address) & 0xFF);
+  }
+
+  /**
+   * Read a little-endian word from the zero page, wrapping within the page.
+   *
+   * @param zp the zero page address of the low byte.
+   * @return the word at the address.
+   */
+  private int zeroPageWord(int zp) {
+    return ((read((zp + 1) & 0xFF) & 0xFF) << 8) | (read(zp & 0xFF) & 0xFF);
+  }
+
+  /**
+   * Add the Y register to an address, adding a cycle to the current step
+   * if a page is crossed.
+   *
+   * @param address the base address.
+   * @return the indexed address.
+   */
+  private int indexY(int address) {
+    if(((address & 0xFF) + (y & 0xFF)) > 0xFF) {
+      stepClocks++;
+    }
+    return (address + (y & 0xFF)) & 0xFFFF;
+  }
+
+  /**
+   * Fetch the operands of an instruction and calculate its effective address.
+   *
+   * @param mode the addressing mode of the instruction.
+   * @return the effective address.
+   */
+  private int address(AddressingMode mode) {
+    return switch(mode) {
+      case ZERO_PAGE, ZERO_PAGE_W, ZERO_PAGE_RMW -> fetch() & 0xFF;
+      case ZERO_PAGE_X, ZERO_PAGE_X_W, ZERO_PAGE_X_RMW -> (fetch() + x) & 0xFF;
+      case ZERO_PAGE_Y, ZERO_PAGE_Y_W -> (fetch() + y) & 0xFF;
+      case ABSOLUTE_X, ABSOLUTE_X_W, ABSOLUTE_X_RMW -> (fetchWord() + (x & 0xFF)) & 0xFFFF;
+      case ABSOLUTE_Y, ABSOLUTE_Y_W -> indexY(fetchWord());
+      case ZERO_PAGE_INDEXED, ZERO_PAGE_INDEXED_W -> indexY(zeroPageWord(fetch()));
+      case ZERO_PAGE_INDIRECT_X, ZERO_PAGE_INDIRECT_X_W -> zeroPageWord(fetch() + x);
+      case ZERO_PAGE_INDIRECT, ZERO_PAGE_INDIRECT_W -> zeroPageWord(fetch());
+      default -> fetchWord();
+    };
+  }
+
+  /**
+   * Fetch the operand of an instruction that reads from memory.
+   *
+   * @param mode the addressing mode of the instruction.
+   * @return the operand.
+   */
+  private byte operand(AddressingMode mode) {
+    return mode == IMMEDIATE ? fetch() : read(address(mode));
+  }
+
+  /**
+   * Fetch the offset of a relative branch, and take the branch if the
+   * condition is met, adding a cycle, and another if a page is crossed.
+   *
+   * @param taken true if the branch should be taken.
+   */
+  private void branch(boolean taken) {
+    byte offset = fetch();
+    if(taken) {
+      takeBranch(offset);
+    }
+  }
+
+  /**
+   * Add the offset of a relative branch to the program counter, adding a
+   * cycle, and another if a page is crossed.
+   *
+   * @param offset the branch offset.
+   */
+  private void takeBranch(byte offset) {
+    int page = pc & 0xFF00;
+    pc += offset;
+    extraCycles++;
+    if(page != (pc & 0xFF00)) {
+      extraCycles++;
+    }
+  }
+
+  /**
+   * Read a byte of data from memory, in the last cycle of the current
+   * instruction.  The zero page and the stack are read from their arrays
+   * when the Backplane gives them out.
+   *
+   * @param address the address to read, which must not be negative.
+   * @return the byte at the address.
+   */
+  private byte read(int address) {
+    return read(address, 1);
+  }
+
+  /**
+   * Read the byte that a read-modify-write instruction changes, which is
+   * read two cycles before the result is written.
+   *
+   * @param address the address to read, which must not be negative.
+   * @return the byte at the address.
+   */
+  private byte readModify(int address) {
+    return read(address, 3);
+  }
+
+  /**
+   * Read a byte of data from memory.  A device that cannot be cached is
+   * read once the scheduler has reached the cycle of the read, as it would
+   * be by the CYCLE engine.
+   *
+   * @param address the address to read, which must not be negative.
+   * @param before the number of cycles before the end of the current step
+   *   or compiled block that the read is made.
+   * @return the byte at the address.
+   */
+  private byte read(int address, int before) {
+    if(address < 0x200) {
+      byte[] page = direct[address >>> 8];
+      if(page != null) {
+        return page[address & 0xFF];
+      }
+    }
+    if(timed[(address >>> 8) & 0xFF]) {
+      advanceTo(stepClocks - before);
+    }
+    return backplane.read(address);
+  }
+
+  /**
+   * Write a byte to memory, in the last cycle of the current instruction,
+   * invalidating any instructions decoded from the address.  The zero
+   * page and the stack are written to their arrays when the Backplane
+   * gives them out.
+   *
+   * @param address the address to write, between $0000 and $FFFF.
+   * @param data the byte to write.
+   */
+  private void write(int address, byte data) {
+    byte[] page = address < 0x200 ? direct[address >>> 8] : null;
+    if(page != null) {
+      page[address & 0xFF] = data;
+    }
+    else {
+      if(timed[address >>> 8]) {
+        advanceTo(stepClocks - 1);
+      }
+      backplane.write(address, data);
+    }
+    blockCache.written(address);
+  }
+
+  /**
+   * Advance the scheduler to a cycle within the current step or compiled
+   * block, ahead of the end of it, so a device that cannot be cached sees
+   * the cycle in which the CYCLE engine would read or write it.
+   *
+   * @param clocks the number of cycles of the step or block before the
+   *   read or write.
+   */
+  private void advanceTo(int clocks) {
+    if(clocks > advanced) {
+      scheduler.advance(clocks - advanced);
+      advanced = clocks;
+    }
+  }
+
+  /**
+   * Fetch the arrays of the zero page and the stack from the Backplane,
+   * and find the pages that hold devices that cannot be cached, if they
+   * may have changed since they were last fetched.
+   */
+  private void directPages() {
+    if(directVersion != backplane.directVersion()) {
+      directVersion = backplane.directVersion();
+      direct[0] = backplane.directPage(0);
+      direct[1] = backplane.directPage(1);
+      for(int page = 0; page < timed.length; page++) {
+        timed[page] = backplane.timed(page);
+      }
+    }
+  }
+
+  /**
+   * Push a byte on to the stack.
+   *
+   * @param data the byte to push.
+   */
+  private void push(byte data) {
+    write(0x100 | (s-- & 0xFF), data);
+  }
+
+  /**
+   * Pull a byte from the stack.
+   *
+   * @return the byte pulled from the stack.
+   */
+  private byte pull() {
+    return read(0x100 | (++s & 0xFF));
+  }
+
+  /**
+   * Pull a little-endian word from the stack.
+   *
+   * @return the word pulled from the stack.
+   */
+  private int pullWord() {
+    int lo = pull() & 0xFF;
+    return ((pull() & 0xFF) << 8) | lo;
+  }
+
+  /**
+   * Watch the busses while the processor is not ready, and invalidate
+   * any instructions decoded from an address that is written.
+   *
+   * @param eventType the type of clock signal edge.
+   */
+  private void snoop(Signal.EventType eventType) {
+    if(eventType == Signal.EventType.POSITIVE_EDGE) {
+      if(!rwb.value()) {
+        blockCache.written(addressBus.value());
+      }
+    }
+    else {
+      scheduler.advance(1);
+    }
   }
 
   /**
@@ -552,12 +1743,26 @@ public class W65C02S {
    * @param eventType the type of clock signal edge.
    */
   public void tick(Signal.EventType eventType) {
-    // If this is a positive edge, or if the processor is stopped,
-    // and we're not resetting, return.
-    if(eventType == Signal.EventType.POSITIVE_EDGE || (stopped && resb.value())) {
+    // If this is a positive edge, return.
+    if(eventType == Signal.EventType.POSITIVE_EDGE) {
+      return;
+    }
+
+    // Each cycle begins on the negative edge, so run any scheduled
+    // actions that are due.
+    scheduler.advance(1);
+
+    // If the processor is stopped, and we're not resetting, return.
+    if(stopped && resb.value()) {
       return;
     }
 
+    // If the FAST engine ran last, put the fetched opcode on the data bus.
+    if(busStale) {
+      busStale = false;
+      dataBus.value(backplane.read(pc - 1));
+    }
+
     // If we need to inject an extra cycle, return.
     if(extraCycles != 0) {
       sync.value(false);
@@ -592,31 +1797,33 @@ public class W65C02S {
       data = (byte)dataBus.value();
     }
 
-    int opcode = op & 0xFF;
-
     // Store the data bus value from the previous cycle
     switch(readRegister) {
-      case OP:  op = data; opcode = op & 0xFF; break;
+      case OP:
+        op = data;
+        instruction = instructions[op & 0xFF];
+        mode = addressingModes[op & 0xFF];
+        break;
       case AAL: aa = (short)((aa & 0xFF00) | (data & 0xFF)); break;
       case AAH: aa = (short)((aa & 0x00FF) | ((data & 0xFF) << 8)); break;
       case DO:  zp = data; break;
       case NEW_PCL: new_pc = (short)((new_pc & 0xFF00) | (data & 0xFF)); break;
       case NEW_PCH: new_pc = (short)((new_pc & 0x00FF) | ((data & 0xFF) << 8)); pc = new_pc; break;
-      case P: p = (byte)(data | RESERVED); break;
+      case P: p((byte)(data | RESERVED)); break;
       case DATA:
         // If we're reading the data for a brancing instruction, make
         // the branching decision here.
-        if(addressingModes[opcode] == RELATIVE) {
+        if(mode == RELATIVE) {
           byte page = (byte)((pc >> 8) & 0xFF);
-          switch(instructions[opcode]) {
-            case BPL: if((p & NEGATIVE) == 0) { pc += data; extraCycles++; } break;
-            case BMI: if((p & NEGATIVE) != 0) { pc += data; extraCycles++; } break;
-            case BVC: if((p & OVERFLOW) == 0) { pc += data; extraCycles++; } break;
-            case BVS: if((p & OVERFLOW) != 0) { pc += data; extraCycles++; } break;
-            case BCC: if((p & CARRY)    == 0) { pc += data; extraCycles++; } break;
-            case BCS: if((p & CARRY)    != 0) { pc += data; extraCycles++; } break;
-            case BNE: if((p & ZERO)     == 0) { pc += data; extraCycles++; } break;
-            case BEQ: if((p & ZERO)     != 0) { pc += data; extraCycles++; } break;
+          switch(instruction) {
+            case BPL: if(!negative()) { pc += data; extraCycles++; } break;
+            case BMI: if(negative()) { pc += data; extraCycles++; } break;
+            case BVC: if(!overflow()) { pc += data; extraCycles++; } break;
+            case BVS: if(overflow()) { pc += data; extraCycles++; } break;
+            case BCC: if(carry == 0) { pc += data; extraCycles++; } break;
+            case BCS: if(carry != 0) { pc += data; extraCycles++; } break;
+            case BNE: if(!zero()) { pc += data; extraCycles++; } break;
+            case BEQ: if(zero()) { pc += data; extraCycles++; } break;
             case BRA:                         { pc += data; extraCycles++; } break;
             default:
           }
@@ -628,14 +1835,14 @@ public class W65C02S {
         }
         break;
       case IO: // Internal operation
-        switch(instructions[opcode]) {
-          case CLC: p &= ~CARRY; break;
-          case SEC: p |=  CARRY; break;
+        switch(instruction) {
+          case CLC: carry = 0; break;
+          case SEC: carry = 1; break;
           case CLD: p &= ~DECIMAL; break;
           case SED: p |=  DECIMAL; break;
           case CLI: p &= ~INTERRUPT_DISABLE; break;
           case SEI: p |=  INTERRUPT_DISABLE; break;
-          case CLV: p &= ~OVERFLOW; break;
+          case CLV: v = 0; break;
           case DEX: x--; setNZ(x); break;
           case DEY: y--; setNZ(y); break;
           case INX: x++; setNZ(x); break;
@@ -649,14 +1856,14 @@ public class W65C02S {
           case TXS: s = x; break; // TXS does not set NZ.
 
           case NOP: case XXX: break;
-          case ASL: if(addressingModes[opcode] == ACCUMULATOR) { a = doASL(a); } else { data = doASL(data); } break;
-          case ROL: if(addressingModes[opcode] == ACCUMULATOR) { a = doROL(a); } else { data = doROL(data); } break;
-          case LSR: if(addressingModes[opcode] == ACCUMULATOR) { a = doLSR(a); } else { data = doLSR(data); } break;
-          case ROR: if(addressingModes[opcode] == ACCUMULATOR) { a = doROR(a); } else { data = doROR(data); } break;
-          case INC: if(addressingModes[opcode] == ACCUMULATOR) { setNZ(++a); } else { setNZ(++data); } break;
-          case DEC: if(addressingModes[opcode] == ACCUMULATOR) { setNZ(--a); } else { setNZ(--data); } break;
-          case TRB: p = (byte)(((a & data) == 0) ? p | ZERO : p & ~ZERO); data &= (byte)~a; break;
-          case TSB: p = (byte)(((a & data) == 0) ? p | ZERO : p & ~ZERO); data |=  a; break;
+          case ASL: if(mode == ACCUMULATOR) { a = doASL(a); } else { data = doASL(data); } break;
+          case ROL: if(mode == ACCUMULATOR) { a = doROL(a); } else { data = doROL(data); } break;
+          case LSR: if(mode == ACCUMULATOR) { a = doLSR(a); } else { data = doLSR(data); } break;
+          case ROR: if(mode == ACCUMULATOR) { a = doROR(a); } else { data = doROR(data); } break;
+          case INC: if(mode == ACCUMULATOR) { setNZ(++a); } else { setNZ(++data); } break;
+          case DEC: if(mode == ACCUMULATOR) { setNZ(--a); } else { setNZ(--data); } break;
+          case TRB: setZ((a & data) == 0); data &= (byte)~a; break;
+          case TSB: setZ((a & data) == 0); data |=  a; break;
 
           case BBR: branch = (data & (1 << ((op >> 4) & 0x07))) == 0; break;
           case BBS: branch = (data & (1 << ((op >> 4) & 0x07))) != 0; break;
@@ -678,7 +1885,7 @@ public class W65C02S {
         interruptMode = InterruptMode.NONE;
       }
       // do the previous ALU op, if necessary..
-      switch(instructions[opcode]) {
+      switch(instruction) {
         case LDA: case PLA: a = data;  setNZ(a); break;
         case LDX: case PLX: x = data;  setNZ(x); break;
         case LDY: case PLY: y = data;  setNZ(y); break;
@@ -688,41 +1895,13 @@ public class W65C02S {
         case CMP: setNZ((byte)(a - data)); setC((a & 0xFF) >= (data & 0xFF)); break;
         case CPX: setNZ((byte)(x - data)); setC((x & 0xFF) >= (data & 0xFF)); break;
         case CPY: setNZ((byte)(y - data)); setC((y & 0xFF) >= (data & 0xFF)); break;
-        case PLP: p = (byte)((data | RESERVED) & ~BREAK); break;
+        case PLP: p((byte)((data | RESERVED) & ~BREAK)); break;
         case BIT:
-          p = (byte)((a & data) == 0 ? (p | ZERO) : p & ~ZERO);
-          if(addressingModes[opcode] != IMMEDIATE) {
-            // BIT Immediate does not modify V or N.
-            p = (byte)((data & 0x40) != 0 ? (p | OVERFLOW) : (p & ~OVERFLOW));
-            p = (byte)((data & 0x80) != 0 ? (p | NEGATIVE) : (p & ~NEGATIVE));
-          }
-          break;
-        case ADC: {
-            if((p & DECIMAL) == 0) {
-              byte c = (byte)((p & CARRY) == 0 ? 0 : 1);
-              setCV(a, data);
-              a += (byte)(data + c);
-            }
-            else {
-              extraCycles++;
-              doADCDecimal(data);
-            }
-            setNZ(a);
-          }
-          break;
-        case SBC: {
-            if((p & DECIMAL) == 0) {
-              byte c = (byte)((p & CARRY) == 0 ? 0 : 1);
-              setCV(a, (byte)(~data));
-              a += (byte)(~data + c);
-            }
-            else {
-              extraCycles++;
-              doSBCDecimal(data);
-            }
-          }
-          setNZ(a);
+          // BIT Immediate does not modify V or N.
+          bit(data, mode == IMMEDIATE);
           break;
+        case ADC: adc(data); break;
+        case SBC: sbc(data); break;
         case BBS:
         case BBR:
           // TODO: Add extra cycle on page crossing.
@@ -733,16 +1912,15 @@ public class W65C02S {
     else if(cycle == 1) {
       // previous cycle was an opcode read, make sure we have
       // the right cycles for the rest of the instruction.
-      cycles = interruptMode == InterruptMode.NONE ? addressingModes[opcode].cycles() : STACK_INTERRUPT.cycles();
+      program = interruptMode == InterruptMode.NONE ? programs[op & 0xFF] : interruptProgram;
       if(interruptMode != InterruptMode.NONE) {
         // Decrement the pc so the correct return address is pushed.
         pc--;
       }
-      // System.out.format("tick: PC: %04X op: %s, A: %02X, X: %02X, Y: %02X, S: %02X, P: %02X (%s) c: %d%n", (short)(pc-1), instructions[opcode], a, x, y, s, p, status(), cycleCount);
     }
 
-    Cycle c = cycles[cycle];
-    short address = (short)switch(c.address()) {
+    int uop = program[cycle];
+    short address = (short)switch(uop & ADDRESS_MASK) {
       case PC_INC -> pc++;
       case PC -> pc;
       case AA -> aa;
@@ -763,15 +1941,16 @@ public class W65C02S {
       case VAH -> { p |= INTERRUPT_DISABLE; p &= ~DECIMAL; yield interruptMode.vector() + 1; }
       default -> addressBus.value();
     };
-    data = (byte)switch(c.data()) {
-      case DATA -> switch(instructions[opcode]) {
+    int dataRegister = (uop >>> DATA_SHIFT) & DATA_MASK;
+    data = (byte)switch(dataRegister) {
+      case DATA -> switch(instruction) {
         case STA, PHA -> a;
         case STX, PHX -> x;
         case STY, PHY -> y;
         case STZ -> 0;
-        case PHP ->  (byte) (p | BREAK);
+        case PHP ->  (byte) (p() | BREAK);
         case BRK -> {
-          int d = p | BREAK;
+          int d = p() | BREAK;
           p |= INTERRUPT_DISABLE;
           p &= ~DECIMAL;
           yield d;
@@ -780,27 +1959,27 @@ public class W65C02S {
       };
       case PCH -> (pc >> 8) & 0xFF;
       case PCL -> pc & 0xFF;
-      case P -> p;
+      case P -> p();
       default -> data;
     };
 
     if(be.value()) {
       addressBus.value(address);
-      if(c.rwb()) {
-        readRegister = c.data();
+      if((uop & RWB) != 0) {
+        readRegister = dataRegister;
       }
       else {
         readRegister = NULL;
         dataBus.value(data);
+        blockCache.written(address);
       }
     }
-    vpb.value(c.vpb());
-    mlb.value(c.mlb());
-    rwb.value(c.rwb());
-    sync.value(c.sync());
-    // System.out.format("tick: PC: %04X op: %s %s a: %04X, d: %02X %s%n", (short)(pc-1), instructions[opcode], addressingModes[opcode], addressBus.value(), dataBus.value(), c);
+    vpb.value((uop & VPB) != 0);
+    mlb.value((uop & MLB) != 0);
+    rwb.value((uop & RWB) != 0);
+    sync.value((uop & SYNC) != 0);
     cycle++;
-    if(cycle == cycles.length) {
+    if(cycle == program.length) {
       cycle = 0;
     }
   }
@@ -0,0 +1,206 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * The memory watchpoints of a Backplane, which report reads and writes of
+ * the addresses they cover.
+ *
+ * The watched addresses are kept in two bitmaps of one bit per address,
+ * one for reads and one for writes, so checking an access costs the same
+ * however many watchpoints are set.  The Backplane checks each read and
+ * write of a device, whether made by a bus cycle or by read() and
+ * write(); peek() and poke() are not watched.  The FAST engine reads
+ * instructions when it decodes them, not each time they run, so the
+ * reads of the instructions themselves are only seen by the CYCLE engine.
+ * While any address of the zero page or the stack is watched, the
+ * processor does not read or write that page directly.
+ */
+public final class Watchpoints {
+  /**
+   * The kinds of access a watchpoint reports.
+   */
+  public enum Kind {
+    /** Reads of the addresses. */
+    READ,
+
+    /** Writes to the addresses. */
+    WRITE,
+
+    /** Reads of and writes to the addresses. */
+    ACCESS
+  }
+
+  /**
+   * A watchpoint over a range of addresses.
+   *
+   * @param kind the kind of access reported.
+   * @param start the first address watched.
+   * @param end the last address watched.
+   */
+  public record Watchpoint(Kind kind, int start, int end) {
+    /**
+     * Return a human-readable representation of this watchpoint.
+     *
+     * @return the kind, followed by the address or range of addresses.
+     */
+    @Override
+    public String toString() {
+      String kindName = kind.name().toLowerCase(Locale.ROOT);
+      return start == end ?
+        String.format("%s $%04X", kindName, start) :
+        String.format("%s $%04X..$%04X", kindName, start, end);
+    }
+  }
+
+  /**
+   * An access to a watched address.
+   *
+   * @param kind READ or WRITE.
+   * @param address the address accessed.
+   * @param oldValue the value at the address before the access.
+   * @param newValue the value at the address after the access.
+   */
+  public record Hit(Kind kind, int address, int oldValue, int newValue) { }
+
+  private final long[] reads = new long[0x10000 >>> 6];
+  private final long[] writes = new long[0x10000 >>> 6];
+  private final List<Watchpoint> watchpoints = new ArrayList<>();
+  private final Runnable changed;
+  private Consumer<Hit> listener = hit -> { };
+
+  /**
+   * Create an empty set of watchpoints.
+   *
+   * @param changed run whenever a watchpoint is added or removed.
+   */
+  Watchpoints(Runnable changed) {
+    this.changed = changed;
+  }
+
+  /**
+   * Add a watchpoint.
+   *
+   * @param kind the kind of access to report.
+   * @param start the first address to watch.
+   * @param end the last address to watch, which may be the first.
+   * @throws IllegalArgumentException if the range is empty.
+   */
+  public void add(Kind kind, int start, int end) {
+    start &= 0xFFFF;
+    end &= 0xFFFF;
+    if(end < start) {
+      throw new IllegalArgumentException(String.format("The range $%04X..$%04X is empty.", start, end));
+    }
+    Watchpoint watchpoint = new Watchpoint(kind, start, end);
+    watchpoints.add(watchpoint);
+    mark(watchpoint);
+    changed.run();
+  }
+
+  /**
+   * Remove a watchpoint.
+   *
+   * @param index the index within the list of watchpoints to remove.
+   */
+  public void remove(int index) {
+    watchpoints.remove(index);
+    Arrays.fill(reads, 0L);
+    Arrays.fill(writes, 0L);
+    for(Watchpoint watchpoint: watchpoints) {
+      mark(watchpoint);
+    }
+    changed.run();
+  }
+
+  /**
+   * Get the watchpoints.
+   *
+   * @return the watchpoints, in the order they were added.
+   */
+  public List<Watchpoint> list() {
+    return Collections.unmodifiableList(watchpoints);
+  }
+
+  /**
+   * Set the listener that is given each access to a watched address.  It
+   * is called from the thread running the processor, after a read and
+   * before a write.
+   *
+   * @param listener the listener.
+   */
+  public void listener(Consumer<Hit> listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Set the bits of the addresses of a watchpoint.
+   *
+   * @param watchpoint the watchpoint.
+   */
+  private void mark(Watchpoint watchpoint) {
+    for(int address = watchpoint.start(); address <= watchpoint.end(); address++) {
+      if(watchpoint.kind() != Kind.WRITE) {
+        reads[address >>> 6] |= 1L << address;
+      }
+      if(watchpoint.kind() != Kind.READ) {
+        writes[address >>> 6] |= 1L << address;
+      }
+    }
+  }
+
+  /**
+   * Return true if reads of an address are watched.
+   *
+   * @param address the address, between $0000 and $FFFF.
+   * @return true if reads are watched.
+   */
+  public boolean reads(int address) {
+    return (reads[address >>> 6] & (1L << address)) != 0;
+  }
+
+  /**
+   * Return true if writes to an address are watched.
+   *
+   * @param address the address, between $0000 and $FFFF.
+   * @return true if writes are watched.
+   */
+  public boolean writes(int address) {
+    return (writes[address >>> 6] & (1L << address)) != 0;
+  }
+
+  /**
+   * Return true if reads of or writes to any address of a page are
+   * watched.
+   *
+   * @param page the page, between $00 and $FF.
+   * @return true if the page is watched.
+   */
+  boolean watches(int page) {
+    for(int i = page << 2; i < (page + 1) << 2; i++) {
+      if((reads[i] | writes[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Report an access to a watched address.
+   *
+   * @param kind READ or WRITE.
+   * @param address the address accessed.
+   * @param oldValue the value at the address before the access.
+   * @param newValue the value at the address after the access.
+   */
+  void hit(Kind kind, int address, byte oldValue, byte newValue) {
+    listener.accept(new Hit(kind, address, oldValue & 0xFF, newValue & 0xFF));
+  }
+}
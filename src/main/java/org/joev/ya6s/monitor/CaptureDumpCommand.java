@@ -0,0 +1,83 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.joev.ya6s.LogicAnalyzer;
+
+/**
+ * Command to write the captured bus cycles to a Value Change Dump file.
+ */
+public class CaptureDumpCommand implements Command {
+  private final String path;
+
+  /**
+   * Create a new capture dump command.
+   *
+   * @param path the path of the VCD file.
+   */
+  public CaptureDumpCommand(String path) {
+    this.path = path;
+  }
+
+  /**
+   * Write the monitor's captured samples to the file.
+   *
+   * @param monitor the Monitor to execute this command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    LogicAnalyzer analyzer = monitor.analyzer();
+    if(analyzer == null) {
+      System.out.println("error: nothing has been captured.");
+      return null;
+    }
+    try(Writer out = Files.newBufferedWriter(Path.of(path), StandardCharsets.US_ASCII)) {
+      analyzer.writeVcd(out);
+    }
+    catch (IOException ioe) {
+      System.out.format("error: %s%n", ioe.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Compare this CaptureDumpCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is a CaptureDumpCommand with the same path.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof CaptureDumpCommand o) {
+      return this.path.equals(o.path);
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this CaptureDumpCommand.
+   *
+   * @return the hash code of this CaptureDumpCommand.
+   */
+  @Override
+  public int hashCode() {
+    return path.hashCode();
+  }
+
+  /**
+   * Return a human-readable representation of this command.
+   *
+   * @return "capture dump {path}"
+   */
+  @Override
+  public String toString() {
+    return "capture dump " + path;
+  }
+}
@@ -0,0 +1,35 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+/**
+ * Stop capturing bus cycles.
+ */
+public class CaptureOffCommand implements Command {
+  public static final CaptureOffCommand instance = new CaptureOffCommand();
+
+  /**
+   * This class cannot be instantiated.
+   */
+  private CaptureOffCommand() { }
+
+  /**
+   * Get the singleton instance of the CaptureOffCommand.
+   *
+   * @return the CaptureOffCommand
+   */
+  public static CaptureOffCommand instance() {
+    return instance;
+  }
+
+  /**
+   * Stop the monitor's capture, keeping its samples.
+   *
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    monitor.captureOff();
+    return null;
+  }
+}
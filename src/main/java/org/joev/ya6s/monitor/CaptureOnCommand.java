@@ -0,0 +1,68 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+/**
+ * Start capturing bus cycles.
+ */
+public class CaptureOnCommand implements Command {
+  /** The default number of samples in a capture. */
+  public static final int DEFAULT_CAPACITY = 1 << 20;
+
+  private final int capacity;
+
+  /**
+   * Create a new Capture On command with a buffer of the given size.
+   *
+   * @param capacity the number of samples the buffer holds.
+   */
+  public CaptureOnCommand(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Start a new capture on the monitor's system.
+   *
+   * @param monitor the Monitor to execute this command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    monitor.capture(capacity);
+    return null;
+  }
+
+  /**
+   * Compare this CaptureOnCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is a CaptureOnCommand with the same capacity.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof CaptureOnCommand o) {
+      return this.capacity == o.capacity;
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this CaptureOnCommand.
+   *
+   * @return the hash code of this CaptureOnCommand.
+   */
+  @Override
+  public int hashCode() {
+    return Integer.hashCode(capacity);
+  }
+
+  /**
+   * Return a human-readable representation of this command.
+   *
+   * @return "capture on {capacity}"
+   */
+  @Override
+  public String toString() {
+    return "capture on " + capacity;
+  }
+}
@@ -0,0 +1,95 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import org.joev.ya6s.LogicAnalyzer;
+import org.joev.ya6s.W65C02S;
+
+/**
+ * Arm the trigger of the current capture.
+ */
+public class CaptureTriggerCommand implements Command {
+  private final int address;
+  private final Predicate<W65C02S> when;
+
+  /**
+   * Create a command that triggers when an address is on the address bus.
+   *
+   * @param address the address to trigger on.
+   */
+  public CaptureTriggerCommand(int address) {
+    this.address = address;
+    this.when = null;
+  }
+
+  /**
+   * Create a command that triggers when a predicate on the processor is
+   * true.
+   *
+   * @param when the predicate to trigger on.
+   */
+  public CaptureTriggerCommand(Predicate<W65C02S> when) {
+    this.address = -1;
+    this.when = when;
+  }
+
+  /**
+   * Arm the trigger of the monitor's capture.
+   *
+   * @param monitor the Monitor to execute this command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    LogicAnalyzer analyzer = monitor.analyzer();
+    if(analyzer == null) {
+      System.out.println("error: no capture is running.");
+    }
+    else if(when == null) {
+      analyzer.trigger(address);
+    }
+    else {
+      analyzer.trigger(when);
+    }
+    return null;
+  }
+
+  /**
+   * Compare this CaptureTriggerCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is a CaptureTriggerCommand with the same trigger.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof CaptureTriggerCommand o) {
+      return this.address == o.address && Objects.equals(this.when, o.when);
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this CaptureTriggerCommand.
+   *
+   * @return the hash code of this CaptureTriggerCommand.
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(address, when);
+  }
+
+  /**
+   * Return a human-readable representation of this command.
+   *
+   * @return "capture at {address}" or "capture when {expression}"
+   */
+  @Override
+  public String toString() {
+    return when == null ?
+      String.format("capture at %04X", address) :
+      "capture when " + when;
+  }
+}
@@ -2,7 +2,6 @@
 
 package org.joev.ya6s.monitor;
 
-import org.joev.ya6s.Clock;
 import org.joev.ya6s.W65C02S;
 
 /**
@@ -26,22 +25,22 @@ public class ContinueCommand implements Command {
   }
 
   /**
-   * Execute the command; run until the CPU is stopped.
+   * Execute the command; run until the CPU is stopped or waiting.
    *
    * @param monitor the Monitor which will execute this command.
    * @return the next suggested Command, or null.
    */
   @Override
   public Command execute(Monitor monitor) {
-    Clock clock = monitor.clock();
     W65C02S cpu = monitor.cpu();
 
-    while(!cpu.stopped()) { // or hit a breakpoint
-      clock.cycle();
-    }
-    if(cpu.stopped()) {
+    W65C02S.StopReason reason = cpu.run(Long.MAX_VALUE);
+    if(reason == W65C02S.StopReason.STOPPED) {
       System.out.println("\nStopped.");
     }
+    else if(reason == W65C02S.StopReason.WAITING) {
+      System.out.println("\nWaiting.");
+    }
     System.out.format("PC: $%04X  A: $%02X  X: $%02X  Y: $%02X  S: $%02X  P: $%02X (%s) cycles: %d%n", cpu.pc(), cpu.a(), cpu.x(), cpu.y(), cpu.s(), cpu.p(), cpu.status(), cpu.cycleCount());
     return null;
   }
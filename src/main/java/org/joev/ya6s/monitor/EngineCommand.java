@@ -0,0 +1,69 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+import java.util.Locale;
+
+import org.joev.ya6s.W65C02S;
+
+/**
+ * Command to select the execution engine of the processor.
+ */
+public class EngineCommand implements Command {
+  private final W65C02S.Engine engine;
+
+  /**
+   * Create a new Engine command.
+   *
+   * @param engine the execution engine to select.
+   */
+  public EngineCommand(W65C02S.Engine engine) {
+    this.engine = engine;
+  }
+
+  /**
+   * Set the execution engine of the monitor's CPU.
+   *
+   * @param monitor the Monitor to execute this command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    monitor.cpu().engine(engine);
+    return null;
+  }
+
+  /**
+   * Compare this EngineCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is an EngineCommand with the same engine.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof EngineCommand o) {
+      return this.engine == o.engine;
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this EngineCommand.
+   *
+   * @return the hash code of this EngineCommand.
+   */
+  @Override
+  public int hashCode() {
+    return engine.hashCode();
+  }
+
+  /**
+   * Return a human-readable representation of this command.
+   *
+   * @return the engine command string.
+   */
+  @Override
+  public String toString() {
+    return "engine " + engine.name().toLowerCase(Locale.ROOT);
+  }
+}
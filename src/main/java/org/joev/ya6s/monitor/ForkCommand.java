@@ -0,0 +1,157 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.joev.ya6s.Addressable;
+import org.joev.ya6s.Backplane;
+import org.joev.ya6s.UART;
+import org.joev.ya6s.W65C02S;
+
+/**
+ * Command to run trials on forks of the system, in parallel, leaving the
+ * system itself unchanged.  Each trial may be given its number, written
+ * as a 16-bit little-endian value at an address, so the trials can differ.
+ */
+public class ForkCommand implements Command {
+  private final int count;
+  private final long cycles;
+  private final int address;
+
+  /**
+   * Create a new Fork command.
+   *
+   * @param count the number of trials.
+   * @param cycles the most clock cycles each trial may run.
+   * @param address the address to write the trial number to, or -1.
+   */
+  public ForkCommand(int count, long cycles, int address) {
+    this.count = count;
+    this.cycles = cycles;
+    this.address = address;
+  }
+
+  /**
+   * Fork the monitor's system for each trial and run the forks across all
+   * processors, then print how many trials stopped for each reason.
+   *
+   * @param monitor the Monitor to execute this command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    Backplane backplane = monitor.backplane();
+    W65C02S cpu = monitor.cpu();
+    long start = System.nanoTime();
+    Map<W65C02S.StopReason, Integer> reasons = new EnumMap<>(W65C02S.StopReason.class);
+    long total = 0;
+
+    ExecutorService executor = Executors.newWorkStealingPool();
+    try {
+      List<Future<W65C02S.StopReason>> futures = new ArrayList<>();
+      for(int i = 0; i < count; i++) {
+        int trial = i;
+        futures.add(executor.submit(() -> trial(backplane, cpu, trial)));
+      }
+      for(Future<W65C02S.StopReason> future: futures) {
+        reasons.merge(future.get(), 1, Integer::sum);
+      }
+    }
+    catch (ExecutionException ee) {
+      System.out.format("error: %s%n", ee.getCause().getMessage());
+      return null;
+    }
+    catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    PrintWriter out = monitor.out();
+    out.format("%d trials in %.3f s (%.0f trials/s).%n", count, seconds, count / seconds);
+    for(Map.Entry<W65C02S.StopReason, Integer> entry: reasons.entrySet()) {
+      out.format("%-14s %d%n", entry.getKey(), entry.getValue());
+    }
+    out.flush();
+    return null;
+  }
+
+  /**
+   * Fork the system and run one trial.  Forks are made one at a time,
+   * since forking shares the memory of the system.
+   *
+   * @param backplane the Backplane of the system.
+   * @param cpu the processor of the system.
+   * @param trial the number of the trial.
+   * @return the reason the fork stopped.
+   */
+  private W65C02S.StopReason trial(Backplane backplane, W65C02S cpu, int trial) {
+    Backplane.Fork fork;
+    synchronized(backplane) {
+      fork = backplane.fork();
+    }
+    try {
+      if(address >= 0) {
+        fork.backplane().poke(address, new byte[] { (byte)trial, (byte)(trial >>> 8) });
+      }
+      return fork.copy(cpu).run(cycles);
+    }
+    finally {
+      for(Addressable device: List.copyOf(fork.backplane().devices())) {
+        if(device instanceof UART uart) {
+          uart.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Compare this ForkCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is a ForkCommand with the same arguments.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof ForkCommand o) {
+      return this.count == o.count && this.cycles == o.cycles && this.address == o.address;
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this ForkCommand.
+   *
+   * @return the hash code of this ForkCommand.
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(count, cycles, address);
+  }
+
+  /**
+   * Return a human-readable representation of this command.
+   *
+   * @return "fork {count} {cycles}", followed by the address if there is one.
+   */
+  @Override
+  public String toString() {
+    if(address < 0) {
+      return String.format("fork %d %d", count, cycles);
+    }
+    return String.format("fork %d %d %04X", count, cycles, address);
+  }
+}
@@ -2,14 +2,13 @@
 
 package org.joev.ya6s.monitor;
 
-import org.joev.ya6s.Backplane;
-import org.joev.ya6s.Clock;
-import org.joev.ya6s.signals.Bus;
-import org.joev.ya6s.signals.Signal;
-
 import java.io.InputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import org.joev.ya6s.Addressable;
 
 /**
  * Command to load the contents of a file into the Backplane
@@ -37,31 +36,19 @@ public class LoadCommand implements Command {
    */
   @Override
   public Command execute(Monitor monitor) {
-    Backplane backplane = monitor.backplane();
-    Signal rdy = backplane.rdy();
-    Signal rwb = backplane.rwb();
-    Bus address = backplane.address();
-    Bus dataBus = backplane.data();
-
-    Clock clock = monitor.clock();
-    boolean oldRdy = rdy.value();
     try(InputStream in = new FileInputStream(path)) {
-      rdy.value(false);
-      short loc = start;
-      byte[] data = in.readAllBytes();
-      for (byte datum : data) {
-        address.value(loc++);
-        dataBus.value(datum);
-        rwb.value(false);
-        clock.cycle();
+      Map<Addressable, Integer> written = monitor.backplane().poke(start, in.readAllBytes());
+      PrintWriter out = monitor.out();
+      for(Map.Entry<Addressable, Integer> entry: written.entrySet()) {
+        Addressable device = entry.getKey();
+        out.format("Loaded %d bytes into %s at $%04X.%n", entry.getValue(),
+          device.getClass().getSimpleName(), device.base());
       }
+      out.flush();
     }
     catch (IOException ioe) {
       System.out.format("error: %s%n", ioe.getMessage());
     }
-    finally {
-      rdy.value(oldRdy);
-    }
     return null;
   }
 
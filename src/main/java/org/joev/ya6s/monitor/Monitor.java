@@ -2,12 +2,16 @@
 
 package org.joev.ya6s.monitor;
 
+import org.joev.ya6s.Addressable;
 import org.joev.ya6s.AddressingMode;
 import org.joev.ya6s.Backplane;
+import org.joev.ya6s.BankedMemory;
 import org.joev.ya6s.Clock;
 import org.joev.ya6s.Instruction;
+import org.joev.ya6s.LogicAnalyzer;
+import org.joev.ya6s.SRAM;
 import org.joev.ya6s.W65C02S;
-import org.joev.ya6s.signals.Bus;
+import org.joev.ya6s.Watchpoints;
 import org.joev.ya6s.signals.Signal;
 import java.io.IOException;
 import java.io.InputStream;
@@ -17,7 +21,9 @@ import java.io.StringReader;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import org.jline.reader.EndOfFileException;
 import org.jline.reader.LineReader;
@@ -43,12 +49,14 @@ public class Monitor {
   private Predicate<W65C02S> breakpoint = null;
 
   private boolean profiling = false;
-  private long profile[] = new long[65536];
+  private final Map<Integer, long[]> profile = new HashMap<>();
+  private LogicAnalyzer analyzer = null;
   private final Signal.Listener profileSync = this::profileSync;
   private final Signal.Listener breakpointSync = this::breakpointSync;
-
-  public static InputStream ttyIn;
-  public static OutputStream ttyOut;
+  private final Signal.Listener watchSync = this::watchSync;
+  private int instructionAddress;
+  private Watchpoints.Hit watchHit = null;
+  private int watchHitAddress;
 
   /**
    * Create a new Monitor.
@@ -71,6 +79,25 @@ public class Monitor {
         .build();
   }
 
+  /**
+   * Create a new Monitor without a terminal.  It can execute commands,
+   * but cannot run the interactive monitor loop.
+   *
+   * @param backplane the Backplane of the system
+   * @param clock the Clock of the system.
+   * @param cpu the CPU of the system.
+   * @param out the writer for monitor output.
+   */
+  public Monitor(Backplane backplane, Clock clock, W65C02S cpu, PrintWriter out) {
+    this.backplane = backplane;
+    this.clock = clock;
+    this.cpu = cpu;
+    this.terminal = null;
+    this.out = out;
+    this.console = OutputStream.nullOutputStream();
+    this.reader = null;
+  }
+
   /**
    * Determine the XDG-compliant location of the command history file,
    * honoring $XDG_STATE_HOME if set, defaulting to $HOME/.local/state otherwise.
@@ -86,13 +113,24 @@ public class Monitor {
   }
 
   /**
-   * Save history and close the underlying Terminal.
+   * Write the changes of memories mapped from files to the files, save
+   * history and close the underlying Terminal.
    *
    * @throws IOException if the Terminal cannot be closed.
    */
   public void close() throws IOException {
-    reader.getHistory().save();
-    terminal.close();
+    for(Addressable device: backplane.devices()) {
+      if(device instanceof SRAM sram) {
+        sram.flush();
+      }
+      else if(device instanceof BankedMemory banked) {
+        banked.flush();
+      }
+    }
+    if(terminal != null) {
+      reader.getHistory().save();
+      terminal.close();
+    }
   }
 
   /**
@@ -112,7 +150,7 @@ public class Monitor {
   public void addBreakpoint(Predicate<W65C02S> predicate) {
     System.out.format("Adding breakpoint: %s%n", predicate);
     if(breakpoints.size() == 0) {
-      backplane.sync().register(breakpointSync);
+      backplane.sync().registerRising(breakpointSync);
     }
     breakpoints.add(predicate);
   }
@@ -138,6 +176,50 @@ public class Monitor {
     }
   }
 
+  /**
+   * Add a watchpoint, which stops the clock after an instruction reads or
+   * writes one of the addresses.  While there are watchpoints, the
+   * address of each instruction is noted, so a hit can be reported with
+   * the address of the instruction that made the access.
+   *
+   * @param kind the kind of access to watch.
+   * @param start the first address to watch.
+   * @param end the last address to watch.
+   */
+  public void addWatchpoint(Watchpoints.Kind kind, int start, int end) {
+    Watchpoints watchpoints = backplane.watchpoints();
+    watchpoints.add(kind, start, end);
+    out.format("Adding watchpoint: %s%n", watchpoints.list().get(watchpoints.list().size() - 1));
+    if(watchpoints.list().size() == 1) {
+      instructionAddress = backplane.address().value();
+      backplane.sync().registerRising(watchSync);
+      watchpoints.listener(this::watchHit);
+    }
+  }
+
+  /**
+   * List the watchpoints.
+   *
+   * @return the list of watchpoints.
+   */
+  public List<Watchpoints.Watchpoint> listWatchpoints() {
+    return backplane.watchpoints().list();
+  }
+
+  /**
+   * Remove a watchpoint.
+   *
+   * @param index the index within the list of watchpoints to remove.
+   */
+  public void removeWatchpoint(int index) {
+    Watchpoints watchpoints = backplane.watchpoints();
+    watchpoints.remove(index);
+    if(watchpoints.list().isEmpty()) {
+      backplane.sync().unregister(watchSync);
+      watchpoints.listener(hit -> { });
+    }
+  }
+
   /**
    * Get the CPU this monitor is monitoring.
    *
@@ -147,6 +229,15 @@ public class Monitor {
     return cpu;
   }
 
+  /**
+   * Get the writer for monitor output.
+   *
+   * @return the output writer.
+   */
+  public PrintWriter out() {
+    return out;
+  }
+
   /**
    * Get the Backplane this monitor is monitoring.
    *
@@ -163,7 +254,7 @@ public class Monitor {
    */
   public void profiling(boolean enabled) {
     if(enabled && !profiling) {
-      backplane.sync().register(profileSync);
+      backplane.sync().registerRising(profileSync);
     }
     else if(profiling && !enabled) {
       backplane.sync().unregister(profileSync);
@@ -172,23 +263,26 @@ public class Monitor {
   }
 
   /**
-   * Update the profiling data with the current profile PC.
+   * Update the profiling data with the current profile PC, counting each
+   * bank of bank-switched memory separately.
    *
    * @param pc the address to increment
    */
   public void updateProfile(short pc) {
     if(profiling) {
-      profile[pc & 0xFFFF]++;
+      int address = pc & 0xFFFF;
+      profile.computeIfAbsent(backplane.bank(address), bank -> new long[65536])[address]++;
     }
   }
 
   /**
    * Update the profile program counter on instruction load cycles.
+   * Called on the rising edge of sync.
    *
    * @param eventType the edge type of the sync signal.
    */
   private void profileSync(Signal.EventType eventType) {
-    if(profiling && eventType == Signal.EventType.POSITIVE_EDGE) {
+    if(profiling) {
       updateProfile((short)backplane.address().value());
     }
   }
@@ -196,50 +290,102 @@ public class Monitor {
   /**
    * Get the profiling data.
    *
-   * @return the profile cycle count metric array.
+   * @return the profile cycle count metric arrays, indexed by address,
+   *   keyed by bank number.  Addresses that are not bank-switched are
+   *   counted in bank -1.
    */
-  public long[] profile() {
-    return profile.clone();
+  public Map<Integer, long[]> profile() {
+    Map<Integer, long[]> copy = new HashMap<>();
+    profile.forEach((bank, counts) -> copy.put(bank, counts.clone()));
+    return copy;
   }
 
   /**
    * Reset the profiling data.
    */
   public void profileReset() {
-    for(int i = 0; i < profile.length; i++) {
-      profile[i] = 0;
+    profile.clear();
+  }
+
+  /**
+   * Start capturing bus cycles into a new buffer, replacing any earlier
+   * capture.
+   *
+   * @param capacity the number of samples the buffer holds.
+   */
+  public void capture(int capacity) {
+    captureOff();
+    analyzer = new LogicAnalyzer(backplane, cpu, capacity);
+    analyzer.start();
+  }
+
+  /**
+   * Stop capturing bus cycles.  The captured samples are kept.
+   */
+  public void captureOff() {
+    if(analyzer != null) {
+      analyzer.stop();
     }
   }
 
   /**
-   * Stop the clock.  This is called when rdy changes.
+   * Get the logic analyzer of the latest capture.
+   *
+   * @return the logic analyzer, or null if nothing has been captured.
+   */
+  public LogicAnalyzer analyzer() {
+    return analyzer;
+  }
+
+  /**
+   * Stop the clock.  This is called when rdy falls.
    *
    * @param eventType the type of the signal event.
    */
   private void stopClock(Signal.EventType eventType) {
-    if(eventType == Signal.EventType.NEGATIVE_EDGE) {
-      clock.stop();
-    }
+    clock.stop();
   }
 
   /**
    * Check the breakpoints, and stop the clock if one is hit.
-   * Called when a sync occurs.
+   * Called on the rising edge of sync.
    *
    * @param eventType the type of the signal event.
    */
   private void breakpointSync(Signal.EventType eventType) {
-    if(eventType == Signal.EventType.POSITIVE_EDGE) {
-      breakpoint = null;
-      for(Predicate<W65C02S> predicate: breakpoints) {
-        if(predicate.test(cpu)) {
-          breakpoint = predicate;
-          clock.stop();
-        }
+    breakpoint = null;
+    for(Predicate<W65C02S> predicate: breakpoints) {
+      if(predicate.test(cpu)) {
+        breakpoint = predicate;
+        clock.stop();
       }
     }
   }
 
+  /**
+   * Note the address of the instruction being fetched, for reporting
+   * watchpoint hits.  Called on the rising edge of sync.
+   *
+   * @param eventType the type of the signal event.
+   */
+  private void watchSync(Signal.EventType eventType) {
+    instructionAddress = backplane.address().value();
+  }
+
+  /**
+   * Note the first access to a watched address since the clock was
+   * started, and stop the clock.
+   *
+   * @param hit the access.
+   */
+  private void watchHit(Watchpoints.Hit hit) {
+    if(watchHit == null) {
+      watchHit = hit;
+      watchHitAddress = instructionAddress;
+      clock.stop();
+    }
+  }
+
   /**
    * Disassemble instructions.
    *
@@ -249,40 +395,24 @@ public class Monitor {
    */
   public String disassemble(short address, int count) {
     StringBuilder result = new StringBuilder();
-    Bus addressBus = backplane.address();
-    Bus dataBus = backplane.data();
-    Signal clk = backplane.clock();
-    Signal rdy = backplane.rdy();
-    boolean rdyOld = rdy.value();
-    short addressOld = (short)addressBus.value();
-    byte dataOld = (byte)dataBus.value();
-    boolean clockWasRunning = clock.running();
-    rdy.value(false);
     byte[] insrBytes = new byte[3];
 
     // -1 means the current address, since it never makes sense to
     // disassemble $FFFF
     if(address == -1) {
-      address = addressOld;
+      address = (short)backplane.address().value();
     }
     for(;count != 0; count--) {
       result.append(String.format("%04X: ", address));
-      addressBus.value(address++);
-      clk.value(false);
-      clk.value(true);
-      Instruction insr = W65C02S.instructions[dataBus.value() & 0xFF];
-      AddressingMode mode = W65C02S.addressingModes[dataBus.value() & 0xFF];
-      insrBytes[0] = (byte)dataBus.value();
+      insrBytes[0] = backplane.peek(address++);
+      Instruction insr = W65C02S.instructions[insrBytes[0] & 0xFF];
+      AddressingMode mode = W65C02S.addressingModes[insrBytes[0] & 0xFF];
       for(int i = 1; i < mode.length(); i++) {
-        addressBus.value(address++);
-        clk.value(false);
-        clk.value(true);
-        insrBytes[i] = (byte)dataBus.value();
+        insrBytes[i] = backplane.peek(address++);
       }
       for(int i = 0; i < 3; i++) {
         result.append(i < mode.length() ? String.format(" %02X", insrBytes[i]) : "   ");
       }
-      int operand = mode.length() == 3 ? (insrBytes[2] << 8 | (insrBytes[1] & 0xFF)) : insrBytes[1];
 
       result.append("  ").append(insr).append(" ");
       if(mode.length() == 3) {
@@ -296,12 +426,6 @@ public class Monitor {
         result.append('\n');
       }
     }
-    addressBus.value(addressOld);
-    dataBus.value(dataOld);
-    rdy.value(rdyOld);
-    if(clockWasRunning) {
-      clock.start();
-    }
     return result.toString();
   }
 
@@ -327,12 +451,17 @@ public class Monitor {
 
   /**
    * Run the monitor loop.  Never exits.
+   *
+   * @throws IllegalStateException if the Monitor has no terminal.
    */
   public void run() {
+    if(terminal == null) {
+      throw new IllegalStateException("The monitor has no terminal.");
+    }
     MonitorParser parser;
     Signal sync = backplane.sync();
     Signal rdy = backplane.rdy();
-    rdy.register(this::stopClock);
+    rdy.registerFalling(this::stopClock);
     Command command = ResetCommand.instance();
     while(true) {
       try {
@@ -357,6 +486,7 @@ public class Monitor {
         // so Ctrl-C generates no signal here and simply flows to console.write
         // below like any other byte, reaching the simulated UART as input.
         Attributes prevAttributes = terminal.enterRawMode();
+        watchHit = null;
         try {
           clock.start();
           while(clock.running()) {
@@ -380,7 +510,21 @@ public class Monitor {
           terminal.setAttributes(prevAttributes);
         }
 
-        if(breakpoint != null) {
+        if(watchHit != null) {
+          // Finish the instruction that made the access.
+          while(!sync.value()) {
+            clock.cycle();
+          }
+          if(watchHit.kind() == Watchpoints.Kind.READ) {
+            out.format("Watchpoint: read $%04X at $%04X: $%02X%n",
+              watchHit.address(), watchHitAddress, watchHit.newValue());
+          }
+          else {
+            out.format("Watchpoint: write $%04X at $%04X: $%02X -> $%02X%n",
+              watchHit.address(), watchHitAddress, watchHit.oldValue(), watchHit.newValue());
+          }
+        }
+        else if(breakpoint != null) {
           out.format("Breakpoint: %s%n", breakpoint);
         }
         else {
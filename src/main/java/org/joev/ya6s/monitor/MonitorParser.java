@@ -18,6 +18,7 @@ import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import org.joev.ya6s.W65C02S;
+import org.joev.ya6s.Watchpoints;
 import org.joev.ya6s.expression.Constant;
 import org.joev.ya6s.expression.Register;
 import org.joev.ya6s.expression.RelationalExpression;
@@ -193,6 +194,21 @@ public final class MonitorParser {
     if("breakpoint".equals(image) || "break".equals(image) || "b".equals(image)) {
       return breakpoint();
     }
+    if("engine".equals(image)) {
+      return engine();
+    }
+    if("snapshot".equals(image)) {
+      return snapshot();
+    }
+    if("capture".equals(image)) {
+      return capture();
+    }
+    if("fork".equals(image)) {
+      return fork();
+    }
+    if("watch".equals(image)) {
+      return watch();
+    }
     throw new ParseException("Unknown command " + token.image());
   }
 
@@ -482,4 +498,109 @@ public final class MonitorParser {
     }
     throw new ParseException("Unknown subcommand " + subcommand);
   }
+
+  /**
+   * Parse the arguments of an engine command.
+   *
+   * @return an EngineCommand with the provided arguments.
+   * @throws ParseException if there is an underlying tokenization error.
+  */
+  private EngineCommand engine() throws ParseException {
+    String name = one(alphanumericType).image().toLowerCase(Locale.ROOT);
+    if("cycle".equals(name)) {
+      return new EngineCommand(W65C02S.Engine.CYCLE);
+    }
+    if("fast".equals(name)) {
+      return new EngineCommand(W65C02S.Engine.FAST);
+    }
+    throw new ParseException("Unknown engine " + name);
+  }
+
+  /**
+   * Parse the arguments of a snapshot command.
+   *
+   * @return a snapshot subcommand with the provided arguments.
+   * @throws ParseException if there is an underlying tokenization error.
+  */
+  private Command snapshot() throws ParseException {
+    String subcommand = one(alphanumericType).image().toLowerCase(Locale.ROOT);
+    if("save".equals(subcommand)) {
+      return new SnapshotSaveCommand(one(allTypes).image());
+    }
+    if("restore".equals(subcommand)) {
+      return new SnapshotRestoreCommand(one(allTypes).image());
+    }
+    throw new ParseException("Unknown subcommand " + subcommand);
+  }
+
+  /**
+   * Parse the arguments of a capture command.
+   *
+   * @return a capture subcommand with the provided arguments.
+   * @throws ParseException if there is an underlying tokenization error.
+  */
+  private Command capture() throws ParseException {
+    String subcommand = one(alphanumericType).image().toLowerCase(Locale.ROOT);
+    if("on".equals(subcommand)) {
+      int capacity = maybe(decimalType).map(t -> parseDec(t.image())).orElse(CaptureOnCommand.DEFAULT_CAPACITY);
+      return new CaptureOnCommand(capacity);
+    }
+    if("off".equals(subcommand)) {
+      return CaptureOffCommand.instance();
+    }
+    if("at".equals(subcommand)) {
+      return new CaptureTriggerCommand(parseHex(one(numberTypes).image()));
+    }
+    if("when".equals(subcommand)) {
+      return new CaptureTriggerCommand(relationalExpression());
+    }
+    if("dump".equals(subcommand)) {
+      return new CaptureDumpCommand(one(allTypes).image());
+    }
+    throw new ParseException("Unknown subcommand " + subcommand);
+  }
+
+  /**
+   * Parse the arguments of a fork command.
+   *
+   * @return a ForkCommand with the provided arguments.
+   * @throws ParseException if there is an underlying tokenization error.
+  */
+  private ForkCommand fork() throws ParseException {
+    // fork count cycles [address]
+    int count = parseDec(one(decimalType).image());
+    long cycles = Long.parseLong(one(decimalType).image());
+    int address = maybe(numberTypes).map(t -> parseHex(t.image())).orElse(-1);
+    return new ForkCommand(count, cycles, address);
+  }
+
+  /**
+   * Parse the arguments of a watch command.
+   *
+   * @return a watch subcommand with the provided arguments.
+   * @throws ParseException if there is an underlying tokenization error.
+  */
+  private Command watch() throws ParseException {
+    String subcommand = one(alphanumericType).image().toLowerCase(Locale.ROOT);
+    if("list".equals(subcommand)) {
+      return WatchListCommand.instance();
+    }
+    if("remove".equals(subcommand)) {
+      return new WatchRemoveCommand(parseDec(one(decimalType).image()));
+    }
+    Watchpoints.Kind kind = switch(subcommand) {
+      case "read" -> Watchpoints.Kind.READ;
+      case "write" -> Watchpoints.Kind.WRITE;
+      case "access" -> Watchpoints.Kind.ACCESS;
+      default -> throw new ParseException("Unknown subcommand " + subcommand);
+    };
+    // watch kind start[..end]
+    int start = parseHex(one(numberTypes).image());
+    int end = start;
+    if(maybe(periodType).isPresent()) {
+      one(periodType);
+      end = parseHex(one(numberTypes).image());
+    }
+    return new WatchCommand(kind, start, end);
+  }
 }
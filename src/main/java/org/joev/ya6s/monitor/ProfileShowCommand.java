@@ -4,6 +4,7 @@ package org.joev.ya6s.monitor;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.stream.IntStream;
 
 /**
@@ -32,16 +33,27 @@ public class ProfileShowCommand implements Command {
   public Command execute(Monitor monitor) {
 
     // An internal record type to facilitate streaming.
-    record Count(int address, long counter) { }
+    record Count(int bank, int address, long counter) { }
 
-    long[] profile = monitor.profile();
-    IntStream
-      .range(0, profile.length)
-      .filter(i -> profile[i] != 0)
-      .mapToObj(i -> new Count(i, profile[i]))
+    Map<Integer, long[]> profile = monitor.profile();
+    profile.entrySet().stream()
+      .flatMap(e -> {
+        long[] counts = e.getValue();
+        return IntStream
+          .range(0, counts.length)
+          .filter(i -> counts[i] != 0)
+          .mapToObj(i -> new Count(e.getKey(), i, counts[i]));
+      })
       .sorted(Comparator.comparingLong(c -> ((Count)c).counter).reversed())
       .limit(maxLines)
-      .forEach(c -> System.out.format("$%04X: %16d%n", c.address, c.counter));
+      .forEach(c -> {
+        if(c.bank < 0) {
+          System.out.format("$%04X: %16d%n", c.address, c.counter);
+        }
+        else {
+          System.out.format("%02X:$%04X: %16d%n", c.bank, c.address, c.counter);
+        }
+      });
 
     return null;
   }
@@ -5,9 +5,6 @@ package org.joev.ya6s.monitor;
 import java.util.Objects;
 
 import org.joev.ya6s.Backplane;
-import org.joev.ya6s.Clock;
-import org.joev.ya6s.signals.Bus;
-import org.joev.ya6s.signals.Signal;
 
 /**
  * Command to read out data from the Backplane.
@@ -71,31 +68,17 @@ public class ReadCommand implements Command {
   @Override
   public Command execute(Monitor monitor) {
     Backplane backplane = monitor.backplane();
-    Clock clock = monitor.clock();
-
-    Signal rdy = backplane.rdy();
-    Signal rwb = backplane.rwb();
-    Bus address = backplane.address();
-    Bus data = backplane.data();
 
     short alignedStart = (short)(start & 0xFFF0);
     short alignedEnd = (short)(end | 0x000F);
 
-    int oldAddress = address.value();
-    int oldData = data.value();
-    boolean oldRdy = rdy.value();
-    rdy.value(false);
     System.out.println("       0  1  2  3  4  5  6  7   8  9  A  B  C  D  E  F   01234567 89ABCDEF");
     short loc = alignedStart;
     byte[] line = new byte[16];
     while(loc < alignedEnd) {
       System.out.format("%04X: ", loc);
-      for(int i = 0; i < 16; i++) {
-        address.value(loc++);
-        rwb.value(true);
-        clock.cycle();
-        line[i] = (byte)data.value();
-      }
+      backplane.peek(loc, line);
+      loc += 16;
       for(int i = 0; i < 8; i++) {
         System.out.format("%02X ", line[i]);
       }
@@ -113,11 +96,6 @@ public class ReadCommand implements Command {
       }
       System.out.println("|");
     }
-    // Restore the original address and data bus values.
-    address.value(oldAddress);
-    data.value(oldData);
-    clock.cycle();
-    rdy.value(oldRdy);
     return null;
   }
 
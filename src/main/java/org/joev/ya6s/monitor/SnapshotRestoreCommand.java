@@ -0,0 +1,75 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.joev.ya6s.Snapshot;
+
+/**
+ * Command to restore the state of the system from a snapshot file.
+ */
+public class SnapshotRestoreCommand implements Command {
+  private final String path;
+
+  /**
+   * Create a new snapshot restore command.
+   *
+   * @param path the path of the snapshot file.
+   */
+  public SnapshotRestoreCommand(String path) {
+    this.path = path;
+  }
+
+  /**
+   * Restore the state of the monitor's system from the file.
+   *
+   * @param monitor the Monitor to execute this command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    try {
+      Snapshot.restore(monitor.backplane(), Path.of(path));
+    }
+    catch (IOException ioe) {
+      System.out.format("error: %s%n", ioe.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Compare this SnapshotRestoreCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is a SnapshotRestoreCommand with the same path.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof SnapshotRestoreCommand o) {
+      return this.path.equals(o.path);
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this SnapshotRestoreCommand.
+   *
+   * @return the hash code of this SnapshotRestoreCommand.
+   */
+  @Override
+  public int hashCode() {
+    return path.hashCode();
+  }
+
+  /**
+   * Return a human-readable representation of this command.
+   *
+   * @return "snapshot restore {path}"
+   */
+  @Override
+  public String toString() {
+    return "snapshot restore " + path;
+  }
+}
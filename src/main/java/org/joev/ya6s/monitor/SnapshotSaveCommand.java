@@ -0,0 +1,75 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.joev.ya6s.Snapshot;
+
+/**
+ * Command to save the state of the system to a snapshot file.
+ */
+public class SnapshotSaveCommand implements Command {
+  private final String path;
+
+  /**
+   * Create a new snapshot save command.
+   *
+   * @param path the path of the snapshot file.
+   */
+  public SnapshotSaveCommand(String path) {
+    this.path = path;
+  }
+
+  /**
+   * Save the state of the monitor's system to the file.
+   *
+   * @param monitor the Monitor to execute this command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    try {
+      Snapshot.save(monitor.backplane(), Path.of(path));
+    }
+    catch (IOException ioe) {
+      System.out.format("error: %s%n", ioe.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Compare this SnapshotSaveCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is a SnapshotSaveCommand with the same path.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof SnapshotSaveCommand o) {
+      return this.path.equals(o.path);
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this SnapshotSaveCommand.
+   *
+   * @return the hash code of this SnapshotSaveCommand.
+   */
+  @Override
+  public int hashCode() {
+    return path.hashCode();
+  }
+
+  /**
+   * Return a human-readable representation of this command.
+   *
+   * @return "snapshot save {path}"
+   */
+  @Override
+  public String toString() {
+    return "snapshot save " + path;
+  }
+}
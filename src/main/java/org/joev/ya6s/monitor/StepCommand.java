@@ -3,9 +3,7 @@
 package org.joev.ya6s.monitor;
 
 import org.joev.ya6s.Backplane;
-import org.joev.ya6s.Clock;
 import org.joev.ya6s.W65C02S;
-import org.joev.ya6s.signals.Signal;
 
 /**
  * Command to run a single step of the processor.
@@ -36,14 +34,8 @@ public class StepCommand implements Command {
     Backplane backplane = monitor.backplane();
     W65C02S cpu = monitor.cpu();
 
-    Signal sync = backplane.sync();
-    Clock clock = monitor.clock();
-    boolean synced = false;
     monitor.updateProfile((short)backplane.address().value());
-    while(!cpu.stopped() && !synced) { // or hit a breakpoint
-      clock.cycle();
-      synced = sync.value();
-    }
+    cpu.step();
     if(cpu.stopped()) {
       System.out.println("Stopped.");
     }
@@ -0,0 +1,80 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+import java.util.Objects;
+
+import org.joev.ya6s.Watchpoints;
+
+/**
+ * Command to add a watchpoint over a range of addresses.
+ */
+public class WatchCommand implements Command {
+  private final Watchpoints.Kind kind;
+  private final int start;
+  private final int end;
+
+  /**
+   * Create a new Watch command.
+   *
+   * @param kind the kind of access to watch.
+   * @param start the first address to watch.
+   * @param end the last address to watch.
+   */
+  public WatchCommand(Watchpoints.Kind kind, int start, int end) {
+    this.kind = kind;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Add the watchpoint to the monitor.
+   *
+   * @param monitor the Monitor to execute this command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    try {
+      monitor.addWatchpoint(kind, start, end);
+    }
+    catch (IllegalArgumentException iae) {
+      System.out.format("error: %s%n", iae.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Compare this WatchCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is a WatchCommand with the same kind and range.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof WatchCommand o) {
+      return this.kind == o.kind && this.start == o.start && this.end == o.end;
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this WatchCommand.
+   *
+   * @return the hash code of this WatchCommand.
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(kind, start, end);
+  }
+
+  /**
+   * Return a human-readable representation of this command.
+   *
+   * @return "watch {kind} {start}..{end}"
+   */
+  @Override
+  public String toString() {
+    return "watch " + new Watchpoints.Watchpoint(kind, start, end);
+  }
+}
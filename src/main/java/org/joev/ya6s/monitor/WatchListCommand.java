@@ -0,0 +1,43 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+import org.joev.ya6s.Watchpoints;
+
+/**
+ * Command to list the watchpoints.
+ */
+public class WatchListCommand implements Command {
+  /** The singleton instance. */
+  private static final WatchListCommand instance = new WatchListCommand();
+
+  /**
+   * Private constructor.
+   */
+  private WatchListCommand() {
+  }
+
+  /**
+   * Get the instance of this command.
+   *
+   * @return the instance.
+   */
+  public static WatchListCommand instance() {
+    return instance;
+  }
+
+  /**
+   * Execute the command- list the watchpoints.
+   *
+   * @param monitor the Monitor to run the command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    int i = 0;
+    for(Watchpoints.Watchpoint w: monitor.listWatchpoints()) {
+      System.out.format("%d: %s%n", i++, w);
+    }
+    return null;
+  }
+}
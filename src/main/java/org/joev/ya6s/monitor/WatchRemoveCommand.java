@@ -0,0 +1,55 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s.monitor;
+
+/**
+ * Command to remove a watchpoint from the Monitor.
+ */
+public class WatchRemoveCommand implements Command {
+  private final int index;
+
+  /**
+   * Create a watchpoint remove command for the given index in the list.
+   *
+   * @param index the index of the watchpoint to remove.
+   */
+  public WatchRemoveCommand(int index) {
+    this.index = index;
+  }
+
+  /**
+   * Remove a watchpoint from the list.
+   *
+   * @param monitor the Monitor to run the command against.
+   * @return null
+   */
+  @Override
+  public Command execute(Monitor monitor) {
+    monitor.removeWatchpoint(index);
+    return null;
+  }
+
+  /**
+   * Compare this WatchRemoveCommand with another Object.
+   *
+   * @param other the other Object to compare
+   * @return true if the other Object is a WatchRemoveCommand with the same value.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if(other instanceof WatchRemoveCommand o) {
+      return this.index == o.index;
+    }
+    return false;
+  }
+
+  /**
+   * Return the hash code of this WatchRemoveCommand.
+   *
+   * @return the hash code of this WatchRemoveCommand.
+   */
+  @Override
+  public int hashCode() {
+    return index;
+  }
+}
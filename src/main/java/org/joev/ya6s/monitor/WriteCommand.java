@@ -4,10 +4,6 @@ package org.joev.ya6s.monitor;
 
 import java.util.Objects;
 
-import org.joev.ya6s.Backplane;
-import org.joev.ya6s.Clock;
-import org.joev.ya6s.signals.Bus;
-import org.joev.ya6s.signals.Signal;
 
 /**
  * Command to write data into the Backplane.
@@ -34,24 +30,7 @@ public class WriteCommand implements Command {
    */
   @Override
   public Command execute(Monitor monitor) {
-    Backplane backplane = monitor.backplane();
-    Clock clock = monitor.clock();
-
-    Signal rdy = backplane.rdy();
-    Signal rwb = backplane.rwb();
-    Bus address = backplane.address();
-    Bus dataBus = backplane.data();
-
-    boolean oldRdy = rdy.value();
-    rdy.value(false);
-    short loc = start;
-    for (byte datum : data) {
-      address.value(loc++);
-      dataBus.value(datum);
-      rwb.value(false);
-      clock.cycle();
-    }
-    rdy.value(oldRdy);
+    monitor.backplane().poke(start, data);
     return null;
   }
 
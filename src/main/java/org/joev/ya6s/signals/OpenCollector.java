@@ -2,8 +2,7 @@
 
 package org.joev.ya6s.signals;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * A type of Signal that simulates an open collector circuit.  Components can
@@ -11,9 +10,15 @@ import java.util.Map;
  * collector is true only if all input values are true.  Components can
  * and should detach themselves when they no longer participate in the
  * circuit.
+ *
+ * Each component is given a slot when it attaches, and the number of
+ * components driving the line low is kept as they change, so reading the
+ * value does not need to visit every component.
  */
 public class OpenCollector extends Signal {
-  private final Map<Object, Boolean> map = new HashMap<>();
+  private Object[] drivers = new Object[4];
+  private boolean[] low = new boolean[4];
+  private volatile int lowCount = 0;
 
   /**
    * Create a new OpenCollector with the given name.
@@ -31,12 +36,7 @@ public class OpenCollector extends Signal {
    */
   @Override
   public boolean value() {
-    for(Boolean b: map.values()) {
-      if(!b) {
-        return false;
-      }
-    }
-    return true;
+    return lowCount == 0;
   }
 
   /**
@@ -49,28 +49,90 @@ public class OpenCollector extends Signal {
   }
 
   /**
-   * Set an input value to the open collector.
+   * Attach a component to the open collector, with a true value.  If the
+   * component is already attached, its slot is returned.
+   *
+   * @param o the input component.
+   * @return the slot of the component, for use with value(int, boolean).
+   */
+  public synchronized int attach(Object o) {
+    int free = -1;
+    for(int i = 0; i < drivers.length; i++) {
+      if(drivers[i] == o) {
+        return i;
+      }
+      if(free < 0 && drivers[i] == null) {
+        free = i;
+      }
+    }
+    if(free < 0) {
+      free = drivers.length;
+      drivers = Arrays.copyOf(drivers, free * 2);
+      low = Arrays.copyOf(low, free * 2);
+    }
+    drivers[free] = o;
+    return free;
+  }
+
+  /**
+   * Set the input value of an attached component.
+   *
+   * @param slot the slot returned when the component attached.
+   * @param value the value to set for that component.
+   */
+  public void value(int slot, boolean value) {
+    boolean oldValue;
+    boolean newValue;
+    synchronized(this) {
+      if(low[slot] == !value) {
+        return;
+      }
+      oldValue = lowCount == 0;
+      low[slot] = !value;
+      lowCount += value ? -1 : 1;
+      newValue = lowCount == 0;
+    }
+    edgeNotify(oldValue, newValue);
+  }
+
+  /**
+   * Set an input value to the open collector, attaching the component if
+   * needed.
    *
    * This is used by a component to declare its value:
    *
    *     oc.value(this, true);
    *
+   * Components that change their value often should attach once, and
+   * use value(int, boolean) with their slot instead.
+   *
    * @param o the input component.
    * @param value the value to set for that component.
    */
   public void value(Object o, boolean value) {
-    boolean oldValue = value();
-    map.put(o, value);
-    edgeNotify(oldValue, value());
+    value(attach(o), value);
   }
 
   /**
-   * Detach a component from the open collector.
+   * Detach a component from the open collector.  If the component was
+   * driving the line low, it is released.
    *
    * @param o the input component to dispatch.
    */
   public void detach(Object o) {
-    map.remove(o);
+    int slot = -1;
+    synchronized(this) {
+      for(int i = 0; i < drivers.length; i++) {
+        if(drivers[i] == o) {
+          slot = i;
+        }
+      }
+    }
+    if(slot >= 0) {
+      value(slot, true);
+      synchronized(this) {
+        drivers[slot] = null;
+      }
+    }
   }
 }
-
@@ -2,14 +2,20 @@
 
 package org.joev.ya6s.signals;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * A signal in a digital system.
  *
  * Can be true or false, does not support a high-impedance mode.
+ *
+ * A listener may register for both edges, or for only the rising or the
+ * falling edge, and is only notified of the edges it registered for.  The
+ * listeners of each edge are kept in an array that is replaced, never
+ * changed, when a listener registers or unregisters.  Notifying the
+ * listeners takes no lock, so listeners can come and go from another
+ * thread while the clock is running, and a listener may unregister itself
+ * while being notified.
  */
 public class Signal {
   /**
@@ -34,8 +40,11 @@ public class Signal {
   }
 
   private final String name;
-  private Listener[] listeners = new Listener[8];
-  private int listenerCount = 0;
+  private static final Listener[] NO_LISTENERS = new Listener[0];
+
+  private volatile Listener[] rising = NO_LISTENERS;
+  private volatile Listener[] falling = NO_LISTENERS;
+  private volatile int listenerCount = 0;
 
   private boolean value;
 
@@ -75,51 +84,138 @@ public class Signal {
     edgeNotify(oldValue, value);
   }
 
+  /**
+   * Set the value of the Signal without notifying the listeners, as when
+   * restoring a saved state.
+   *
+   * @param value the new value of the Signal.
+   */
+  public void restore(boolean value) {
+    this.value = value;
+  }
+
   protected void edgeNotify(boolean oldValue, boolean newValue) {
-    EventType eventType = null;
     if(!oldValue && newValue) {
-      eventType = EventType.POSITIVE_EDGE;
+      for(Listener listener: rising) {
+        listener.event(EventType.POSITIVE_EDGE);
+      }
     }
     else if(oldValue && !newValue) {
-      eventType = EventType.NEGATIVE_EDGE;
-    }
-    if(eventType != null) {
-      for(int i = 0; i < listenerCount; i++) {
-        listeners[i].event(eventType);
+      for(Listener listener: falling) {
+        listener.event(EventType.NEGATIVE_EDGE);
       }
     }
   }
 
   /**
-   * Register a Listener.
+   * Register a Listener for both edges.
    *
    * @param listener a Listener to notify when the Signal changes.
    */
-  public void register(Listener listener) {
-    if(listenerCount == listeners.length) {
-      Listener[] newListeners = new Listener[listenerCount + 8];
-      System.arraycopy(listeners, 0, newListeners, 0, listenerCount);
-      listeners = newListeners;
-    }
-    listeners[listenerCount] = listener;
-    listenerCount++;
+  public synchronized void register(Listener listener) {
+    rising = add(rising, listener);
+    falling = add(falling, listener);
+    count();
   }
 
   /**
-   * Unregister a Listener.
+   * Register a Listener for rising edges only.
+   *
+   * @param listener a Listener to notify when the Signal becomes true.
+   */
+  public synchronized void registerRising(Listener listener) {
+    rising = add(rising, listener);
+    count();
+  }
+
+  /**
+   * Register a Listener for falling edges only.
+   *
+   * @param listener a Listener to notify when the Signal becomes false.
+   */
+  public synchronized void registerFalling(Listener listener) {
+    falling = add(falling, listener);
+    count();
+  }
+
+  /**
+   * Unregister a Listener from the edges it was registered for.
    *
    * @param listener a Listener to no longer notify.
    */
-  public void unregister(Listener listener) {
-    for(int i = 0; i < listenerCount; i++) {
+  public synchronized void unregister(Listener listener) {
+    rising = remove(rising, listener);
+    falling = remove(falling, listener);
+    count();
+  }
+
+  /**
+   * Create a copy of a listener array with a Listener added to its end.
+   *
+   * @param listeners the listener array.
+   * @param listener the Listener to add.
+   * @return the new listener array.
+   */
+  private static Listener[] add(Listener[] listeners, Listener listener) {
+    Listener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+    newListeners[listeners.length] = listener;
+    return newListeners;
+  }
+
+  /**
+   * Create a copy of a listener array without the first occurrence of a
+   * Listener.
+   *
+   * @param listeners the listener array.
+   * @param listener the Listener to remove.
+   * @return the new listener array, or the same array if the Listener is
+   *   not in it.
+   */
+  private static Listener[] remove(Listener[] listeners, Listener listener) {
+    for(int i = 0; i < listeners.length; i++) {
       if(listeners[i] == listener) {
-        System.arraycopy(listeners, i+1, listeners, i, listenerCount - i - 1);
-        listenerCount--;
-        break;
+        Listener[] newListeners = new Listener[listeners.length - 1];
+        System.arraycopy(listeners, 0, newListeners, 0, i);
+        System.arraycopy(listeners, i+1, newListeners, i, listeners.length - i - 1);
+        return newListeners;
       }
     }
+    return listeners;
   }
 
+  /**
+   * Count the registered Listeners, counting a Listener registered for
+   * both edges once.
+   */
+  private void count() {
+    int count = rising.length;
+    for(Listener listener: falling) {
+      if(!Arrays.asList(rising).contains(listener)) {
+        count++;
+      }
+    }
+    listenerCount = count;
+  }
+
+  /**
+   * Determine if any Listener other than the given one is registered for
+   * rising edges.
+   *
+   * @param listener the Listener to leave out.
+   * @return true if another Listener is notified when the Signal becomes true.
+   */
+  public boolean risingListenersBesides(Listener listener) {
+    Listener[] listeners = rising;
+    return listeners.length > 1 || (listeners.length == 1 && listeners[0] != listener);
+  }
+
+  /**
+   * Get the number of registered Listeners.
+   *
+   * @return the number of Listeners notified when the Signal changes.
+   */
+  public int listenerCount() { return listenerCount; }
+
   /**
    * Get a human-readable String representation of the Signal.
    *
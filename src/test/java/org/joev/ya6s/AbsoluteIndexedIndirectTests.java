@@ -33,6 +33,13 @@ public class AbsoluteIndexedIndirectTests {
     TestUtils.executeTest(params, backplane, cpu);
   }
 
+  @ParameterizedTest
+  @MethodSource("tests")
+  void fast(Parameters params) {
+    cpu.engine(W65C02S.Engine.FAST);
+    TestUtils.executeTest(params, backplane, cpu);
+  }
+
   static Stream<Parameters> tests() {
     return Stream.of(
       params("JMP", """
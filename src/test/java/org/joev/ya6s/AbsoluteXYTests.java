@@ -27,6 +27,13 @@ public class AbsoluteXYTests {
     TestUtils.executeTest(params, backplane, cpu);
   }
 
+  @ParameterizedTest
+  @MethodSource("tests")
+  void fast(Parameters params) {
+    cpu.engine(W65C02S.Engine.FAST);
+    TestUtils.executeTest(params, backplane, cpu);
+  }
+
   static Stream<Parameters> tests() {
     return Stream.of(
       params("LDA ,X", """
@@ -0,0 +1,191 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.joev.ya6s.signals.Signal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the Backplane's direct access to attached devices.
+ */
+public class BackplaneTests {
+  private Backplane backplane;
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+  }
+
+  /**
+   * Reads and writes reach the attached device, and a read of an address
+   * with no device returns the data bus value.
+   */
+  @Test
+  void readWrite() {
+    new SRAM(backplane, (short)0x1000, 0x80);
+    backplane.write(0x1042, (byte)0x42);
+    assertEquals((byte)0x42, backplane.read(0x1042));
+
+    backplane.data().value(0xEE);
+    backplane.write(0x1080, (byte)0x23);
+    assertEquals((byte)0xEE, backplane.read(0x1080));
+  }
+
+  /**
+   * A device that overlaps an attached device is rejected, and the
+   * attached device is left as it was.
+   */
+  @Test
+  void overlap() {
+    new SRAM(backplane);
+    backplane.write(0x2010, (byte)0x42);
+    assertThrows(IllegalArgumentException.class, () -> new SRAM(backplane, (short)0x2010, 0x10));
+    assertEquals((byte)0x42, backplane.read(0x2010));
+    assertEquals(1, backplane.devices().size());
+  }
+
+  /**
+   * Devices that share a page are each reached at their own addresses,
+   * through the busses as well as directly.
+   */
+  @Test
+  void sharedPage() {
+    new SRAM(backplane, (short)0x20F0, 0x10);
+    new SRAM(backplane, (short)0x2110, 0x10);
+    Counter counter = new Counter(backplane, Map.of("base", "2100"));
+    backplane.write(0x20FF, (byte)0x11);
+    backplane.write(0x2100, (byte)0x22);
+    backplane.write(0x2110, (byte)0x33);
+    assertEquals((byte)0x11, backplane.read(0x20FF));
+    assertEquals((byte)0x22, counter.read(0x2100));
+    assertEquals((byte)0x33, backplane.read(0x2110));
+
+    Clock clock = new Clock(backplane.clock());
+    backplane.address().value(0x2110);
+    backplane.rwb().value(true);
+    clock.cycle();
+    assertEquals(0x33, backplane.data().value());
+
+    backplane.address().value(0x2104);
+    backplane.data().value(0xEE);
+    clock.cycle();
+    assertEquals(0xEE, backplane.data().value());
+  }
+
+  /**
+   * A closed device is detached.
+   */
+  @Test
+  void detach() {
+    SRAM sram = new SRAM(backplane);
+    backplane.write(0x3000, (byte)0x42);
+    sram.close();
+    backplane.data().value(0xEE);
+    assertEquals((byte)0xEE, backplane.read(0x3000));
+  }
+
+  /**
+   * Bus timing is required only while a device listens to the end of
+   * every bus cycle, whether it registered through the Backplane or with
+   * the clock directly.
+   */
+  @Test
+  void busTimingRequired() {
+    new W65C02S(backplane);
+    new SRAM(backplane, (short)0x0000, 0x8000);
+    assertFalse(backplane.busTimingRequired());
+    new Counter(backplane, Map.of("base", "F100"));
+    assertFalse(backplane.busTimingRequired());
+    Signal.Listener listener = et -> { };
+    backplane.registerBusListener(listener);
+    assertTrue(backplane.busTimingRequired());
+    backplane.unregisterBusListener(listener);
+    assertFalse(backplane.busTimingRequired());
+    backplane.clock().register(listener);
+    assertTrue(backplane.busTimingRequired());
+    backplane.clock().unregister(listener);
+    assertFalse(backplane.busTimingRequired());
+  }
+
+  /**
+   * A page of memory is only given out for direct access while no
+   * watchpoint covers it, and the version changes whenever that may
+   * change.
+   */
+  @Test
+  void directPage() {
+    int version = backplane.directVersion();
+    new SRAM(backplane);
+    assertNotEquals(version, backplane.directVersion());
+    assertNotNull(backplane.directPage(0x00));
+
+    version = backplane.directVersion();
+    backplane.watchpoints().add(Watchpoints.Kind.WRITE, 0x00FF, 0x00FF);
+    assertNotEquals(version, backplane.directVersion());
+    assertNull(backplane.directPage(0x00));
+    assertNotNull(backplane.directPage(0x01));
+
+    backplane.watchpoints().remove(0);
+    assertNotNull(backplane.directPage(0x00));
+  }
+
+  /**
+   * Peeks and pokes reach the attached devices across device boundaries
+   * and the end of the address space, without using the busses or the
+   * clock.  A block poke reports the bytes written to each device.
+   */
+  @Test
+  void peekPoke() {
+    SRAM low = new SRAM(backplane, (short)0x0000, 0x100);
+    SRAM high = new SRAM(backplane, (short)0xFF00, 0x100);
+    backplane.address().value(0x1234);
+    backplane.data().value(0xEE);
+
+    assertEquals(Map.of(high, 2, low, 2), backplane.poke(0xFFFE, new byte[] { 1, 2, 3, 4 }));
+    assertEquals(Map.of(low, 1), backplane.poke(0x00FF, new byte[] { 5, 6 }));
+    assertEquals((byte)0x02, backplane.read(0xFFFF));
+    assertEquals((byte)0x03, backplane.peek(0x0000));
+    backplane.poke(0x00FF, (byte)0x42);
+
+    byte[] block = new byte[4];
+    backplane.peek(0x00FE, block);
+    assertArrayEquals(new byte[] { 0, 0x42, (byte)0xEE, (byte)0xEE }, block);
+    assertEquals(0x1234, backplane.address().value());
+    assertEquals(0, backplane.scheduler().now());
+  }
+
+  /**
+   * Peeking at the receive buffer of a UART does not take a character
+   * from its FIFO.
+   */
+  @Test
+  void peekUART() throws InterruptedException {
+    backplane.console(new ByteArrayInputStream("AB".getBytes()), OutputStream.nullOutputStream());
+    UART uart = new UART(backplane, Map.of("base", "F000"));
+    try {
+      while((backplane.peek(0xF005) & 0x01) == 0) {
+        Thread.sleep(1);
+      }
+      assertEquals((byte)'A', backplane.peek(0xF000));
+      assertEquals((byte)'A', backplane.peek(0xF000));
+      assertEquals((byte)'A', backplane.read(0xF000));
+    }
+    finally {
+      uart.close();
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the bank-switched memory device.
+ */
+public class BankedMemoryTests {
+  private Backplane backplane;
+
+  /**
+   * Create a Backplane with 16k of windows onto 64k of banked memory,
+   * with the bank-select registers at $F000.
+   */
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    new BankedMemory(backplane, Map.of(
+        "base", "8000",
+        "size", "4000",
+        "window", "2000",
+        "memory", "10000",
+        "io", "F000"));
+  }
+
+  /**
+   * Each window starts out showing its own bank, and shows another bank
+   * once it is selected.
+   */
+  @Test
+  void select() {
+    assertEquals(0, backplane.read(0xF000));
+    assertEquals(1, backplane.read(0xF001));
+    assertEquals(0, backplane.bank(0x8000));
+    assertEquals(1, backplane.bank(0xA000));
+    assertEquals(-1, backplane.bank(0xF000));
+
+    backplane.write(0x8000, (byte)0x42);
+    backplane.write(0xF000, (byte)5);
+    assertEquals(5, backplane.read(0xF000));
+    assertEquals(5, backplane.bank(0x9FFF));
+    assertEquals((byte)0x00, backplane.read(0x8000));
+    backplane.write(0x8000, (byte)0x23);
+
+    backplane.write(0xF001, (byte)0);
+    assertEquals((byte)0x42, backplane.read(0xA000));
+    backplane.write(0xF001, (byte)5);
+    assertEquals((byte)0x23, backplane.read(0xA000));
+  }
+
+  /**
+   * Code decoded from a window is not run again once another bank is
+   * selected.
+   */
+  @Test
+  void switchInvalidatesCode() {
+    W65C02S cpu = new W65C02S(backplane);
+    new SRAM(backplane, (short)0x0000, 0x8000);
+    new SRAM(backplane, (short)0xFF00, 0x100);
+    TestUtils.load(backplane, cpu, 0x8000, "A9 11 60 ; LDA #$11 / RTS");
+    backplane.write(0xF000, (byte)2);
+    TestUtils.load(backplane, cpu, 0x8000, "A9 22 60 ; LDA #$22 / RTS");
+    backplane.write(0xF000, (byte)0);
+    TestUtils.load(backplane, cpu, 0x0200, """
+      20 00 80 ; JSR $8000
+      A9 02    ; LDA #$02
+      8D 00 F0 ; STA $F000
+      20 00 80 ; JSR $8000
+      DB       ; STP
+      """);
+    TestUtils.load(backplane, cpu, 0xFFFC, "00 02");
+    cpu.engine(W65C02S.Engine.FAST);
+    Clock clock = new Clock(backplane.clock());
+    backplane.be().value(true);
+    cpu.resb().value(false);
+    clock.cycle();
+    clock.cycle();
+    cpu.resb().value(true);
+
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(1000));
+    assertEquals((byte)0x22, cpu.a());
+  }
+
+  /**
+   * Memory on the heap may be cached, but memory mapped from a file, which
+   * another process may change, may not.
+   */
+  @Test
+  void cacheable(@TempDir Path dir) {
+    assertTrue(backplane.cacheable(0x8000));
+
+    Backplane other = new Backplane();
+    new BankedMemory(other, Map.of(
+        "base", "8000",
+        "size", "4000",
+        "memory", "10000",
+        "io", "F000",
+        "file", dir.resolve("banked.bin").toString()));
+    assertFalse(other.cacheable(0x8000));
+    assertFalse(other.cacheable(0xBFFF));
+  }
+
+  /**
+   * The contents of banked memory mapped from a file are written to the
+   * file when it is flushed, and seen by the next device that maps it.
+   */
+  @Test
+  void file(@TempDir Path dir) throws IOException {
+    Path path = dir.resolve("banked.bin");
+    Map<String, String> options = Map.of(
+        "base", "8000",
+        "size", "4000",
+        "memory", "10000",
+        "io", "F000",
+        "file", path.toString());
+    Backplane other = new Backplane();
+    BankedMemory banked = new BankedMemory(other, options);
+    other.write(0xF000, (byte)3);
+    other.write(0x8042, (byte)0x42);
+    banked.flush();
+    assertEquals(0x10000, Files.size(path));
+    assertEquals((byte)0x42, Files.readAllBytes(path)[0x6042]);
+    banked.close();
+    assertEquals(0, other.devices().size());
+
+    new BankedMemory(other, options);
+    other.write(0xF001, (byte)3);
+    assertEquals((byte)0x42, other.read(0xA042));
+  }
+
+  /**
+   * Registers that overlap the windows are rejected.
+   */
+  @Test
+  void overlap() {
+    Backplane other = new Backplane();
+    assertThrows(IllegalArgumentException.class, () -> new BankedMemory(other, Map.of(
+        "base", "8000",
+        "size", "4000",
+        "memory", "10000",
+        "io", "8000")));
+    assertEquals(0, other.devices().size());
+  }
+}
@@ -0,0 +1,122 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.joev.ya6s.Parameters.params;
+
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Tests for loops that run long enough for the FAST engine to compile
+ * their blocks.
+ */
+public class BlockCompilerTests {
+  private Backplane backplane;
+  private W65C02S cpu;
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    cpu = new W65C02S(backplane);
+    new SRAM(backplane, (short)0x0000, 0x8000);
+    new SRAM(backplane, (short)0xFF00, 0x0100);
+    new Counter(backplane, Map.of("base", "F100"));
+  }
+
+  @ParameterizedTest
+  @MethodSource("tests")
+  void test(Parameters params) {
+    TestUtils.executeTest(params, backplane, cpu);
+  }
+
+  @ParameterizedTest
+  @MethodSource("tests")
+  void fast(Parameters params) {
+    cpu.engine(W65C02S.Engine.FAST);
+    TestUtils.executeTest(params, backplane, cpu);
+  }
+
+  static Stream<Parameters> tests() {
+    return Stream.of(
+      params("Decimal counting", """
+        F8       ; SED
+        18       ; CLC
+        A9 00    ; LDA #$00
+        A0 08    ; LDY #$08
+        A2 00    ; LDX #$00
+        69 01    ; ADC #$01
+        CA       ; DEX
+        D0 FB    ; BNE $0208
+        88       ; DEY
+        D0 F6    ; BNE $0206
+        D8       ; CLD
+        """, 16441,
+        Assertions.assertA(0x68),
+        Assertions::assertNotCarry),
+
+      params("Copy four pages", """
+        A9 02    ; LDA #$02
+        85 11    ; STA $11
+        A9 20    ; LDA #$20
+        85 13    ; STA $13
+        64 10    ; STZ $10
+        64 12    ; STZ $12
+        A2 04    ; LDX #$04
+        A0 00    ; LDY #$00
+        B1 10    ; LDA ($10),Y
+        91 12    ; STA ($12),Y
+        C8       ; INY
+        D0 F9    ; BNE $0210
+        E6 11    ; INC $11
+        E6 13    ; INC $13
+        CA       ; DEX
+        D0 F2    ; BNE $0210
+        AD 10 20 ; LDA $2010
+        AC 17 20 ; LDY $2017
+        """, 15443,
+        Assertions.assertA(0xB1),
+        Assertions.assertY(0xE6)),
+
+      params("Modify compiled subroutine", """
+        80 03    ; BRA $0205
+        A9 00    ; LDA #$00
+        60       ; RTS
+        A0 04    ; LDY #$04
+        A2 00    ; LDX #$00
+        20 02 02 ; JSR $0202
+        20 02 02 ; JSR $0202
+        20 02 02 ; JSR $0202
+        20 02 02 ; JSR $0202
+        CA       ; DEX
+        D0 F1    ; BNE $0209
+        EE 03 02 ; INC $0203
+        88       ; DEY
+        D0 E9    ; BNE $0207
+        """, 62516,
+        Assertions.assertA(0x03),
+        Assertions.assertX(0x00),
+        Assertions.assertY(0x00)),
+
+      params("Poll the counter", """
+        9C 00 F1 ; STZ $F100
+        A9 80    ; LDA #$80
+        8D 01 F1 ; STA $F101
+        9C 02 F1 ; STZ $F102
+        A9 01    ; LDA #$01
+        8D 03 F1 ; STA $F103
+        A2 01    ; LDX #$01
+        BD 00 F1 ; LDA $F100,X
+        C9 20    ; CMP #$20
+        B0 F9    ; BCS $0212
+        AD 01 F1 ; LDA $F101
+        D0 FB    ; BNE $0219
+        AE 00 F1 ; LDX $F100
+        """, 32543,
+        Assertions.assertX(0xF5))
+    );
+  }
+}
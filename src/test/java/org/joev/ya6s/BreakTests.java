@@ -34,6 +34,13 @@ public class BreakTests {
     TestUtils.executeTest(params, backplane, cpu);
   }
 
+  @ParameterizedTest
+  @MethodSource("tests")
+  void fast(Parameters params) {
+    cpu.engine(W65C02S.Engine.FAST);
+    TestUtils.executeTest(params, backplane, cpu);
+  }
+
   static Stream<Parameters> tests() {
     return Stream.of(
       params("BRK", """
@@ -0,0 +1,156 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class CounterTests {
+  private Backplane backplane;
+  private W65C02S cpu;
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    cpu = new W65C02S(backplane);
+    new SRAM(backplane, (short)0x0000, 0x8000);
+    new SRAM(backplane, (short)0xFF00, 0x0100);
+    new Counter(backplane, Map.of("base", "F100"));
+  }
+
+  /**
+   * Get the state of the system, for comparison.
+   */
+  private List<Long> state() {
+    return List.of(backplane.scheduler().now(), cpu.cycleCount(), (long)cpu.pc(),
+      (long)cpu.a(), (long)cpu.p(), (long)backplane.read(0xF103));
+  }
+
+  /**
+   * Skipping ahead while polling the counter, or while waiting for its
+   * interrupt, has the same result as running each instruction.
+   */
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void skipAhead(W65C02S.Engine engine) {
+    String program = """
+      A9 40    ; LDA #$40
+      8D 00 F1 ; STA $F100
+      A9 42    ; LDA #$42
+      8D 01 F1 ; STA $F101
+      A9 0F    ; LDA #$0F
+      8D 02 F1 ; STA $F102
+      A9 01    ; LDA #$01
+      8D 03 F1 ; STA $F103
+      2C 03 F1 ; BIT $F103
+      50 FB    ; BVC $0214
+      A9 40    ; LDA #$40
+      8D 00 F1 ; STA $F100
+      A9 05    ; LDA #$05
+      8D 03 F1 ; STA $F103
+      78       ; SEI
+      CB       ; WAI
+      AD 03 F1 ; LDA $F103
+      DB       ; STP
+      """;
+    TestUtils.reset(backplane, cpu, engine, program);
+    while(cpu.run(0) != W65C02S.StopReason.STOPPED) {
+      cpu.step();
+    }
+    List<Long> expected = state();
+
+    beforeEach();
+    TestUtils.reset(backplane, cpu, engine, program);
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(10_000_000));
+    assertEquals(expected, state());
+  }
+
+  /**
+   * A loop that polls the counter value, or the zero bit, leaves in the
+   * same cycle with the FAST engine, which compiles the loop or skips
+   * ahead through it, as with the CYCLE engine.
+   */
+  @ParameterizedTest
+  @ValueSource(strings = {
+    """
+    AD 02 F1 ; LDA $F102
+    C9 08    ; CMP #$08
+    B0 F9    ; BCS $020F
+    DB       ; STP
+    """,
+    """
+    2C 03 F1 ; BIT $F103
+    50 FB    ; BVC $020F
+    DB       ; STP
+    """
+  })
+  void poll(String loop) {
+    String program = """
+      9C 00 F1 ; STZ $F100
+      9C 01 F1 ; STZ $F101
+      A9 10    ; LDA #$10
+      8D 02 F1 ; STA $F102
+      A9 01    ; LDA #$01
+      8D 03 F1 ; STA $F103
+      """ + loop;
+    TestUtils.reset(backplane, cpu, W65C02S.Engine.CYCLE, program);
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(10_000_000));
+    List<Long> expected = state();
+
+    beforeEach();
+    TestUtils.reset(backplane, cpu, W65C02S.Engine.FAST, program);
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(10_000_000));
+    assertEquals(expected, state());
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void countDown(W65C02S.Engine engine) {
+    TestUtils.reset(backplane, cpu, engine, """
+      A9 E8    ; LDA #$E8
+      8D 00 F1 ; STA $F100
+      A9 03    ; LDA #$03
+      8D 01 F1 ; STA $F101
+      9C 02 F1 ; STZ $F102
+      A9 01    ; LDA #$01
+      8D 03 F1 ; STA $F103
+      2C 03 F1 ; BIT $F103
+      50 FB    ; BVC $0212
+      DB       ; STP
+      """);
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(100_000));
+    long cycles = backplane.scheduler().now();
+    assertTrue(cycles >= 1000 && cycles < 1100, "cycles: " + cycles);
+    assertEquals((byte)0x40, backplane.read(0xF103));
+    assertEquals((byte)0x00, backplane.read(0xF100));
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void interrupt(W65C02S.Engine engine) {
+    TestUtils.reset(backplane, cpu, engine, """
+      A9 E8    ; LDA #$E8
+      8D 00 F1 ; STA $F100
+      A9 03    ; LDA #$03
+      8D 01 F1 ; STA $F101
+      9C 02 F1 ; STZ $F102
+      78       ; SEI
+      A9 05    ; LDA #$05
+      8D 03 F1 ; STA $F103
+      CB       ; WAI
+      DB       ; STP
+      """);
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(100_000));
+    assertFalse(backplane.irqb().value());
+    assertEquals((byte)0x44, backplane.read(0xF103));
+  }
+}
@@ -0,0 +1,74 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FleetTests {
+  @TempDir
+  Path directory;
+
+  @Test
+  void fleet() throws IOException, InterruptedException {
+    // Echo two characters from the UART, then stop.
+    Files.writeString(directory.resolve("echo.config"), """
+      attach org.joev.ya6s.SRAM base=0000 size=8000
+      attach org.joev.ya6s.SRAM base=FF00 size=0100
+      attach org.joev.ya6s.UART base=F000
+      write 0200 A2 02 AD 05 F0 29 01 F0 F9 AD 00 F0 8D 00 F0 CA D0 F0 DB
+      write FFFC 00 02
+      cont
+      """);
+    Files.writeString(directory.resolve("echo.in"), "hi");
+
+    // Loop forever.
+    Files.writeString(directory.resolve("loop.config"), """
+      attach org.joev.ya6s.SRAM base=0000 size=8000
+      attach org.joev.ya6s.SRAM base=FF00 size=0100
+      write 0200 4C 00 02
+      write FFFC 00 02
+      """);
+
+    // Stop at a breakpoint on the jump back.
+    Files.writeString(directory.resolve("break.config"), """
+      attach org.joev.ya6s.SRAM base=0000 size=8000
+      attach org.joev.ya6s.SRAM base=FF00 size=0100
+      write 0200 E8 4C 00 02
+      write FFFC 00 02
+      break at 0201
+      """);
+
+    Files.writeString(directory.resolve("bad.config"), """
+      frobnicate
+      """);
+
+    List<Fleet.Result> results = new Fleet(directory, 100_000_000L).run();
+    assertEquals(List.of("bad", "break", "echo", "loop"), results.stream().map(Fleet.Result::name).toList());
+
+    assertEquals("ERROR", results.get(0).status());
+
+    Fleet.Result hit = results.get(1);
+    assertFalse(hit.stopped());
+    assertEquals("BREAKPOINT", hit.status());
+    assertTrue(hit.cycles() < 100);
+
+    Fleet.Result echo = results.get(2);
+    assertTrue(echo.stopped(), echo.status());
+    assertEquals("hi", Files.readString(directory.resolve("echo.out")));
+
+    Fleet.Result loop = results.get(3);
+    assertFalse(loop.stopped());
+    assertEquals("BUDGET", loop.status());
+    assertTrue(loop.cycles() >= 100_000_000L);
+  }
+}
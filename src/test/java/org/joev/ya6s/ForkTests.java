@@ -0,0 +1,181 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class ForkTests {
+  private Backplane backplane;
+  private W65C02S cpu;
+  private SRAM sram;
+  private Clock clock;
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    cpu = new W65C02S(backplane);
+    sram = new SRAM(backplane, (short)0x0000, 0x8000);
+    new SRAM(backplane, (short)0xFF00, 0x0100);
+    clock = new Clock(backplane.clock());
+
+    // Sum the bytes of page 3 into $10-$11, over and over.
+    TestUtils.load(backplane, cpu, 0x200, """
+      A0 00    ; LDY #$00
+      64 10    ; STZ $10
+      64 11    ; STZ $11
+      18       ; CLC
+      B9 00 03 ; LDA $0300,Y
+      65 10    ; ADC $10
+      85 10    ; STA $10
+      90 02    ; BCC +2
+      E6 11    ; INC $11
+      C8       ; INY
+      D0 F2    ; BNE $0207
+      80 E9    ; BRA $0200
+      """);
+    TestUtils.load(backplane, cpu, 0xFFFC, "00 02");
+    for(int i = 0; i < 0x100; i++) {
+      backplane.write(0x300 + i, (byte)(i * 7));
+    }
+
+    backplane.be().value(true);
+    cpu.resb().value(false);
+    clock.cycle();
+    clock.cycle();
+    cpu.resb().value(true);
+  }
+
+  /**
+   * Get the state of a system, as a String, for comparison.
+   */
+  private static String state(Backplane backplane, W65C02S cpu) {
+    byte[] memory = new byte[0x10000];
+    backplane.peek(0, memory);
+    return String.format("%04X %02X %02X %02X %02X %02X %d %04X %d",
+      cpu.pc(), cpu.a(), cpu.x(), cpu.y(), cpu.s(), cpu.p(), cpu.cycleCount(),
+      backplane.address().value(), Arrays.hashCode(memory));
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void run(W65C02S.Engine engine) {
+    cpu.engine(engine);
+    cpu.run(5000);
+    Backplane.Fork fork = backplane.fork();
+    W65C02S child = fork.copy(cpu);
+    assertNotSame(cpu, child);
+    assertEquals(state(backplane, cpu), state(fork.backplane(), child));
+
+    cpu.run(20000);
+    child.run(20000);
+    assertEquals(state(backplane, cpu), state(fork.backplane(), child));
+    assertEquals(backplane.scheduler().now(), fork.backplane().scheduler().now());
+  }
+
+  @Test
+  void midInstruction() {
+    for(int i = 0; i < 1001; i++) {
+      clock.cycle();
+    }
+    Backplane.Fork fork = backplane.fork();
+    W65C02S child = fork.copy(cpu);
+    Clock childClock = new Clock(fork.backplane().clock());
+    for(int i = 0; i < 100; i++) {
+      clock.cycle();
+      childClock.cycle();
+      assertEquals(state(backplane, cpu), state(fork.backplane(), child));
+    }
+  }
+
+  /**
+   * The zero page, which the processor was writing directly, is shared
+   * with the fork, so the processor stops writing it directly.
+   */
+  @Test
+  void directPages() {
+    cpu.engine(W65C02S.Engine.FAST);
+    cpu.run(5000);
+    Backplane child = backplane.fork().backplane();
+    byte[] before = new byte[0x200];
+    child.peek(0, before);
+    cpu.run(5000);
+    byte[] after = new byte[0x200];
+    child.peek(0, after);
+    assertArrayEquals(before, after);
+  }
+
+  @Test
+  void copyOnWrite() {
+    Backplane.Fork fork = backplane.fork();
+    Backplane child = fork.backplane();
+    backplane.write(0x1234, (byte)0x55);
+    child.write(0x1234, (byte)0xAA);
+    child.write(0x4321, (byte)0x66);
+    assertEquals((byte)0x55, backplane.read(0x1234));
+    assertEquals((byte)0xAA, child.read(0x1234));
+    assertEquals((byte)0x00, backplane.read(0x4321));
+    assertEquals((byte)0x66, child.read(0x4321));
+
+    // A fork of a fork shares the pages of both.
+    Backplane grandchild = child.fork().backplane();
+    child.poke(0x1234, new byte[] { 1, 2, 3 });
+    assertEquals((byte)0xAA, grandchild.read(0x1234));
+    assertEquals((byte)0x66, grandchild.read(0x4321));
+    assertEquals((byte)0x55, backplane.read(0x1234));
+
+    assertEquals(sram.size(), fork.copy(sram).size());
+  }
+
+  @Test
+  void snapshot() throws IOException {
+    cpu.run(5000);
+    Backplane.Fork fork = backplane.fork();
+    fork.copy(cpu).run(20000);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Snapshot.save(fork.backplane(), out);
+    Snapshot.restore(backplane, new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(state(fork.backplane(), fork.copy(cpu)), state(backplane, cpu));
+  }
+
+  @Test
+  void bankedMemory() {
+    new BankedMemory(backplane, Map.of(
+      "base", "8000", "size", "4000", "window", "2000", "memory", "10000", "io", "FE00"));
+    backplane.write(0xFE00, (byte)3);
+    backplane.write(0x8000, (byte)0x42);
+
+    Backplane child = backplane.fork().backplane();
+    assertEquals((byte)3, child.read(0xFE00));
+    assertEquals((byte)0x42, child.read(0x8000));
+    child.write(0x8000, (byte)0x24);
+    assertEquals((byte)0x42, backplane.read(0x8000));
+    assertNull(backplane.fork().copy(backplane.devices().get(backplane.devices().size() - 1)));
+  }
+
+  @Test
+  void notForkable() {
+    backplane.attach(new Addressable() {
+      public int base() { return 0x9000; }
+      public int size() { return 1; }
+      public byte read(int address) { return 0; }
+      public void write(int address, byte value) { }
+    });
+    assertThrows(UnsupportedOperationException.class, () -> backplane.fork());
+  }
+}
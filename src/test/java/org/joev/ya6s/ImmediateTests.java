@@ -16,6 +16,12 @@ public class ImmediateTests {
     TestUtils.executeTest(params);
   }
 
+  @ParameterizedTest
+  @MethodSource("tests")
+  void fast(Parameters params) {
+    TestUtils.executeTest(params, W65C02S.Engine.FAST);
+  }
+
   static Stream<Parameters> tests() {
     return Stream.of(
       params("AND", """
@@ -293,7 +299,60 @@ public class ImmediateTests {
         Assertions::assertNotZero,
         Assertions::assertCarry,
         Assertions::assertNotOverflow,
-        Assertions.assertA(0x03))
+        Assertions.assertA(0x03)),
+
+      params("ADC decimal carry", """
+        F8    ; SED
+        18    ; CLC
+        A9 58 ; LDA #$58
+        69 46 ; ADC #$46
+        """, 9,
+        Assertions::assertNotNegative,
+        Assertions::assertNotZero,
+        Assertions::assertCarry,
+        Assertions.assertA(0x04)),
+      params("ADC decimal negative and overflow", """
+        F8    ; SED
+        38    ; SEC
+        A9 79 ; LDA #$79
+        69 00 ; ADC #$00
+        """, 9,
+        Assertions::assertNegative,
+        Assertions::assertNotZero,
+        Assertions::assertNotCarry,
+        Assertions::assertOverflow,
+        Assertions.assertA(0x80)),
+      params("ADC decimal zero", """
+        F8    ; SED
+        38    ; SEC
+        A9 99 ; LDA #$99
+        69 00 ; ADC #$00
+        """, 9,
+        Assertions::assertNotNegative,
+        Assertions::assertZero,
+        Assertions::assertCarry,
+        Assertions.assertA(0x00)),
+      params("SBC decimal borrow", """
+        F8    ; SED
+        38    ; SEC
+        A9 00 ; LDA #$00
+        E9 01 ; SBC #$01
+        """, 9,
+        Assertions::assertNegative,
+        Assertions::assertNotZero,
+        Assertions::assertNotCarry,
+        Assertions::assertNotOverflow,
+        Assertions.assertA(0x99)),
+      params("SBC decimal zero", """
+        F8    ; SED
+        38    ; SEC
+        A9 46 ; LDA #$46
+        E9 46 ; SBC #$46
+        """, 9,
+        Assertions::assertNotNegative,
+        Assertions::assertZero,
+        Assertions::assertCarry,
+        Assertions.assertA(0x00))
     );
   }
 }
@@ -0,0 +1,107 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for capturing bus cycles with the LogicAnalyzer.
+ */
+public class LogicAnalyzerTests {
+  private Backplane backplane;
+  private W65C02S cpu;
+  private Clock clock;
+
+  /**
+   * Create a system running a loop that stores to $3000.
+   */
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    cpu = new W65C02S(backplane);
+    new SRAM(backplane);
+    TestUtils.load(backplane, cpu, 0x200, """
+      A9 42    ; LDA #$42
+      8D 00 30 ; STA $3000
+      4C 00 02 ; JMP $0200
+      """);
+    TestUtils.load(backplane, cpu, 0xFFFC, "00 02");
+    clock = new Clock(backplane.clock());
+
+    backplane.be().value(true);
+    cpu.resb().value(false);
+    clock.cycle();
+    clock.cycle();
+    cpu.resb().value(true);
+  }
+
+  /**
+   * A trigger on an address leaves the triggering cycle in the middle of
+   * the capture, and recording stops once the buffer is full.
+   */
+  @Test
+  void triggerAt() {
+    LogicAnalyzer analyzer = new LogicAnalyzer(backplane, cpu, 16);
+    analyzer.start();
+    analyzer.trigger(0x3000);
+    for(int i = 0; i < 200; i++) {
+      clock.cycle();
+    }
+
+    assertEquals(16, analyzer.size());
+    assertEquals(analyzer.triggerCycle(), analyzer.cycle(7));
+    assertEquals(0x3000, analyzer.address(7));
+    assertEquals(0x42, analyzer.data(7));
+    assertEquals(0, analyzer.signals(7) & LogicAnalyzer.RWB);
+    for(int i = 1; i < 16; i++) {
+      assertEquals(analyzer.cycle(i - 1) + 1, analyzer.cycle(i));
+    }
+    assertEquals(LogicAnalyzer.SYNC | LogicAnalyzer.RWB,
+        analyzer.signals(8) & (LogicAnalyzer.SYNC | LogicAnalyzer.RWB));
+    assertEquals(0x0205, analyzer.address(8));
+  }
+
+  /**
+   * A trigger on the processor state fires on the first cycle it holds.
+   */
+  @Test
+  void triggerWhen() {
+    LogicAnalyzer analyzer = new LogicAnalyzer(backplane, cpu, 16);
+    analyzer.start();
+    analyzer.trigger(c -> c.a() == 0x42);
+    for(int i = 0; i < 200; i++) {
+      clock.cycle();
+    }
+    assertTrue(analyzer.triggerCycle() >= 0);
+    assertEquals(analyzer.triggerCycle(), analyzer.cycle(7));
+  }
+
+  /**
+   * The dump declares each wire, and records the changes of each cycle.
+   */
+  @Test
+  void writeVcd() throws IOException {
+    LogicAnalyzer analyzer = new LogicAnalyzer(backplane, cpu, 16);
+    analyzer.start();
+    analyzer.trigger(0x3000);
+    for(int i = 0; i < 200; i++) {
+      clock.cycle();
+    }
+
+    StringWriter out = new StringWriter();
+    analyzer.writeVcd(out);
+    String vcd = out.toString();
+    assertTrue(vcd.startsWith("$version ya6s $end\n"));
+    assertTrue(vcd.contains("$var wire 16 ! address $end\n"));
+    assertTrue(vcd.contains("$enddefinitions $end\n#" + analyzer.cycle(0) + "\n"));
+    assertTrue(vcd.contains("#" + analyzer.triggerCycle() + "\nb0011000000000000 !\nb01000010 \"\n0#\n"));
+    assertTrue(vcd.contains("1)\n"));
+  }
+}
@@ -0,0 +1,35 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Tests for packing Cycles into micro-ops.
+ */
+public class MicroOpTests {
+  /**
+   * Each micro-op holds the same values as the Cycle it was packed from.
+   *
+   * @param mode the addressing mode whose Cycles are packed.
+   */
+  @ParameterizedTest
+  @EnumSource(AddressingMode.class)
+  void compile(AddressingMode mode) {
+    Cycle[] cycles = mode.cycles();
+    int[] program = MicroOp.compile(cycles);
+    assertEquals(cycles.length, program.length);
+    for(int i = 0; i < cycles.length; i++) {
+      int uop = program[i];
+      assertEquals(cycles[i].address().ordinal(), uop & MicroOp.ADDRESS_MASK);
+      assertEquals(cycles[i].data().ordinal(), (uop >>> MicroOp.DATA_SHIFT) & MicroOp.DATA_MASK);
+      assertEquals(cycles[i].rwb(),  (uop & MicroOp.RWB)  != 0);
+      assertEquals(cycles[i].sync(), (uop & MicroOp.SYNC) != 0);
+      assertEquals(cycles[i].vpb(),  (uop & MicroOp.VPB)  != 0);
+      assertEquals(cycles[i].mlb(),  (uop & MicroOp.MLB)  != 0);
+    }
+  }
+}
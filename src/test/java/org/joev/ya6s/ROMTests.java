@@ -106,4 +106,62 @@ public class ROMTests {
       }
     }
   }
+
+  /**
+   * An image shorter than the ROM fills its start, and the rest of the ROM
+   * reads as zero.
+   */
+  @Test
+  void shortImage() throws IOException {
+    Path path = null;
+    try {
+      path = createFile(0x100);
+      Map<String, String> options = Map.of(
+          "base", "E000",
+          "size", "2000",
+          "file", path.toString());
+      new ROM(backplane, options);
+
+      check(0xE0FF, true);
+      assertEquals((byte)0x00, read(0xE100));
+      assertEquals((byte)0x00, read(0xFFFF));
+    }
+    finally {
+      if(path != null) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * A mapped image reads the same as a loaded one, and patching it leaves
+   * the file unchanged.
+   */
+  @Test
+  void mapped() throws IOException {
+    Path path = null;
+    try {
+      path = createFile(0x2000);
+      Map<String, String> options = Map.of(
+          "base", "E000",
+          "size", "2000",
+          "file", path.toString(),
+          "map", "true");
+      new ROM(backplane, options);
+
+      check(0xDFFF, false);
+      check(0xE000, true);
+      check(0xFFFF, true);
+
+      backplane.poke(0xE000, (byte)0x42);
+      assertEquals((byte)0x42, read(0xE000));
+      check(0xE001, true);
+      assertEquals((byte)0xAA, Files.readAllBytes(path)[0]);
+    }
+    finally {
+      if(path != null) {
+        Files.delete(path);
+      }
+    }
+  }
 }
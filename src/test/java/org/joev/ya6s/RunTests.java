@@ -0,0 +1,83 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class RunTests {
+  private Backplane backplane;
+  private W65C02S cpu;
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    cpu = new W65C02S(backplane);
+    new SRAM(backplane);
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void budget(W65C02S.Engine engine) {
+    TestUtils.reset(backplane, cpu, engine, """
+      E8       ; INX
+      4C 00 02 ; JMP $0200
+      """);
+    assertEquals(W65C02S.StopReason.BUDGET, cpu.run(100_000));
+    long cycles = cpu.cycleCount();
+    assertTrue(cycles >= 100_000 - 7 && cycles < 110_000, "cycles: " + cycles);
+    assertEquals(W65C02S.StopReason.BUDGET, cpu.run(10));
+    assertTrue(cpu.cycleCount() > cycles);
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void stopped(W65C02S.Engine engine) {
+    TestUtils.reset(backplane, cpu, engine, """
+      A9 23 ; LDA #$23
+      DB    ; STP
+      """);
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(1000));
+    assertEquals((byte)0x23, cpu.a());
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void waiting(W65C02S.Engine engine) {
+    TestUtils.reset(backplane, cpu, engine, """
+      A9 23 ; LDA #$23
+      CB    ; WAI
+      """);
+    assertEquals(W65C02S.StopReason.WAITING, cpu.run(1000));
+    assertEquals((byte)0x23, cpu.a());
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void breakpoint(W65C02S.Engine engine) {
+    TestUtils.reset(backplane, cpu, engine, """
+      A2 00 ; LDX #$00
+      E8    ; INX
+      80 FD ; BRA $0202
+      """);
+    assertEquals(W65C02S.StopReason.BREAKPOINT, cpu.run(1000, c -> c.x() == 5));
+    assertEquals((byte)5, cpu.x());
+    assertEquals(W65C02S.StopReason.BREAKPOINT, cpu.run(1000, c -> c.x() == 7));
+    assertEquals((byte)7, cpu.x());
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void stopRequested(W65C02S.Engine engine) {
+    TestUtils.reset(backplane, cpu, engine, """
+      80 FE ; BRA $0200
+      """);
+    cpu.requestStop();
+    assertEquals(W65C02S.StopReason.STOP_REQUESTED, cpu.run(1000));
+    assertEquals(W65C02S.StopReason.BUDGET, cpu.run(1000));
+  }
+}
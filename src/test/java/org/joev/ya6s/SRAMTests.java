@@ -3,9 +3,18 @@
 package org.joev.ya6s;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import org.joev.ya6s.signals.Bus;
 import org.joev.ya6s.signals.Signal;
@@ -114,4 +123,60 @@ public class SRAMTests {
     check(base + size - 1, true);
     check(base + size,     false);
   }
+
+  /**
+   * The contents of an SRAM mapped from a file are kept in the file, and
+   * seen by the next SRAM that maps it.  Since another process may change
+   * them, they are not cached.
+   */
+  @Test
+  void file(@TempDir Path dir) throws IOException {
+    Path path = dir.resolve("nvram.bin");
+    Map<String, String> options = Map.of(
+        "base", "8000",
+        "size", "1000",
+        "file", path.toString());
+    SRAM sram = new SRAM(backplane, options);
+    check(0x8000, true);
+    check(0x8FFF, true);
+    check(0x9000, false);
+    assertFalse(backplane.cacheable(0x8000));
+    write(0x8042, (byte)0x42);
+    sram.close();
+    assertEquals(0x1000, Files.size(path));
+    assertEquals((byte)0x42, Files.readAllBytes(path)[0x42]);
+
+    new SRAM(backplane, options);
+    assertEquals((byte)0x42, read(0x8042));
+  }
+
+  /**
+   * A page on the heap is given out for direct access, and holds the
+   * same contents that are read and written.  A page that is not aligned
+   * with the pages of the SRAM, or that is mapped from a file, is not.
+   */
+  @Test
+  void directPage(@TempDir Path dir) {
+    new SRAM(backplane, (short)0x0000, 0x0200);
+    new SRAM(backplane, (short)0x0280, 0x0200);
+    new SRAM(backplane, Map.of("base", "8000", "size", "1000", "file", dir.resolve("nvram.bin").toString()));
+    byte[] page = backplane.directPage(0x01);
+    write(0x0123, (byte)0x42);
+    assertEquals((byte)0x42, page[0x23]);
+    page[0x24] = 0x55;
+    assertEquals((byte)0x55, read(0x0124));
+
+    assertNull(backplane.directPage(0x03));
+    assertNull(backplane.directPage(0x80));
+    assertNull(backplane.directPage(0x40));
+  }
+
+  /**
+   * A sync interval needs a file to sync.
+   */
+  @Test
+  void syncWithoutFile() {
+    assertThrows(IllegalArgumentException.class, () ->
+        new SRAM(backplane, Map.of("base", "0", "size", "100", "sync", "1000")));
+  }
 }
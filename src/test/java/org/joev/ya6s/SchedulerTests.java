@@ -0,0 +1,68 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class SchedulerTests {
+  @Test
+  void order() {
+    Scheduler scheduler = new Scheduler();
+    List<Long> ran = new ArrayList<>();
+    Random random = new Random(6502);
+    for(int i = 0; i < 100; i++) {
+      long cycle = random.nextInt(1000) + 1;
+      scheduler.schedule(cycle, () -> ran.add(cycle));
+    }
+    assertTrue(scheduler.pending());
+    scheduler.advance(500);
+    assertTrue(ran.stream().allMatch(c -> c <= 500));
+    scheduler.advance(500);
+    assertEquals(100, ran.size());
+    for(int i = 1; i < ran.size(); i++) {
+      assertTrue(ran.get(i - 1) <= ran.get(i));
+    }
+    assertFalse(scheduler.pending());
+    assertEquals(Long.MAX_VALUE, scheduler.next());
+  }
+
+  @Test
+  void cancel() {
+    Scheduler scheduler = new Scheduler();
+    List<String> ran = new ArrayList<>();
+    Runnable a = () -> ran.add("a");
+    Runnable b = () -> ran.add("b");
+    scheduler.schedule(10, a);
+    scheduler.schedule(5, b);
+    scheduler.schedule(20, a);
+    scheduler.cancel(a);
+    assertEquals(5, scheduler.next());
+    scheduler.advance(30);
+    assertEquals(List.of("b"), ran);
+  }
+
+  @Test
+  void reschedule() {
+    Scheduler scheduler = new Scheduler();
+    List<Long> ran = new ArrayList<>();
+    Runnable[] periodic = new Runnable[1];
+    periodic[0] = () -> {
+      ran.add(scheduler.now());
+      scheduler.schedule(scheduler.now() + 10, periodic[0]);
+    };
+    scheduler.schedule(10, periodic[0]);
+    for(int i = 0; i < 35; i++) {
+      scheduler.advance(1);
+    }
+    assertEquals(List.of(10L, 20L, 30L), ran);
+    assertEquals(35, scheduler.now());
+  }
+}
@@ -0,0 +1,106 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.joev.ya6s.Parameters.params;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Tests for programs that write over their own instructions, which must
+ * invalidate the instructions cached by the FAST engine.
+ */
+public class SelfModifyingTests {
+  private Backplane backplane;
+  private W65C02S cpu;
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    cpu = new W65C02S(backplane);
+    new SRAM(backplane);
+  }
+
+  @ParameterizedTest
+  @MethodSource("tests")
+  void test(Parameters params) {
+    TestUtils.executeTest(params, backplane, cpu);
+  }
+
+  @ParameterizedTest
+  @MethodSource("tests")
+  void fast(Parameters params) {
+    cpu.engine(W65C02S.Engine.FAST);
+    TestUtils.executeTest(params, backplane, cpu);
+  }
+
+  /**
+   * Code loaded over instructions that have already run is not run from
+   * the cache.
+   */
+  @Test
+  void reload() {
+    TestUtils.load(backplane, cpu, 0x200, """
+      A9 23 ; LDA #$23
+      80 FC ; BRA $0200
+      """);
+    TestUtils.load(backplane, cpu, 0xFFFC, "00 02");
+    Clock clock = new Clock(backplane.clock());
+
+    backplane.be().value(true);
+    cpu.resb().value(false);
+    clock.cycle();
+    clock.cycle();
+    cpu.resb().value(true);
+
+    cpu.engine(W65C02S.Engine.FAST);
+    for(int i = 0; i < 4; i++) {
+      cpu.step();
+    }
+    assertEquals((byte)0x23, cpu.a());
+
+    TestUtils.load(backplane, cpu, 0x201, "42");
+    for(int i = 0; i < 2; i++) {
+      cpu.step();
+    }
+    assertEquals((byte)0x42, cpu.a());
+  }
+
+  static Stream<Parameters> tests() {
+    return Stream.of(
+      params("Modify operand in loop", """
+        A2 03    ; LDX #$03
+        A9 00    ; LDA #$00
+        EE 03 02 ; INC $0203
+        CA       ; DEX
+        D0 F8    ; BNE $0202
+        """, 40,
+        Assertions.assertA(0x02),
+        Assertions.assertX(0x00)),
+
+      params("Modify next instruction", """
+        A9 E8    ; LDA #$E8
+        8D 07 02 ; STA $0207
+        A2 00    ; LDX #$00
+        EA       ; NOP, replaced by INX
+        """, 10,
+        Assertions.assertX(0x01)),
+
+      params("Modify subroutine between calls", """
+        20 0C 02 ; JSR $020C
+        EE 0D 02 ; INC $020D
+        20 0C 02 ; JSR $020C
+        80 04    ; BRA $020F
+        EA       ; NOP
+        A2 23    ; LDX #$23
+        60       ; RTS
+        """, 37,
+        Assertions.assertX(0x24))
+    );
+  }
+}
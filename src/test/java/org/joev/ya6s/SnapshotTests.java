@@ -0,0 +1,125 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class SnapshotTests {
+  private Backplane backplane;
+  private W65C02S cpu;
+  private Clock clock;
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    cpu = new W65C02S(backplane);
+    new SRAM(backplane, (short)0x0000, 0x8000);
+    new SRAM(backplane, (short)0xFF00, 0x0100);
+    clock = new Clock(backplane.clock());
+
+    // Sum the bytes of page 3 into $10-$11, over and over.
+    TestUtils.load(backplane, cpu, 0x200, """
+      A0 00    ; LDY #$00
+      64 10    ; STZ $10
+      64 11    ; STZ $11
+      18       ; CLC
+      B9 00 03 ; LDA $0300,Y
+      65 10    ; ADC $10
+      85 10    ; STA $10
+      90 02    ; BCC +2
+      E6 11    ; INC $11
+      C8       ; INY
+      D0 F2    ; BNE $0207
+      80 E9    ; BRA $0200
+      """);
+    TestUtils.load(backplane, cpu, 0xFFFC, "00 02");
+    for(int i = 0; i < 0x100; i++) {
+      backplane.write(0x300 + i, (byte)(i * 7));
+    }
+
+    backplane.be().value(true);
+    cpu.resb().value(false);
+    clock.cycle();
+    clock.cycle();
+    cpu.resb().value(true);
+  }
+
+  /**
+   * Get the state of the system, as a String, for comparison.
+   */
+  private String state() {
+    byte[] memory = new byte[0x10000];
+    for(int i = 0; i < memory.length; i++) {
+      memory[i] = backplane.read(i);
+    }
+    return String.format("%04X %02X %02X %02X %02X %02X %d %04X %d",
+      cpu.pc(), cpu.a(), cpu.x(), cpu.y(), cpu.s(), cpu.p(), cpu.cycleCount(),
+      backplane.address().value(), Arrays.hashCode(memory));
+  }
+
+  private byte[] save() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Snapshot.save(backplane, out);
+    return out.toByteArray();
+  }
+
+  private void restore(byte[] snapshot) throws IOException {
+    Snapshot.restore(backplane, new ByteArrayInputStream(snapshot));
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void restore(W65C02S.Engine engine) throws IOException {
+    cpu.engine(engine);
+    cpu.run(5000);
+    byte[] snapshot = save();
+    cpu.run(20000);
+    String expected = state();
+
+    restore(snapshot);
+    cpu.run(20000);
+    assertEquals(expected, state());
+  }
+
+  @Test
+  void midInstruction() throws IOException {
+    for(int i = 0; i < 1001; i++) {
+      clock.cycle();
+    }
+    byte[] snapshot = save();
+    String[] expected = new String[100];
+    for(int i = 0; i < expected.length; i++) {
+      clock.cycle();
+      expected[i] = state();
+    }
+
+    restore(snapshot);
+    String[] actual = new String[100];
+    for(int i = 0; i < actual.length; i++) {
+      clock.cycle();
+      actual[i] = state();
+    }
+    assertArrayEquals(expected, actual);
+  }
+
+  @Test
+  void differentSystem() throws IOException {
+    byte[] snapshot = save();
+    new SRAM(backplane, (short)0x8000, 0x100);
+    String expected = state();
+    assertThrows(IOException.class, () -> restore(snapshot));
+    assertEquals(expected, state());
+  }
+}
@@ -26,6 +26,13 @@ public class StackTests {
     TestUtils.executeTest(params, backplane, cpu);
   }
 
+  @ParameterizedTest
+  @MethodSource("tests")
+  void fast(Parameters params) {
+    cpu.engine(W65C02S.Engine.FAST);
+    TestUtils.executeTest(params, backplane, cpu);
+  }
+
   static Stream<Parameters> tests() {
     return Stream.of(
       params("PHA and PLA", """
@@ -71,7 +78,18 @@ public class StackTests {
         Assertions::assertNotDecimal,
         Assertions::assertNotOverflow,
         Assertions::assertNotNegative,
-        Assertions::assertNotInterruptDisable)
+        Assertions::assertNotInterruptDisable),
+
+      params("PLP and PHP", """
+        A9 C3 ; LDA #$C3
+        48    ; PHA
+        28    ; PLP
+        08    ; PHP
+        68    ; PLA
+        """, 16,
+        Assertions::assertCarry,
+        Assertions::assertOverflow,
+        Assertions.assertA(0xF3))
     );
   }
 }
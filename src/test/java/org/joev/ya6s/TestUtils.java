@@ -6,8 +6,6 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.util.function.Consumer;
 
-import org.joev.ya6s.signals.Bus;
-import org.joev.ya6s.signals.Signal;
 
 /**
  * Utilits for running the unit tests.
@@ -26,10 +24,15 @@ public class TestUtils {
     Clock clock = new Clock(backplane.clock());
     cpu.resb().value(true);
     while(!cpu.stopped()) {
-      if(cycles == maxCycles)
+      if(cycles >= maxCycles)
         throw new CyclesExceededException(maxCycles);
-      clock.cycle();
-      cycles++;
+      if(cpu.engine() == W65C02S.Engine.FAST) {
+        cycles += cpu.run();
+      }
+      else {
+        clock.cycle();
+        cycles++;
+      }
     }
     return cycles;
   }
@@ -43,7 +46,7 @@ public class TestUtils {
    *   A9 23 ; LDA #$23
    *   A2 42 ; LDX #$42
    *
-   * The CPU has its rdy line set to fales while the bytes are clocked into memory.
+   * The bytes are poked into memory, without running the clock.
    *
    * @param backplane the backplane of the system.
    * @param cpu the cpu of the system.
@@ -51,34 +54,50 @@ public class TestUtils {
    * @param hex the hex bytes to write into the system.
    */
   public static void load(Backplane backplane, W65C02S cpu, int location, String hex) {
-    Bus address = backplane.address();
-    Bus data = backplane.data();
-    Signal rwb = backplane.rwb();
-    Signal rdy = cpu.rdy();
-    Clock clock = new Clock(backplane.clock());
-
-    rdy.value(false);
     String[] lines = hex.split("\n");
     for(String line: lines) {
       String trimmed = line.split(";")[0].trim();
       if(!trimmed.isBlank()) {
         String[] bytes = trimmed.split("[ \t]+");
         for(String h: bytes) {
-          address.value(location++);
-          data.value(Integer.parseInt(h, 16));
-          rwb.value(false);
-          clock.cycle();
+          backplane.poke(location++, (byte)Integer.parseInt(h, 16));
         }
       }
     }
-    rdy.value(true);
+  }
+
+  /**
+   * Load a program at $0200, point the reset vector at it, and reset the
+   * processor with the given engine.
+   *
+   * @param backplane the backplane of the system.
+   * @param cpu the cpu of the system.
+   * @param engine the engine to run the program with.
+   * @param program the hex bytes of the program, as for load().
+   */
+  public static void reset(Backplane backplane, W65C02S cpu, W65C02S.Engine engine, String program) {
+    load(backplane, cpu, 0x200, program);
+    load(backplane, cpu, 0xFFFC, "00 02");
+    Clock clock = new Clock(backplane.clock());
+
+    backplane.be().value(true);
+    cpu.resb().value(false);
+    clock.cycle();
+    clock.cycle();
+    cpu.resb().value(true);
+    cpu.engine(engine);
   }
 
   public static void executeTest(Parameters params) {
+    executeTest(params, W65C02S.Engine.CYCLE);
+  }
+
+  public static void executeTest(Parameters params, W65C02S.Engine engine) {
     Backplane backplane = new Backplane();
     W65C02S cpu = new W65C02S(backplane);
     new SRAM(backplane);
 
+    cpu.engine(engine);
     executeTest(params, backplane, cpu);
   }
 
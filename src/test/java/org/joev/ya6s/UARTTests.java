@@ -0,0 +1,134 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the UART's TCP port.
+ */
+public class UARTTests {
+  private Backplane backplane;
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+  }
+
+  /**
+   * Read the next received character, waiting for it to arrive.
+   */
+  private byte receive(int base) throws InterruptedException {
+    while((backplane.peek(base + 5) & 0x01) == 0) {
+      Thread.sleep(1);
+    }
+    return backplane.read(base);
+  }
+
+  /**
+   * Write a character to the transmitter, waiting for room in the FIFO.
+   */
+  private void transmit(int base, int c) throws InterruptedException {
+    while((backplane.peek(base + 5) & 0x20) == 0) {
+      Thread.sleep(1);
+    }
+    backplane.write(base, (byte)c);
+  }
+
+  /**
+   * Bytes from the client reach the receiver, and bytes written to the
+   * transmitter reach the client, including more than fit in a FIFO.
+   */
+  @Test
+  void tcp() throws IOException, InterruptedException {
+    UART uart = new UART(backplane, Map.of("base", "F000", "port", "0"));
+    try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), uart.port())) {
+      OutputStream out = socket.getOutputStream();
+      InputStream in = socket.getInputStream();
+      byte[] sent = new byte[100];
+      for(int i = 0; i < sent.length; i++) {
+        sent[i] = (byte)('0' + i % 64);
+      }
+      out.write(sent);
+      out.flush();
+      for(int i = 0; i < sent.length; i++) {
+        assertEquals(sent[i], receive(0xF000));
+      }
+
+      for(int i = 0; i < 40; i++) {
+        transmit(0xF000, 'a' + i % 26);
+      }
+      for(int i = 0; i < 40; i++) {
+        assertEquals('a' + i % 26, in.read());
+      }
+    }
+    finally {
+      uart.close();
+    }
+  }
+
+  /**
+   * A second client is turned away while the first is connected.
+   */
+  @Test
+  void oneClient() throws IOException, InterruptedException {
+    UART uart = new UART(backplane, Map.of("base", "F000", "port", "0"));
+    try(Socket first = new Socket(InetAddress.getLoopbackAddress(), uart.port());
+        Socket second = new Socket(InetAddress.getLoopbackAddress(), uart.port())) {
+      assertEquals(-1, second.getInputStream().read());
+      first.getOutputStream().write('X');
+      assertEquals((byte)'X', receive(0xF000));
+    }
+    finally {
+      uart.close();
+    }
+  }
+
+  /**
+   * Many UARTs share a single thread, and closing a UART releases its
+   * port.
+   */
+  @Test
+  void shared() {
+    List<UART> uarts = new ArrayList<>();
+    for(int i = 0; i < 32; i++) {
+      uarts.add(new UART(backplane, Map.of("base", Integer.toHexString(0xE000 + i * 8), "port", "0")));
+    }
+    int port = uarts.get(0).port();
+    List<String> threads = Thread.getAllStackTraces().keySet().stream()
+      .map(Thread::getName)
+      .filter(name -> name.equals("UART selector") || name.startsWith("UART $E"))
+      .toList();
+    assertEquals(List.of("UART selector"), threads);
+    for(UART uart: uarts) {
+      uart.close();
+    }
+
+    new UART(backplane, Map.of("base", "E000", "port", Integer.toString(port))).close();
+  }
+
+  /**
+   * The port must be "tty" or a port number.
+   */
+  @Test
+  void badPort() {
+    assertThrows(IllegalArgumentException.class, () ->
+        new UART(backplane, Map.of("base", "F000", "port", "serial")));
+    assertThrows(IllegalArgumentException.class, () ->
+        new UART(backplane, Map.of("base", "F000", "port", "65536")));
+    assertEquals(0, backplane.devices().size());
+  }
+}
@@ -0,0 +1,128 @@
+/* Copyright (C) 2021-2026 Joseph Vigneau */
+
+package org.joev.ya6s;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class WatchpointsTests {
+  private Backplane backplane;
+  private W65C02S cpu;
+  private Watchpoints watchpoints;
+  private final List<Watchpoints.Hit> hits = new ArrayList<>();
+
+  @BeforeEach
+  void beforeEach() {
+    backplane = new Backplane();
+    cpu = new W65C02S(backplane);
+    new SRAM(backplane);
+    watchpoints = backplane.watchpoints();
+    watchpoints.listener(hits::add);
+  }
+
+  @Test
+  void bitmaps() {
+    watchpoints.add(Watchpoints.Kind.READ, 0x1000, 0x103F);
+    watchpoints.add(Watchpoints.Kind.WRITE, 0x2000, 0x2000);
+    watchpoints.add(Watchpoints.Kind.ACCESS, 0xFFFF, 0xFFFF);
+    assertTrue(watchpoints.reads(0x1000));
+    assertTrue(watchpoints.reads(0x103F));
+    assertFalse(watchpoints.reads(0x1040));
+    assertFalse(watchpoints.writes(0x1000));
+    assertTrue(watchpoints.writes(0x2000));
+    assertFalse(watchpoints.reads(0x2000));
+    assertTrue(watchpoints.reads(0xFFFF));
+    assertTrue(watchpoints.writes(0xFFFF));
+    assertEquals("read $1000..$103F", watchpoints.list().get(0).toString());
+    assertEquals("write $2000", watchpoints.list().get(1).toString());
+
+    watchpoints.remove(0);
+    assertFalse(watchpoints.reads(0x1000));
+    assertTrue(watchpoints.writes(0x2000));
+    assertEquals(2, watchpoints.list().size());
+    assertThrows(IllegalArgumentException.class, () -> watchpoints.add(Watchpoints.Kind.READ, 0x10, 0x0F));
+  }
+
+  @Test
+  void backplane() {
+    watchpoints.add(Watchpoints.Kind.ACCESS, 0x1234, 0x1234);
+    backplane.poke(0x1234, (byte)0x11);
+    backplane.peek(0x1234);
+    assertTrue(hits.isEmpty());
+
+    backplane.write(0x1234, (byte)0x22);
+    backplane.read(0x1234);
+    backplane.read(0x1235);
+    assertEquals(List.of(
+      new Watchpoints.Hit(Watchpoints.Kind.WRITE, 0x1234, 0x11, 0x22),
+      new Watchpoints.Hit(Watchpoints.Kind.READ, 0x1234, 0x22, 0x22)), hits);
+  }
+
+  @ParameterizedTest
+  @EnumSource(W65C02S.Engine.class)
+  void engines(W65C02S.Engine engine) {
+    TestUtils.reset(backplane, cpu, engine, """
+      A9 41    ; LDA #$41
+      8D 00 03 ; STA $0300
+      AD 01 03 ; LDA $0301
+      EE 01 03 ; INC $0301
+      DB       ; STP
+      """);
+    watchpoints.add(Watchpoints.Kind.ACCESS, 0x0300, 0x0301);
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(1000));
+    // The CYCLE engine also sees the extra read of INC.
+    List<Watchpoints.Hit> expected = new ArrayList<>(List.of(
+      new Watchpoints.Hit(Watchpoints.Kind.WRITE, 0x0300, 0x00, 0x41),
+      new Watchpoints.Hit(Watchpoints.Kind.READ, 0x0301, 0x00, 0x00),
+      new Watchpoints.Hit(Watchpoints.Kind.READ, 0x0301, 0x00, 0x00),
+      new Watchpoints.Hit(Watchpoints.Kind.WRITE, 0x0301, 0x00, 0x01)));
+    if(engine == W65C02S.Engine.CYCLE) {
+      expected.add(2, expected.get(2));
+    }
+    assertEquals(expected, hits);
+  }
+
+  @Test
+  void compiled() {
+    TestUtils.reset(backplane, cpu, W65C02S.Engine.FAST, """
+      A2 00    ; LDX #$00
+      FE 00 03 ; INC $0300,X
+      CA       ; DEX
+      D0 FA    ; BNE $0202
+      DB       ; STP
+      """);
+    watchpoints.add(Watchpoints.Kind.WRITE, 0x0300, 0x03FF);
+    assertEquals(W65C02S.StopReason.STOPPED, cpu.run(100_000));
+    assertEquals(256, hits.size());
+    assertEquals(new Watchpoints.Hit(Watchpoints.Kind.WRITE, 0x03FF, 0x00, 0x01), hits.get(1));
+  }
+
+  @Test
+  void stack() {
+    TestUtils.reset(backplane, cpu, W65C02S.Engine.FAST, """
+      A2 FF    ; LDX #$FF
+      9A       ; TXS
+      A9 41    ; LDA #$41
+      48       ; PHA
+      68       ; PLA
+      80 FA    ; BRA $0203
+      """);
+    // Run long enough for the loop to be compiled before watching the
+    // stack, which the processor has been writing directly.
+    cpu.run(100_000);
+    watchpoints.add(Watchpoints.Kind.WRITE, 0x01FF, 0x01FF);
+    cpu.run(100);
+    assertFalse(hits.isEmpty());
+    assertEquals(new Watchpoints.Hit(Watchpoints.Kind.WRITE, 0x01FF, 0x41, 0x41), hits.get(0));
+  }
+}
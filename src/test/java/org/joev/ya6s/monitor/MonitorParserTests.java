@@ -8,6 +8,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.io.StringReader;
 import java.util.Map;
 
+import org.joev.ya6s.W65C02S;
+import org.joev.ya6s.Watchpoints;
 import org.joev.ya6s.expression.Constant;
 import org.joev.ya6s.expression.Register;
 import org.joev.ya6s.expression.RelationalExpression;
@@ -128,4 +130,77 @@ public class MonitorParserTests {
             Register.X,
             new Constant(0x13))));
   }
+
+  @Test
+  public void engineFast() throws ParseException {
+    assertEquals(parse("engine fast"), new EngineCommand(W65C02S.Engine.FAST));
+  }
+
+  @Test
+  public void engineCycle() throws ParseException {
+    assertEquals(parse("engine cycle"), new EngineCommand(W65C02S.Engine.CYCLE));
+  }
+
+  @Test
+  public void engineBad() {
+    assertThrows(ParseException.class, () -> parse("engine warp"));
+  }
+
+  @Test
+  public void snapshotSave() throws ParseException {
+    assertEquals(parse("snapshot save \"boot.snap\""), new SnapshotSaveCommand("boot.snap"));
+  }
+
+  @Test
+  public void snapshotRestore() throws ParseException {
+    assertEquals(parse("snapshot restore \"boot.snap\""), new SnapshotRestoreCommand("boot.snap"));
+  }
+
+  @Test
+  public void snapshotBad() {
+    assertThrows(ParseException.class, () -> parse("snapshot discard"));
+  }
+
+  @Test
+  public void captureOn() throws ParseException {
+    assertEquals(parse("capture on"), new CaptureOnCommand(CaptureOnCommand.DEFAULT_CAPACITY));
+    assertEquals(parse("capture on 4096"), new CaptureOnCommand(4096));
+  }
+
+  @Test
+  public void captureOff() throws ParseException {
+    assertEquals(parse("capture off"), CaptureOffCommand.instance());
+  }
+
+  @Test
+  public void captureAt() throws ParseException {
+    assertEquals(parse("capture at F000"), new CaptureTriggerCommand(0xF000));
+  }
+
+  @Test
+  public void captureWhen() throws ParseException {
+    assertEquals(parse("capture when x = 42"), new CaptureTriggerCommand(
+          new RelationalExpression(RelationalExpression.Op.EQUALS, Register.X, new Constant(0x42))));
+  }
+
+  @Test
+  public void captureDump() throws ParseException {
+    assertEquals(parse("capture dump \"boot.vcd\""), new CaptureDumpCommand("boot.vcd"));
+  }
+
+  @Test
+  public void fork() throws ParseException {
+    assertEquals(parse("fork 1000 50000"), new ForkCommand(1000, 50000, -1));
+    assertEquals(parse("fork 10 100 00F0"), new ForkCommand(10, 100, 0xF0));
+  }
+
+  @Test
+  public void watch() throws ParseException {
+    assertEquals(parse("watch read 0200"), new WatchCommand(Watchpoints.Kind.READ, 0x200, 0x200));
+    assertEquals(parse("watch write 0200..02FF"), new WatchCommand(Watchpoints.Kind.WRITE, 0x200, 0x2FF));
+    assertEquals(parse("watch access FFFA..FFFF"), new WatchCommand(Watchpoints.Kind.ACCESS, 0xFFFA, 0xFFFF));
+    assertEquals(parse("watch list"), WatchListCommand.instance());
+    assertEquals(parse("watch remove 1"), new WatchRemoveCommand(1));
+    assertThrows(ParseException.class, () -> parse("watch execute 0200"));
+  }
 }
@@ -2,9 +2,13 @@
 
 package org.joev.ya6s.signals;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 public class OpenCollectorTest {
@@ -43,6 +47,52 @@ public class OpenCollectorTest {
     assertFalse(oc.value());
   }
 
+  @Test
+  void slots() {
+    OpenCollector oc = new OpenCollector("test");
+    Object object1 = new Object();
+    Object object2 = new Object();
+    int slot1 = oc.attach(object1);
+    int slot2 = oc.attach(object2);
+    assertEquals(slot1, oc.attach(object1));
+
+    oc.value(slot1, false);
+    oc.value(slot2, false);
+    oc.value(slot1, false);
+    oc.value(slot1, true);
+    assertFalse(oc.value());
+    oc.value(slot2, true);
+    assertTrue(oc.value());
+  }
+
+  @Test
+  void edges() {
+    OpenCollector oc = new OpenCollector("test");
+    List<Signal.EventType> events = new ArrayList<>();
+    oc.register(events::add);
+    Object object1 = new Object();
+    Object object2 = new Object();
+
+    oc.value(object1, false);
+    oc.value(object2, false);
+    oc.value(object1, true);
+    oc.value(object2, true);
+    assertEquals(List.of(Signal.EventType.NEGATIVE_EDGE, Signal.EventType.POSITIVE_EDGE), events);
+  }
+
+  @Test
+  void detachReleases() {
+    OpenCollector oc = new OpenCollector("test");
+    Object object1 = new Object();
+    Object object2 = new Object();
+
+    oc.value(object1, false);
+    oc.detach(object1);
+    assertTrue(oc.value());
+    oc.value(object2, true);
+    assertEquals(0, oc.attach(object2));
+  }
+
   @Test
   void noInputsIsTrue() {
     OpenCollector oc = new OpenCollector("test");
@@ -7,6 +7,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 
@@ -42,4 +43,74 @@ public class SignalTests {
     assertTrue(types.contains(Signal.EventType.NEGATIVE_EDGE));
     assertFalse(types.contains(Signal.EventType.POSITIVE_EDGE));
   }
+
+  /**
+   * A listener that unregisters itself while being notified does not stop
+   * the other listeners from being notified of the same edge.
+   */
+  @Test
+  void unregisterWhileNotifying() {
+    Signal s = new Signal("test");
+    AtomicInteger count = new AtomicInteger();
+    s.register(new Signal.Listener() {
+      @Override
+      public void event(Signal.EventType eventType) {
+        s.unregister(this);
+      }
+    });
+    s.register(eventType -> count.incrementAndGet());
+
+    s.value(true);
+    s.value(false);
+    assertEquals(2, count.get());
+    assertEquals(1, s.listenerCount());
+  }
+
+  /**
+   * Listeners can register and unregister from another thread while the
+   * signal is changing.
+   */
+  @Test
+  void registerWhileRunning() throws InterruptedException {
+    Signal s = new Signal("test");
+    AtomicInteger count = new AtomicInteger();
+    s.register(eventType -> count.incrementAndGet());
+    Thread other = new Thread(() -> {
+      for(int i = 0; i < 10000; i++) {
+        Signal.Listener listener = eventType -> { };
+        s.register(listener);
+        s.unregister(listener);
+      }
+    });
+    other.start();
+    for(int i = 0; i < 10000; i++) {
+      s.value(!s.value());
+    }
+    other.join();
+    assertEquals(10000, count.get());
+    assertEquals(1, s.listenerCount());
+  }
+
+  /**
+   * Listeners registered for one edge are only notified of that edge.
+   */
+  @Test
+  void edgeListeners() {
+    Signal s = new Signal("test");
+    Set<Signal.EventType> rising = new HashSet<>();
+    Set<Signal.EventType> falling = new HashSet<>();
+    Signal.Listener both = eventType -> { };
+    s.registerRising(rising::add);
+    s.registerFalling(falling::add);
+    s.register(both);
+    assertEquals(3, s.listenerCount());
+
+    s.value(true);
+    s.value(false);
+    assertEquals(Set.of(Signal.EventType.POSITIVE_EDGE), rising);
+    assertEquals(Set.of(Signal.EventType.NEGATIVE_EDGE), falling);
+
+    s.unregister(both);
+    assertEquals(2, s.listenerCount());
+  }
 }